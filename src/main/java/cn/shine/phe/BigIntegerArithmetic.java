@@ -0,0 +1,47 @@
+package cn.shine.phe;
+
+/*
+ * @Project PHE-Maven
+ * @Package cn.shine.phe
+ * @Class   BigIntegerArithmetic
+ * @Version 1.0.0
+ * @Author  Zhan Shi
+ * @Time    2026/10/17 18:10
+ * @License MIT
+ */
+
+import org.jetbrains.annotations.NotNull;
+
+import java.math.BigInteger;
+
+/**
+ * todo Public Class BigIntegerArithmetic: the default ModArithmetic, java.math.BigInteger as it is
+ *
+ * @author Zhan Shi
+ */
+public class BigIntegerArithmetic implements ModArithmetic {
+    /**
+     * NAME: the name of the backend
+     */
+    public static final String NAME = "biginteger";
+
+    @Override
+    public @NotNull BigInteger modPow(@NotNull BigInteger base, @NotNull BigInteger exponent, @NotNull BigInteger modulus) {
+        return base.modPow(exponent, modulus);
+    }
+
+    @Override
+    public @NotNull BigInteger mulMod(@NotNull BigInteger a, @NotNull BigInteger b, @NotNull BigInteger modulus) {
+        return a.multiply(b).mod(modulus);
+    }
+
+    @Override
+    public @NotNull BigInteger modInverse(@NotNull BigInteger a, @NotNull BigInteger modulus) {
+        return a.modInverse(modulus);
+    }
+
+    @Override
+    public @NotNull String getName() {
+        return NAME;
+    }
+}
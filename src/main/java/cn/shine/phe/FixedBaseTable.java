@@ -0,0 +1,120 @@
+package cn.shine.phe;
+
+/*
+ * @Project PHE-Maven
+ * @Package cn.shine.phe
+ * @Class   FixedBaseTable
+ * @Version 1.0.0
+ * @Author  Zhan Shi
+ * @Time    2026/10/17 11:20
+ * @License MIT
+ */
+
+import org.jetbrains.annotations.NotNull;
+
+import java.math.BigInteger;
+
+/**
+ * todo Public Class FixedBaseTable: fixed-base windowed exponentiation base ** x mod modulus
+ * <p>
+ * table[i][j] = base ** (j * 2 ** (window * i)), so base ** x costs one multiplication per non-zero window of x
+ * and no squaring at all.
+ *
+ * @author Zhan Shi
+ */
+public class FixedBaseTable {
+    /**
+     * DEFAULT_WINDOW: default window bits
+     */
+    public static final int DEFAULT_WINDOW = 6;
+    /**
+     * base:    the fixed base
+     * modulus: the modulus
+     */
+    public final BigInteger base, modulus;
+    /**
+     * exponentBits: max bit length of exponents
+     * window:       window bits
+     */
+    public final int exponentBits, window;
+    /**
+     * table: the precomputed powers of base
+     */
+    private final BigInteger[][] table;
+
+    /**
+     * @param base         the fixed base
+     * @param modulus      the modulus
+     * @param exponentBits max bit length of exponents
+     * @see FixedBaseTable#FixedBaseTable(BigInteger, BigInteger, int, int)
+     */
+    public FixedBaseTable(@NotNull BigInteger base, @NotNull BigInteger modulus, int exponentBits) {
+        this(base, modulus, exponentBits, DEFAULT_WINDOW);
+    }
+
+    /**
+     * todo Public Function FixedBaseTable(BigInteger, BigInteger, int, int): Class FixedBaseTable init
+     *
+     * @param base         the fixed base
+     * @param modulus      the modulus
+     * @param exponentBits max bit length of exponents
+     * @param window       window bits, between 1 and 16
+     * @throws Util.ValueErrorException if exponentBits or window is out of range
+     */
+    public FixedBaseTable(@NotNull BigInteger base, @NotNull BigInteger modulus, int exponentBits, int window)
+            throws Util.ValueErrorException {
+        if (exponentBits <= 0) {
+            throw new Util.ValueErrorException("exponent bits should be positive");
+        }
+        if (window < 1 || window > 16) {
+            throw new Util.ValueErrorException(String.format("window should be in [1, 16] but got %s", window));
+        }
+
+        this.base = base.mod(modulus);
+        this.modulus = modulus;
+        this.exponentBits = exponentBits;
+        this.window = window;
+
+        int rows = (exponentBits + window - 1) / window;
+        int columns = 1 << window;
+        this.table = new BigInteger[rows][columns];
+
+        BigInteger rowBase = this.base;
+        for (int i = 0; i < rows; i++) {
+            this.table[i][0] = BigInteger.ONE;
+            this.table[i][1] = rowBase;
+            for (int j = 2; j < columns; j++) {
+                this.table[i][j] = Util.mulMod(this.table[i][j - 1], rowBase, modulus);
+            }
+            rowBase = Util.mulMod(this.table[i][columns - 1], rowBase, modulus);
+        }
+    }
+
+    /**
+     * todo Public Function pow(BigInteger): base ** exponent mod modulus
+     *
+     * @param exponent non-negative exponent with at most exponentBits bits
+     * @return BigInteger
+     * @throws Util.ValueErrorException if exponent is negative or too long
+     */
+    public @NotNull BigInteger pow(@NotNull BigInteger exponent) throws Util.ValueErrorException {
+        if (exponent.signum() < 0 || exponent.bitLength() > this.exponentBits) {
+            String exception = "exponent should be in [0, 2 ** %s) but got %s";
+            throw new Util.ValueErrorException(String.format(exception, this.exponentBits, exponent));
+        }
+
+        BigInteger result = BigInteger.ONE;
+        int bitLength = exponent.bitLength();
+        for (int i = 0, offset = 0; offset < bitLength; i++, offset += this.window) {
+            int digit = 0;
+            for (int j = this.window - 1; j >= 0; j--) {
+                digit = (digit << 1) | (exponent.testBit(offset + j) ? 1 : 0);
+            }
+            if (digit != 0) {
+                result = Util.mulMod(result, this.table[i][digit], this.modulus);
+            }
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,232 @@
+package cn.shine.phe;
+
+/*
+ * @Project PHE-Maven
+ * @Package cn.shine.phe
+ * @Class   LimbArithmetic
+ * @Version 1.0.0
+ * @Author  Zhan Shi
+ * @Time    2026/10/17 18:10
+ * @License MIT
+ */
+
+import org.jetbrains.annotations.NotNull;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+/**
+ * todo Public Class LimbArithmetic: ModArithmetic on mutable long[] limbs with Montgomery multiplication
+ * <p>
+ * A limb holds 32 bits in a long, little-endian, so a limb product plus two carries still fits in 64 bits.
+ * modPow converts its operands once, then runs a fixed-window exponentiation whose CIOS Montgomery products
+ * write into preallocated arrays, so the loop allocates nothing. Non-odd moduli and negative exponents, and the
+ * single products of mulMod and modInverse, where the conversions would cost more than they save, are left
+ * to BigInteger.
+ *
+ * @author Zhan Shi
+ */
+public class LimbArithmetic implements ModArithmetic {
+    /**
+     * NAME: the name of the backend
+     */
+    public static final String NAME = "limb";
+    /**
+     * WINDOW: window bits of the exponentiation
+     */
+    public static final int WINDOW = 5;
+    /**
+     * LIMB_BITS: bits per limb
+     * LIMB_MASK: the low LIMB_BITS bits
+     */
+    private static final int LIMB_BITS = 32;
+    private static final long LIMB_MASK = 0xffffffffL;
+
+    @Override
+    public @NotNull BigInteger modPow(@NotNull BigInteger base, @NotNull BigInteger exponent, @NotNull BigInteger modulus) {
+        if (modulus.signum() <= 0 || !modulus.testBit(0) || exponent.signum() < 0 || modulus.equals(BigInteger.ONE)) {
+            return base.modPow(exponent, modulus);
+        }
+
+        int size = (modulus.bitLength() + LIMB_BITS - 1) / LIMB_BITS;
+        long[] n = toLimbs(modulus, size);
+        long nPrime = negativeInverse(n[0]);
+        // R ** 2 mod modulus with R = 2 ** (LIMB_BITS * size), to move values into Montgomery form
+        long[] rSquare = toLimbs(BigInteger.ONE.shiftLeft(2 * LIMB_BITS * size).mod(modulus), size);
+        long[] scratch = new long[size + 2];
+
+        long[][] table = new long[1 << WINDOW][size];
+        long[] one = new long[size];
+        one[0] = 1;
+        montgomeryMultiply(rSquare, one, table[0], n, nPrime, scratch);
+        montgomeryMultiply(toLimbs(base.mod(modulus), size), rSquare, table[1], n, nPrime, scratch);
+        for (int i = 2; i < table.length; i++) {
+            montgomeryMultiply(table[i - 1], table[1], table[i], n, nPrime, scratch);
+        }
+
+        long[] result = table[0].clone();
+        for (int offset = (exponent.bitLength() - 1) / WINDOW * WINDOW; offset >= 0; offset -= WINDOW) {
+            for (int j = 0; j < WINDOW; j++) {
+                montgomeryMultiply(result, result, result, n, nPrime, scratch);
+            }
+            // every window multiplies, by the Montgomery one for a zero digit
+            montgomeryMultiply(result, table[digit(exponent, offset)], result, n, nPrime, scratch);
+        }
+        montgomeryMultiply(result, one, result, n, nPrime, scratch);
+
+        return fromLimbs(result);
+    }
+
+    @Override
+    public @NotNull BigInteger mulMod(@NotNull BigInteger a, @NotNull BigInteger b, @NotNull BigInteger modulus) {
+        return a.multiply(b).mod(modulus);
+    }
+
+    @Override
+    public @NotNull BigInteger modInverse(@NotNull BigInteger a, @NotNull BigInteger modulus) {
+        return a.modInverse(modulus);
+    }
+
+    @Override
+    public @NotNull String getName() {
+        return NAME;
+    }
+
+    /**
+     * todo Static Function toLimbs(BigInteger, int): the limbs of a non-negative value
+     *
+     * @param x    the value, less than 2 ** (LIMB_BITS * size)
+     * @param size number of limbs
+     * @return long[]
+     */
+    static long @NotNull [] toLimbs(@NotNull BigInteger x, int size) {
+        byte[] bytes = x.toByteArray();
+        long[] limbs = new long[size];
+        for (int i = 0; i < bytes.length; i++) {
+            int bit = 8 * (bytes.length - 1 - i);
+            if (bit / LIMB_BITS < size) {
+                limbs[bit / LIMB_BITS] |= (bytes[i] & 0xffL) << (bit % LIMB_BITS);
+            }
+        }
+
+        return limbs;
+    }
+
+    /**
+     * todo Static Function fromLimbs(long[]): the value of limbs
+     *
+     * @param limbs the limbs
+     * @return BigInteger
+     */
+    static @NotNull BigInteger fromLimbs(long @NotNull [] limbs) {
+        byte[] bytes = new byte[4 * limbs.length + 1];
+        for (int i = 0; i < limbs.length; i++) {
+            for (int j = 0; j < 4; j++) {
+                bytes[bytes.length - 1 - 4 * i - j] = (byte) (limbs[i] >>> (8 * j));
+            }
+        }
+
+        return new BigInteger(bytes);
+    }
+
+    /**
+     * todo Private Static Function negativeInverse(long): -x ** -1 mod 2 ** LIMB_BITS
+     *
+     * @param x the odd lowest limb of the modulus
+     * @return long
+     */
+    private static long negativeInverse(long x) {
+        // x * x = 1 mod 8, and every Newton step doubles the correct bits: 3, 6, 12, 24, 48
+        long inverse = x;
+        for (int i = 0; i < 4; i++) {
+            inverse = inverse * (2 - x * inverse) & LIMB_MASK;
+        }
+
+        return -inverse & LIMB_MASK;
+    }
+
+    /**
+     * todo Private Static Function montgomeryMultiply(long[], long[], long[], long[], long, long[]): CIOS a * b * R ** -1
+     * <p>
+     * result may be a or b.
+     *
+     * @param a       a in [0, n)
+     * @param b       b in [0, n)
+     * @param result  a * b * R ** -1 mod n
+     * @param n       the odd modulus
+     * @param nPrime  -n ** -1 mod 2 ** LIMB_BITS
+     * @param scratch size + 2 limbs
+     */
+    private static void montgomeryMultiply(long[] a, long[] b, long[] result, long @NotNull [] n, long nPrime,
+                                           long[] scratch) {
+        int size = n.length;
+        Arrays.fill(scratch, 0L);
+        for (int i = 0; i < size; i++) {
+            long carry = 0, bi = b[i];
+            for (int j = 0; j < size; j++) {
+                long sum = scratch[j] + a[j] * bi + carry;
+                scratch[j] = sum & LIMB_MASK;
+                carry = sum >>> LIMB_BITS;
+            }
+            long sum = scratch[size] + carry;
+            scratch[size] = sum & LIMB_MASK;
+            scratch[size + 1] = sum >>> LIMB_BITS;
+
+            long m = scratch[0] * nPrime & LIMB_MASK;
+            carry = (scratch[0] + m * n[0]) >>> LIMB_BITS;
+            for (int j = 1; j < size; j++) {
+                sum = scratch[j] + m * n[j] + carry;
+                scratch[j - 1] = sum & LIMB_MASK;
+                carry = sum >>> LIMB_BITS;
+            }
+            sum = scratch[size] + carry;
+            scratch[size - 1] = sum & LIMB_MASK;
+            scratch[size] = scratch[size + 1] + (sum >>> LIMB_BITS);
+        }
+
+        // the product is below 2 * n, one subtraction at most
+        if (scratch[size] != 0 || compare(scratch, n) >= 0) {
+            long borrow = 0;
+            for (int j = 0; j < size; j++) {
+                long difference = scratch[j] - n[j] - borrow;
+                result[j] = difference & LIMB_MASK;
+                borrow = difference >>> 63;
+            }
+        } else {
+            System.arraycopy(scratch, 0, result, 0, size);
+        }
+    }
+
+    /**
+     * todo Private Static Function compare(long[], long[]): compare the low n.length limbs of x with n
+     *
+     * @param x the limbs
+     * @param n the modulus limbs
+     * @return int
+     */
+    private static int compare(long[] x, long @NotNull [] n) {
+        for (int j = n.length - 1; j >= 0; j--) {
+            if (x[j] != n[j]) {
+                return x[j] < n[j] ? -1 : 1;
+            }
+        }
+
+        return 0;
+    }
+
+    /**
+     * todo Private Static Function digit(BigInteger, int): bits [offset, offset + WINDOW) of exponent
+     *
+     * @param exponent the exponent
+     * @param offset   the lowest bit
+     * @return int
+     */
+    private static int digit(BigInteger exponent, int offset) {
+        int digit = 0;
+        for (int j = WINDOW - 1; j >= 0; j--) {
+            digit = (digit << 1) | (exponent.testBit(offset + j) ? 1 : 0);
+        }
+
+        return digit;
+    }
+}
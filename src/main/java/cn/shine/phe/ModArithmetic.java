@@ -0,0 +1,101 @@
+package cn.shine.phe;
+
+/*
+ * @Project PHE-Maven
+ * @Package cn.shine.phe
+ * @Class   ModArithmetic
+ * @Version 1.0.0
+ * @Author  Zhan Shi
+ * @Time    2026/10/17 18:10
+ * @License MIT
+ */
+
+import org.jetbrains.annotations.NotNull;
+
+import java.math.BigInteger;
+
+/**
+ * todo Public Interface ModArithmetic: the modular arithmetic backend behind Util.modPow, Util.mulMod and Util.invert
+ * <p>
+ * Values cross the interface as BigInteger; an implementation converts them to its own representation and back.
+ * The backend is chosen by the system property PROPERTY: "biginteger" (default), "limb", or the name of a class
+ * implementing ModArithmetic with a public no-argument constructor.
+ *
+ * @author Zhan Shi
+ */
+public interface ModArithmetic {
+    /**
+     * PROPERTY: system property selecting the backend
+     */
+    String PROPERTY = "cn.shine.phe.arithmetic";
+
+    /**
+     * todo Public Function modPow(BigInteger, BigInteger, BigInteger): base ** exponent mod modulus
+     *
+     * @param base     the base
+     * @param exponent the exponent
+     * @param modulus  the positive modulus
+     * @return BigInteger in [0, modulus)
+     */
+    @NotNull BigInteger modPow(@NotNull BigInteger base, @NotNull BigInteger exponent, @NotNull BigInteger modulus);
+
+    /**
+     * todo Public Function mulMod(BigInteger, BigInteger, BigInteger): a * b mod modulus
+     *
+     * @param a       param a
+     * @param b       param b
+     * @param modulus the positive modulus
+     * @return BigInteger in [0, modulus)
+     */
+    @NotNull BigInteger mulMod(@NotNull BigInteger a, @NotNull BigInteger b, @NotNull BigInteger modulus);
+
+    /**
+     * todo Public Function modInverse(BigInteger, BigInteger): a ** -1 mod modulus
+     *
+     * @param a       param a
+     * @param modulus the positive modulus
+     * @return BigInteger in [0, modulus)
+     * @throws ArithmeticException if a is not invertible
+     */
+    @NotNull BigInteger modInverse(@NotNull BigInteger a, @NotNull BigInteger modulus) throws ArithmeticException;
+
+    /**
+     * todo Public Function getName(): the name of the backend
+     *
+     * @return String
+     */
+    @NotNull String getName();
+
+    /**
+     * todo Public Static Function fromProperty(): the backend selected by the system property PROPERTY
+     *
+     * @return ModArithmetic
+     * @throws Util.ValueErrorException if the property names no usable backend
+     */
+    static @NotNull ModArithmetic fromProperty() throws Util.ValueErrorException {
+        return of(System.getProperty(PROPERTY, BigIntegerArithmetic.NAME));
+    }
+
+    /**
+     * todo Public Static Function of(String): the backend of a name
+     *
+     * @param name "biginteger", "limb", or a class name
+     * @return ModArithmetic
+     * @throws Util.ValueErrorException if the name is no usable backend
+     */
+    static @NotNull ModArithmetic of(@NotNull String name) throws Util.ValueErrorException {
+        if (BigIntegerArithmetic.NAME.equalsIgnoreCase(name)) {
+            return new BigIntegerArithmetic();
+        } else if (LimbArithmetic.NAME.equalsIgnoreCase(name)) {
+            return new LimbArithmetic();
+        }
+
+        try {
+            return (ModArithmetic) Class.forName(name).getConstructor().newInstance();
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            Util.ValueErrorException exception = new Util.ValueErrorException(String.format("unknown modular arithmetic %s", name));
+            exception.initCause(e);
+            throw exception;
+        }
+    }
+}
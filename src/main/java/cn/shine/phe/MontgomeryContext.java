@@ -0,0 +1,128 @@
+package cn.shine.phe;
+
+/*
+ * @Project PHE-Maven
+ * @Package cn.shine.phe
+ * @Class   MontgomeryContext
+ * @Version 1.0.0
+ * @Author  Zhan Shi
+ * @Time    2026/10/17 15:30
+ * @License MIT
+ */
+
+import org.jetbrains.annotations.NotNull;
+
+import java.math.BigInteger;
+
+/**
+ * todo Public Class MontgomeryContext: Montgomery arithmetic modulo an odd modulus
+ * <p>
+ * x is kept as x * R mod modulus with R = 2 ** bits, so a product only needs a REDC, which is made of
+ * multiplications, masks and shifts, instead of a BigInteger.mod division.
+ *
+ * @author Zhan Shi
+ */
+public class MontgomeryContext {
+    /**
+     * modulus: the odd modulus
+     */
+    public final BigInteger modulus;
+    /**
+     * bits: bit length of R
+     */
+    public final int bits;
+    /**
+     * mask:         R - 1
+     * modulusPrime: -modulus ** -1 mod R
+     * one:          R mod modulus, the Montgomery form of 1
+     * rCube:        R ** 3 mod modulus, brings an inverse back to Montgomery form
+     */
+    private final BigInteger mask, modulusPrime, one, rCube;
+
+    /**
+     * todo Public Function MontgomeryContext(BigInteger): Class MontgomeryContext init
+     *
+     * @param modulus the odd modulus
+     * @throws Util.ValueErrorException if modulus is not odd or not greater than 1
+     */
+    public MontgomeryContext(@NotNull BigInteger modulus) throws Util.ValueErrorException {
+        if (!modulus.testBit(0) || modulus.compareTo(BigInteger.ONE) <= 0) {
+            throw new Util.ValueErrorException("Montgomery modulus should be odd and greater than 1");
+        }
+
+        this.modulus = modulus;
+        this.bits = modulus.bitLength();
+
+        BigInteger r = BigInteger.ONE.shiftLeft(this.bits);
+        this.mask = r.subtract(BigInteger.ONE);
+        this.modulusPrime = modulus.negate().modInverse(r);
+        this.one = r.mod(modulus);
+        this.rCube = r.pow(3).mod(modulus);
+    }
+
+    /**
+     * todo Public Function toMontgomery(BigInteger): x * R mod modulus
+     *
+     * @param x the value
+     * @return BigInteger
+     */
+    public @NotNull BigInteger toMontgomery(@NotNull BigInteger x) {
+        return x.shiftLeft(this.bits).mod(this.modulus);
+    }
+
+    /**
+     * todo Public Function fromMontgomery(BigInteger): x * R ** -1 mod modulus
+     *
+     * @param x the value in Montgomery form
+     * @return BigInteger
+     */
+    public @NotNull BigInteger fromMontgomery(@NotNull BigInteger x) {
+        return reduce(x);
+    }
+
+    /**
+     * todo Public Function multiply(BigInteger, BigInteger): product of two values in Montgomery form
+     *
+     * @param a a * R mod modulus
+     * @param b b * R mod modulus
+     * @return BigInteger a * b * R mod modulus
+     */
+    public @NotNull BigInteger multiply(@NotNull BigInteger a, @NotNull BigInteger b) {
+        return reduce(a.multiply(b));
+    }
+
+    /**
+     * todo Public Function inverse(BigInteger): inverse of a value in Montgomery form
+     * <p>
+     * (a * R) ** -1 is a ** -1 * R ** -1, one REDC against R ** 3 turns it into a ** -1 * R.
+     *
+     * @param a a * R mod modulus
+     * @return BigInteger a ** -1 * R mod modulus
+     * @throws Util.ZeroDivisionErrorException if a is not invertible
+     */
+    public @NotNull BigInteger inverse(@NotNull BigInteger a) throws Util.ZeroDivisionErrorException {
+        return reduce(Util.invert(a, this.modulus).multiply(this.rCube));
+    }
+
+    /**
+     * todo Public Function one(): the Montgomery form of 1
+     *
+     * @return BigInteger
+     */
+    public @NotNull BigInteger one() {
+        return this.one;
+    }
+
+    /**
+     * todo Private Function reduce(BigInteger): REDC, t * R ** -1 mod modulus for 0 <= t < modulus * R
+     *
+     * @param t the value
+     * @return BigInteger
+     */
+    private @NotNull BigInteger reduce(@NotNull BigInteger t) {
+        BigInteger m = t.and(this.mask).multiply(this.modulusPrime).and(this.mask);
+        BigInteger u = t.add(m.multiply(this.modulus)).shiftRight(this.bits);
+
+        return u.compareTo(this.modulus) >= 0 ? u.subtract(this.modulus) : u;
+    }
+}
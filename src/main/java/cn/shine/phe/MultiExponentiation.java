@@ -0,0 +1,204 @@
+package cn.shine.phe;
+
+/*
+ * @Project PHE-Maven
+ * @Package cn.shine.phe
+ * @Class   MultiExponentiation
+ * @Version 1.0.0
+ * @Author  Zhan Shi
+ * @Time    2026/10/17 16:20
+ * @License MIT
+ */
+
+import org.jetbrains.annotations.NotNull;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+/**
+ * todo Public Class MultiExponentiation: simultaneous multi-exponentiation prod(bases[i] ** exponents[i]) mod modulus
+ * <p>
+ * All the terms share one chain of squarings: Straus' interleaved windows for dozens of terms, Pippenger's
+ * buckets for more. The products are done in Montgomery form. Below DIRECT_THRESHOLD non-zero terms the per-term
+ * modPow, whose Montgomery products run on int arrays, is still faster than sharing the squarings.
+ *
+ * @author Zhan Shi
+ */
+public class MultiExponentiation {
+    /**
+     * STRAUS_WINDOW:       window bits of Straus' method
+     * DIRECT_THRESHOLD:    min number of non-zero terms for Straus' method
+     * PIPPENGER_THRESHOLD: min number of non-zero terms for Pippenger's method
+     */
+    private static final int STRAUS_WINDOW = 4, DIRECT_THRESHOLD = 32, PIPPENGER_THRESHOLD = 64;
+
+    /**
+     * todo Public Static Function pow(BigInteger[], BigInteger[], MontgomeryContext): prod(bases[i] ** exponents[i])
+     *
+     * @param bases     the bases, in [0, modulus)
+     * @param exponents the non-negative exponents
+     * @param context   Montgomery arithmetic modulo the odd modulus
+     * @return BigInteger
+     * @throws Util.ValueErrorException if the lengths differ or an exponent is negative
+     */
+    public static @NotNull BigInteger pow(@NotNull BigInteger[] bases, @NotNull BigInteger[] exponents,
+                                          @NotNull MontgomeryContext context) throws Util.ValueErrorException {
+        if (bases.length != exponents.length) {
+            String exception = "got %s bases but %s exponents";
+            throw new Util.ValueErrorException(String.format(exception, bases.length, exponents.length));
+        }
+
+        int count = 0, bits = 0;
+        BigInteger[] nonZeroBases = new BigInteger[bases.length];
+        BigInteger[] nonZeroExponents = new BigInteger[exponents.length];
+        for (int i = 0; i < bases.length; i++) {
+            if (exponents[i].signum() < 0) {
+                throw new Util.ValueErrorException(String.format("exponent %s should not be negative", i));
+            }
+            if (exponents[i].signum() > 0) {
+                nonZeroBases[count] = bases[i];
+                nonZeroExponents[count++] = exponents[i];
+                bits = Math.max(bits, exponents[i].bitLength());
+            }
+        }
+        if (count < DIRECT_THRESHOLD) {
+            return direct(nonZeroBases, nonZeroExponents, count, context.modulus);
+        }
+
+        BigInteger[] montgomeryBases = new BigInteger[count];
+        for (int i = 0; i < count; i++) {
+            montgomeryBases[i] = context.toMontgomery(nonZeroBases[i]);
+        }
+
+        BigInteger result = count < PIPPENGER_THRESHOLD
+                ? straus(montgomeryBases, nonZeroExponents, count, bits, context)
+                : pippenger(montgomeryBases, nonZeroExponents, count, bits, context);
+
+        return context.fromMontgomery(result);
+    }
+
+    /**
+     * todo Private Static Function direct(BigInteger[], BigInteger[], int, BigInteger): one modPow per term
+     *
+     * @param bases     the bases
+     * @param exponents the positive exponents
+     * @param count     number of terms
+     * @param modulus   the modulus
+     * @return BigInteger
+     */
+    private static @NotNull BigInteger direct(BigInteger[] bases, BigInteger[] exponents, int count,
+                                              BigInteger modulus) {
+        BigInteger result = BigInteger.ONE.mod(modulus);
+        for (int i = 0; i < count; i++) {
+            result = Util.mulMod(result, Util.modPow(bases[i], exponents[i], modulus), modulus);
+        }
+
+        return result;
+    }
+
+    /**
+     * todo Private Static Function straus(BigInteger[], BigInteger[], int, int, MontgomeryContext): interleaved windows
+     *
+     * @param bases     the bases in Montgomery form
+     * @param exponents the positive exponents
+     * @param count     number of terms
+     * @param bits      max bit length of the exponents
+     * @param context   Montgomery arithmetic
+     * @return BigInteger in Montgomery form
+     */
+    private static BigInteger straus(BigInteger[] bases, BigInteger[] exponents, int count, int bits,
+                                     @NotNull MontgomeryContext context) {
+        int window = STRAUS_WINDOW, size = 1 << window;
+        BigInteger[][] tables = new BigInteger[count][size];
+        for (int i = 0; i < count; i++) {
+            tables[i][1] = bases[i];
+            for (int j = 2; j < size; j++) {
+                tables[i][j] = context.multiply(tables[i][j - 1], bases[i]);
+            }
+        }
+
+        BigInteger result = null;
+        for (int offset = (bits - 1) / window * window; offset >= 0; offset -= window) {
+            if (result != null) {
+                for (int j = 0; j < window; j++) {
+                    result = context.multiply(result, result);
+                }
+            }
+            for (int i = 0; i < count; i++) {
+                int digit = digit(exponents[i], offset, window);
+                if (digit != 0) {
+                    result = result == null ? tables[i][digit] : context.multiply(result, tables[i][digit]);
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * todo Private Static Function pippenger(BigInteger[], BigInteger[], int, int, MontgomeryContext): bucket method
+     *
+     * @param bases     the bases in Montgomery form
+     * @param exponents the positive exponents
+     * @param count     number of terms
+     * @param bits      max bit length of the exponents
+     * @param context   Montgomery arithmetic
+     * @return BigInteger in Montgomery form
+     */
+    private static BigInteger pippenger(BigInteger[] bases, BigInteger[] exponents, int count, int bits,
+                                        @NotNull MontgomeryContext context) {
+        // about count + 2 ** (window + 1) products per window
+        int window = Math.max(2, Math.min(16, 31 - Integer.numberOfLeadingZeros(count) - 2));
+        BigInteger[] buckets = new BigInteger[1 << window];
+
+        BigInteger result = null;
+        for (int offset = (bits - 1) / window * window; offset >= 0; offset -= window) {
+            if (result != null) {
+                for (int j = 0; j < window; j++) {
+                    result = context.multiply(result, result);
+                }
+            }
+
+            Arrays.fill(buckets, null);
+            for (int i = 0; i < count; i++) {
+                int digit = digit(exponents[i], offset, window);
+                if (digit != 0) {
+                    buckets[digit] = buckets[digit] == null ? bases[i] : context.multiply(buckets[digit], bases[i]);
+                }
+            }
+
+            // prod(bucket[d] ** d) = prod over d of (bucket[d] * ... * bucket[max])
+            BigInteger running = null, sum = null;
+            for (int digit = buckets.length - 1; digit > 0; digit--) {
+                if (buckets[digit] != null) {
+                    running = running == null ? buckets[digit] : context.multiply(running, buckets[digit]);
+                }
+                if (running != null) {
+                    sum = sum == null ? running : context.multiply(sum, running);
+                }
+            }
+            if (sum != null) {
+                result = result == null ? sum : context.multiply(result, sum);
+            }
+        }
+
+        return result == null ? context.one() : result;
+    }
+
+    /**
+     * todo Private Static Function digit(BigInteger, int, int): bits [offset, offset + window) of exponent
+     *
+     * @param exponent the exponent
+     * @param offset   the lowest bit
+     * @param window   number of bits
+     * @return int
+     */
+    private static int digit(BigInteger exponent, int offset, int window) {
+        int digit = 0;
+        for (int j = window - 1; j >= 0; j--) {
+            digit = (digit << 1) | (exponent.testBit(offset + j) ? 1 : 0);
+        }
+
+        return digit;
+    }
+}
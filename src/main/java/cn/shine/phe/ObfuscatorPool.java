@@ -0,0 +1,207 @@
+package cn.shine.phe;
+
+/*
+ * @Project PHE-Maven
+ * @Package cn.shine.phe
+ * @Class   ObfuscatorPool
+ * @Version 1.0.0
+ * @Author  Zhan Shi
+ * @Time    2026/10/17 10:05
+ * @License MIT
+ */
+
+import org.jetbrains.annotations.NotNull;
+
+import java.math.BigInteger;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * todo Public Class ObfuscatorPool: precomputed obfuscators r ** n mod n ** 2 of a public key
+ * <p>
+ * Worker threads refill the pool up to the high watermark whenever it drops below the low watermark,
+ * so that the full-width modPow of encryption and re-randomization is moved out of the request path.
+ *
+ * @author Zhan Shi
+ */
+public class ObfuscatorPool {
+    /**
+     * publicKey: the public key of the obfuscators
+     */
+    final Paillier.PaillierPublicKey publicKey;
+    /**
+     * lowWatermark:  refill is started when the pool is smaller than it
+     * highWatermark: refill is stopped when the pool reaches it
+     * workerCount:   number of refill threads
+     */
+    private final int lowWatermark, highWatermark, workerCount;
+    /**
+     * pool: the precomputed obfuscators
+     */
+    private final ConcurrentLinkedQueue<BigInteger> pool = new ConcurrentLinkedQueue<>();
+    /**
+     * available: obfuscators in the pool
+     * reserved:  obfuscators in the pool and in computation
+     * active:    refill threads still running
+     */
+    private final AtomicInteger available = new AtomicInteger(), reserved = new AtomicInteger(),
+            active = new AtomicInteger();
+    /**
+     * hits:   take() and poll() served from the pool
+     * misses: take() and poll() that found the pool empty
+     */
+    private final AtomicLong hits = new AtomicLong(), misses = new AtomicLong();
+    /**
+     * workers: refill threads
+     */
+    private final ExecutorService workers;
+    /**
+     * closed: the pool is shut down
+     */
+    private volatile boolean closed = false;
+
+    /**
+     * todo Public Function ObfuscatorPool(PaillierPublicKey, int, int, int): Class ObfuscatorPool init
+     *
+     * @param publicKey     the public key of the obfuscators
+     * @param lowWatermark  refill is started when the pool is smaller than it
+     * @param highWatermark refill is stopped when the pool reaches it
+     * @param workerCount   number of refill threads
+     * @throws Util.ValueErrorException if the watermarks or the worker count are invalid
+     */
+    public ObfuscatorPool(@NotNull Paillier.PaillierPublicKey publicKey, int lowWatermark, int highWatermark,
+                          int workerCount) throws Util.ValueErrorException {
+        if (lowWatermark < 0 || highWatermark <= lowWatermark) {
+            String exception = "watermarks should satisfy 0 <= low < high but got low %s and high %s";
+            throw new Util.ValueErrorException(String.format(exception, lowWatermark, highWatermark));
+        }
+        if (workerCount <= 0) {
+            throw new Util.ValueErrorException("worker count should be positive");
+        }
+
+        this.publicKey = publicKey;
+        this.lowWatermark = lowWatermark;
+        this.highWatermark = highWatermark;
+        this.workerCount = workerCount;
+        this.workers = Executors.newFixedThreadPool(workerCount, runnable -> {
+            Thread thread = new Thread(runnable, "obfuscator-pool-" + publicKey);
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        refill();
+    }
+
+    /**
+     * todo Public Function take(): take an obfuscator, computed inline when the pool is empty
+     *
+     * @return BigInteger r ** n mod n ** 2
+     */
+    public @NotNull BigInteger take() {
+        BigInteger obfuscator = poll();
+
+        return obfuscator != null ? obfuscator : this.publicKey.computeObfuscator();
+    }
+
+    /**
+     * todo Public Function poll(): take an obfuscator, null when the pool is empty
+     * <p>
+     * For callers with a cheaper inline path than r ** n mod n ** 2, such as the CRT obfuscator of the private key.
+     *
+     * @return BigInteger r ** n mod n ** 2, null when the pool is empty
+     */
+    public BigInteger poll() {
+        BigInteger obfuscator = this.pool.poll();
+        if (obfuscator == null) {
+            this.misses.incrementAndGet();
+            refill();
+            return null;
+        }
+
+        this.hits.incrementAndGet();
+        this.reserved.decrementAndGet();
+        if (this.available.decrementAndGet() < this.lowWatermark) {
+            refill();
+        }
+
+        return obfuscator;
+    }
+
+    /**
+     * todo Public Function size(): get number of obfuscators in the pool
+     *
+     * @return int
+     */
+    public int size() {
+        return this.available.get();
+    }
+
+    /**
+     * todo Public Function getHits(): get number of take() and poll() served from the pool
+     *
+     * @return long
+     */
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    /**
+     * todo Public Function getMisses(): get number of take() and poll() that found the pool empty
+     *
+     * @return long
+     */
+    public long getMisses() {
+        return this.misses.get();
+    }
+
+    /**
+     * todo Public Function shutdown(): stop the refill threads and drop the obfuscators
+     */
+    public void shutdown() {
+        this.closed = true;
+        this.workers.shutdownNow();
+        this.pool.clear();
+        this.available.set(0);
+        this.reserved.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("<ObfuscatorPool for %s size=%s hits=%s misses=%s>", this.publicKey, size(),
+                getHits(), getMisses());
+    }
+
+    /**
+     * todo Private Function refill(): start the refill threads unless they are running
+     */
+    private void refill() {
+        if (this.closed || !this.active.compareAndSet(0, this.workerCount)) {
+            return;
+        }
+
+        for (int i = 0; i < this.workerCount; i++) {
+            this.workers.execute(this::fill);
+        }
+    }
+
+    /**
+     * todo Private Function fill(): compute obfuscators until the pool reaches the high watermark
+     */
+    private void fill() {
+        try {
+            while (!this.closed) {
+                if (this.reserved.incrementAndGet() > this.highWatermark) {
+                    this.reserved.decrementAndGet();
+                    break;
+                }
+                this.pool.offer(this.publicKey.computeObfuscator());
+                this.available.incrementAndGet();
+            }
+        } finally {
+            this.active.decrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,463 @@
+package cn.shine.phe;
+
+/*
+ * @Project PHE-Maven
+ * @Package cn.shine.phe
+ * @Class   PackedEncoder
+ * @Version 1.0.0
+ * @Author  Zhan Shi
+ * @Time    2026/10/17 17:10
+ * @License MIT
+ */
+
+import org.jetbrains.annotations.NotNull;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * todo Public Class PackedEncoder: pack several fixed-point numbers into the slots of one plaintext
+ * <p>
+ * Slot i holds bits [i * slotWidth, (i + 1) * slotWidth) of the plaintext with slotWidth = valueBits + guardBits.
+ * A value v is stored as round(v * BASE ** -exponent) + bias with bias = 2 ** (valueBits - 1), so every slot is
+ * non-negative and slot-wise sums never borrow from their neighbours. A packed number made of m biases holds
+ * values in [-m * bias, m * bias]; the guard bits keep 2 * m * bias below 2 ** slotWidth, so m may reach
+ * 2 ** guardBits - 1 through additions and scalar multiplications.
+ *
+ * @author Zhan Shi
+ */
+public class PackedEncoder {
+    /**
+     * MAX_SLOT_WIDTH: max bits of a slot, so that a slot fits in a long
+     */
+    public static final int MAX_SLOT_WIDTH = 62;
+    /**
+     * publicKey: the public key
+     */
+    public final Paillier.PaillierPublicKey publicKey;
+    /**
+     * valueBits: bits of a value, sign included
+     * guardBits: bits reserved for the carries of additions and multiplications
+     * slotWidth: valueBits + guardBits
+     * slots:     number of slots in a plaintext
+     * exponent:  the shared exponent of the values, as in EncodedNumber
+     */
+    public final int valueBits, guardBits, slotWidth, slots, exponent;
+    /**
+     * bias:      2 ** (valueBits - 1)
+     * maxBiases: 2 ** guardBits - 1, max number of biases in a slot
+     */
+    private final long bias, maxBiases;
+    /**
+     * nSquare:  n ** 2 of the public key
+     * biasPack: bias in every slot
+     */
+    private final BigInteger nSquare, biasPack;
+
+    /**
+     * todo Public Function PackedEncoder(PaillierPublicKey, int, int, int): Class PackedEncoder init
+     *
+     * @param publicKey the public key
+     * @param valueBits bits of a value, sign included
+     * @param guardBits bits reserved for the carries, at least 1
+     * @param exponent  the shared exponent of the values, values are rounded to multiples of BASE ** exponent
+     * @throws Util.ValueErrorException if the widths are out of range or no slot fits in the public key
+     */
+    public PackedEncoder(@NotNull Paillier.PaillierPublicKey publicKey, int valueBits, int guardBits, int exponent)
+            throws Util.ValueErrorException {
+        if (valueBits < 2 || guardBits < 1 || valueBits + guardBits > MAX_SLOT_WIDTH) {
+            String exception = "need valueBits >= 2, guardBits >= 1 and valueBits + guardBits <= %s but got %s and %s";
+            throw new Util.ValueErrorException(String.format(exception, MAX_SLOT_WIDTH, valueBits, guardBits));
+        }
+
+        this.publicKey = publicKey;
+        this.valueBits = valueBits;
+        this.guardBits = guardBits;
+        this.slotWidth = valueBits + guardBits;
+        // the plaintext stays below 2 ** (|n| - 1) <= n
+        this.slots = (publicKey.n.bitLength() - 1) / this.slotWidth;
+        this.exponent = exponent;
+        if (this.slots == 0) {
+            throw new Util.ValueErrorException(String.format("slot of %s bits does not fit", this.slotWidth));
+        }
+
+        this.bias = 1L << (valueBits - 1);
+        this.maxBiases = (1L << guardBits) - 1;
+        this.nSquare = publicKey.n.multiply(publicKey.n);
+        this.biasPack = pack(new long[0], 1);
+    }
+
+    /**
+     * todo Public Function encode(double[]): pack values into a plaintext
+     *
+     * @param values at most slots values
+     * @return BigInteger
+     * @throws Util.ValueErrorException if there are too many values or a value does not fit in valueBits
+     */
+    public @NotNull BigInteger encode(double @NotNull [] values) throws Util.ValueErrorException {
+        long[] integers = new long[values.length];
+        for (int i = 0; i < values.length; i++) {
+            if (Double.isNaN(values[i]) || Double.isInfinite(values[i])) {
+                throw new Util.ValueErrorException(String.format("value %s is not finite", i));
+            }
+            double scaled = Math.rint(Math.scalb(values[i], -EncodedNumber.LOG2_BASE * this.exponent));
+            if (Math.abs(scaled) > this.bias) {
+                throw new Util.ValueErrorException(String.format("value %s: %s needs more than %s bits", i, values[i],
+                        this.valueBits));
+            }
+            integers[i] = (long) scaled;
+        }
+
+        return encode(integers);
+    }
+
+    /**
+     * todo Public Function encode(long[]): pack integers, already scaled by BASE ** -exponent, into a plaintext
+     *
+     * @param values at most slots integers in [-2 ** (valueBits - 1), 2 ** (valueBits - 1)]
+     * @return BigInteger
+     * @throws Util.ValueErrorException if there are too many values or a value does not fit in valueBits
+     */
+    public @NotNull BigInteger encode(long @NotNull [] values) throws Util.ValueErrorException {
+        if (values.length > this.slots) {
+            String exception = "got %s values but only %s slots";
+            throw new Util.ValueErrorException(String.format(exception, values.length, this.slots));
+        }
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] < -this.bias || values[i] > this.bias) {
+                throw new Util.ValueErrorException(String.format("value %s: %s needs more than %s bits", i, values[i],
+                        this.valueBits));
+            }
+        }
+
+        return pack(values, 1);
+    }
+
+    /**
+     * todo Public Function decode(BigInteger, long, int): unpack a plaintext
+     *
+     * @param plaintext the plaintext
+     * @param biases    number of biases in every slot
+     * @param count     number of values
+     * @return double[]
+     */
+    public double @NotNull [] decode(@NotNull BigInteger plaintext, long biases, int count) {
+        long[] integers = decodeIntegers(plaintext, biases, count);
+        double[] values = new double[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = Math.scalb((double) integers[i], EncodedNumber.LOG2_BASE * this.exponent);
+        }
+
+        return values;
+    }
+
+    /**
+     * todo Public Function decodeIntegers(BigInteger, long, int): unpack a plaintext into scaled integers
+     *
+     * @param plaintext the plaintext
+     * @param biases    number of biases in every slot
+     * @param count     number of values
+     * @return long[]
+     */
+    public long @NotNull [] decodeIntegers(@NotNull BigInteger plaintext, long biases, int count) {
+        long mask = (1L << this.slotWidth) - 1, offset = biases * this.bias;
+        long[] values = new long[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = (plaintext.shiftRight(i * this.slotWidth).longValue() & mask) - offset;
+        }
+
+        return values;
+    }
+
+    /**
+     * todo Public Function encrypt(double[]): pack and encrypt values
+     *
+     * @param values at most slots values
+     * @return PackedEncryptedNumber
+     * @throws Util.ValueErrorException if there is no value, too many values or a value does not fit in valueBits
+     */
+    public @NotNull PackedEncryptedNumber encrypt(double @NotNull [] values) {
+        return new PackedEncryptedNumber(this, this.publicKey.rawEncrypt(encode(values), 1), values.length, 1);
+    }
+
+    /**
+     * todo Public Function encrypt(long[]): pack and encrypt integers, already scaled by BASE ** -exponent
+     *
+     * @param values at most slots integers
+     * @return PackedEncryptedNumber
+     * @throws Util.ValueErrorException if there is no value, too many values or a value does not fit in valueBits
+     */
+    public @NotNull PackedEncryptedNumber encrypt(long @NotNull [] values) {
+        return new PackedEncryptedNumber(this, this.publicKey.rawEncrypt(encode(values), 1), values.length, 1);
+    }
+
+    /**
+     * todo Public Function encryptAll(double[]): pack and encrypt any number of values, slots per ciphertext
+     *
+     * @param values the values
+     * @return List of PackedEncryptedNumber
+     */
+    public @NotNull List<PackedEncryptedNumber> encryptAll(double @NotNull [] values) {
+        List<PackedEncryptedNumber> packs = new ArrayList<>();
+        for (int from = 0; from < values.length; from += this.slots) {
+            int to = Math.min(values.length, from + this.slots);
+            packs.add(encrypt(Arrays.copyOfRange(values, from, to)));
+        }
+
+        return packs;
+    }
+
+    /**
+     * todo Public Function decrypt(PaillierPrivateKey, PackedEncryptedNumber): decrypt and unpack
+     *
+     * @param privateKey the private key
+     * @param packed     the packed encrypted number
+     * @return double[]
+     */
+    public double @NotNull [] decrypt(@NotNull Paillier.PaillierPrivateKey privateKey,
+                                      @NotNull PackedEncryptedNumber packed) {
+        checkEncoder(packed);
+
+        return decode(privateKey.rawDecrypt(packed.ciphertext), packed.biases, packed.count);
+    }
+
+    /**
+     * todo Public Function decryptAll(PaillierPrivateKey, List): decrypt in parallel and unpack into one array
+     *
+     * @param privateKey the private key
+     * @param packs      the packed encrypted numbers
+     * @return double[] the values of all packs, in order
+     * @throws Util.ValueErrorException if a pack fails to decrypt
+     */
+    public double @NotNull [] decryptAll(@NotNull Paillier.PaillierPrivateKey privateKey,
+                                         @NotNull List<PackedEncryptedNumber> packs) throws Util.ValueErrorException {
+        BigInteger[] ciphertexts = new BigInteger[packs.size()];
+        int total = 0;
+        for (int i = 0; i < ciphertexts.length; i++) {
+            checkEncoder(packs.get(i));
+            ciphertexts[i] = packs.get(i).ciphertext;
+            total += packs.get(i).count;
+        }
+
+        Paillier.BatchResult<BigInteger> plaintexts = privateKey.rawDecryptBatch(ciphertexts);
+        double[] values = new double[total];
+        for (int i = 0, offset = 0; i < ciphertexts.length; i++) {
+            PackedEncryptedNumber packed = packs.get(i);
+            double[] decoded = decode(plaintexts.get(i), packed.biases, packed.count);
+            System.arraycopy(decoded, 0, values, offset, decoded.length);
+            offset += decoded.length;
+        }
+
+        return values;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("<PackedEncoder slots=%s valueBits=%s guardBits=%s exponent=%s>", this.slots,
+                this.valueBits, this.guardBits, this.exponent);
+    }
+
+    /**
+     * todo Private Function pack(long[], long): sum(values[i] + biases * bias) << (i * slotWidth) over all slots
+     *
+     * @param values the integers, 0 for the missing ones
+     * @param biases number of biases in every slot
+     * @return BigInteger
+     */
+    private @NotNull BigInteger pack(long @NotNull [] values, long biases) {
+        BigInteger plaintext = BigInteger.ZERO;
+        for (int i = this.slots - 1; i >= 0; i--) {
+            long slot = (i < values.length ? values[i] : 0) + biases * this.bias;
+            plaintext = plaintext.shiftLeft(this.slotWidth).or(BigInteger.valueOf(slot));
+        }
+
+        return plaintext;
+    }
+
+    /**
+     * todo Private Function checkBiases(long): check a packed number stays within the guard bits
+     *
+     * @param biases number of biases in every slot
+     * @throws Util.OverflowErrorException if the slots may overflow
+     */
+    private void checkBiases(long biases) throws Util.OverflowErrorException {
+        if (biases > this.maxBiases) {
+            String exception = "%s biases overflow %s guard bits, at most %s are allowed";
+            throw new Util.OverflowErrorException(String.format(exception, biases, this.guardBits, this.maxBiases));
+        }
+    }
+
+    /**
+     * todo Private Function checkEncoder(PackedEncryptedNumber): check a packed number is made by this encoder
+     *
+     * @param packed the packed encrypted number
+     * @throws Util.ValueErrorException if it is made by another encoder
+     */
+    private void checkEncoder(@NotNull PackedEncryptedNumber packed) throws Util.ValueErrorException {
+        if (packed.encoder != this) {
+            throw new Util.ValueErrorException("Attempted to combine numbers packed by different encoders");
+        }
+    }
+
+    /**
+     * todo Public Static Class PackedEncryptedNumber: encryption of a packed plaintext
+     */
+    public static class PackedEncryptedNumber {
+        /**
+         * encoder: the encoder of the packed plaintext
+         */
+        public final PackedEncoder encoder;
+        /**
+         * ciphertext: the ciphertext
+         */
+        private final BigInteger ciphertext;
+        /**
+         * count:  number of values
+         * biases: number of biases in every slot
+         */
+        private final int count;
+        private final long biases;
+
+        /**
+         * todo Public Function PackedEncryptedNumber(PackedEncoder, BigInteger, int, long): Class PackedEncryptedNumber init
+         *
+         * @param encoder    the encoder of the packed plaintext
+         * @param ciphertext the ciphertext
+         * @param count      number of values, in 1 ... encoder.slots
+         * @param biases     number of biases in every slot
+         * @throws Util.ValueErrorException    if count is out of range
+         * @throws Util.OverflowErrorException if the slots may overflow
+         */
+        public PackedEncryptedNumber(@NotNull PackedEncoder encoder, @NotNull BigInteger ciphertext, int count,
+                                     long biases) throws Util.ValueErrorException, Util.OverflowErrorException {
+            if (count <= 0 || count > encoder.slots) {
+                String exception = "got %s values but a packed number holds 1 to %s";
+                throw new Util.ValueErrorException(String.format(exception, count, encoder.slots));
+            }
+            encoder.checkBiases(biases);
+
+            this.encoder = encoder;
+            this.ciphertext = ciphertext;
+            this.count = count;
+            this.biases = biases;
+        }
+
+        /**
+         * todo Public Function add(PackedEncryptedNumber): slot-wise this + other
+         *
+         * @param other the other packed number
+         * @return PackedEncryptedNumber
+         * @throws Util.ValueErrorException    if other is packed by another encoder
+         * @throws Util.OverflowErrorException if the slots may overflow
+         */
+        public @NotNull PackedEncryptedNumber add(@NotNull PackedEncryptedNumber other)
+                throws Util.ValueErrorException, Util.OverflowErrorException {
+            this.encoder.checkEncoder(other);
+
+            BigInteger sum = Util.mulMod(this.ciphertext, other.ciphertext, this.encoder.nSquare);
+
+            return new PackedEncryptedNumber(this.encoder, sum, Math.max(this.count, other.count),
+                    this.biases + other.biases);
+        }
+
+        /**
+         * todo Public Function add(double[]): slot-wise this + values
+         *
+         * @param values at most slots values
+         * @return PackedEncryptedNumber
+         * @throws Util.OverflowErrorException if the slots may overflow
+         */
+        public @NotNull PackedEncryptedNumber add(double @NotNull [] values) throws Util.OverflowErrorException {
+            BigInteger encrypted = this.encoder.publicKey.rawEncrypt(this.encoder.encode(values), 0);
+            BigInteger sum = Util.mulMod(this.ciphertext, encrypted, this.encoder.nSquare);
+
+            return new PackedEncryptedNumber(this.encoder, sum, Math.max(this.count, values.length), this.biases + 1);
+        }
+
+        /**
+         * todo Public Function subtract(PackedEncryptedNumber): slot-wise this - other
+         *
+         * @param other the other packed number
+         * @return PackedEncryptedNumber
+         * @throws Util.ValueErrorException    if other is packed by another encoder
+         * @throws Util.OverflowErrorException if the slots may overflow
+         */
+        public @NotNull PackedEncryptedNumber subtract(@NotNull PackedEncryptedNumber other)
+                throws Util.ValueErrorException, Util.OverflowErrorException {
+            return this.add(other.negate());
+        }
+
+        /**
+         * todo Public Function negate(): slot-wise -this
+         * <p>
+         * A slot holding v + m * bias becomes 2 * m * bias - (v + m * bias) = -v + m * bias, with no borrow.
+         *
+         * @return PackedEncryptedNumber
+         */
+        public @NotNull PackedEncryptedNumber negate() {
+            BigInteger twice = this.encoder.biasPack.multiply(BigInteger.valueOf(2 * this.biases));
+            BigInteger encrypted = this.encoder.publicKey.rawEncrypt(twice, 0);
+            BigInteger inverse = Util.invert(this.ciphertext, this.encoder.nSquare);
+            BigInteger negation = Util.mulMod(encrypted, inverse, this.encoder.nSquare);
+
+            return new PackedEncryptedNumber(this.encoder, negation, this.count, this.biases);
+        }
+
+        /**
+         * todo Public Function multiply(long): slot-wise this * scalar
+         *
+         * @param scalar the integer scalar
+         * @return PackedEncryptedNumber
+         * @throws Util.OverflowErrorException if the slots may overflow
+         */
+        public @NotNull PackedEncryptedNumber multiply(long scalar) throws Util.OverflowErrorException {
+            if (scalar == 0) {
+                return this.encoder.encrypt(new long[this.count]);
+            }
+            if (scalar < 0) {
+                return this.negate().multiply(scalar == Long.MIN_VALUE ? Long.MAX_VALUE : -scalar);
+            }
+
+            long biases = this.biases > Long.MAX_VALUE / scalar ? Long.MAX_VALUE : this.biases * scalar;
+            this.encoder.checkBiases(biases);
+            BigInteger product = Util.modPow(this.ciphertext, BigInteger.valueOf(scalar), this.encoder.nSquare);
+
+            return new PackedEncryptedNumber(this.encoder, product, this.count, biases);
+        }
+
+        /**
+         * todo Public Function ciphertext(): get the ciphertext
+         *
+         * @return BigInteger
+         */
+        public @NotNull BigInteger ciphertext() {
+            return this.ciphertext;
+        }
+
+        /**
+         * todo Public Function getCount(): get number of values
+         *
+         * @return int
+         */
+        public int getCount() {
+            return this.count;
+        }
+
+        /**
+         * todo Public Function getBiases(): get number of biases in every slot
+         *
+         * @return long
+         */
+        public long getBiases() {
+            return this.biases;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("<PackedEncryptedNumber count=%s biases=%s for %s>", this.count, this.biases,
+                    this.encoder);
+        }
+    }
+}
@@ -16,6 +16,8 @@ import org.jetbrains.annotations.NotNull;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.IntStream;
 
 /**
  * todo Public Class Paillier: Paillier Homomorphic Encryption
@@ -35,6 +37,10 @@ public class Paillier {
          * privateKey: the private key
          */
         public PaillierPrivateKey privateKey;
+        /**
+         * keyPool: pre-generated key pairs served by generate(PaillierPrivateKeyring, Integer), null when disabled
+         */
+        private static volatile PaillierKeyPool keyPool;
 
         /**
          * todo Public Function PaillierKeyPair(PaillierPublicKey, PaillierPrivateKey): Class PaillierKeyPair init
@@ -57,17 +63,8 @@ public class Paillier {
                 throw new Util.ValueErrorException("key length should not be zero");
             }
 
-            BigInteger p = null, q = null, n = null;
-            Integer nLen = 0;
-            while (!nLen.equals(nLength)) {
-                p = Util.getPrimeOver(nLength / 2);
-                q = p;
-                while (q.equals(p)) {
-                    q = Util.getPrimeOver(nLength / 2);
-                }
-                n = p.multiply(q);
-                nLen = n.bitLength();
-            }
+            BigInteger[] primes = PrimeGenerator.generatePair(nLength);
+            BigInteger p = primes[0], q = primes[1], n = p.multiply(q);
             PaillierPublicKey publicKey = new PaillierPublicKey(n);
             PaillierPrivateKey privateKey = new PaillierPrivateKey(publicKey, p, q);
 
@@ -82,17 +79,40 @@ public class Paillier {
          * @return PaillierKeyPair
          */
         public static @NotNull PaillierKeyPair generate(@NotNull PaillierPrivateKeyring privateKeyring, Integer nLength) {
-            PaillierKeyPair keyPair = generate(nLength);
+            PaillierKeyPool pool = keyPool;
+            PaillierKeyPair keyPair = pool == null ? generate(nLength) : pool.take(nLength);
             privateKeyring.add(keyPair.privateKey);
 
             return keyPair;
         }
+
+        /**
+         * todo Public Static Function setKeyPool(PaillierKeyPool): serve generate(PaillierPrivateKeyring, Integer) from a key pool
+         *
+         * @param pool the key pool, null to generate inline
+         */
+        public static void setKeyPool(PaillierKeyPool pool) {
+            keyPool = pool;
+        }
+
+        /**
+         * todo Public Static Function getKeyPool(): get the key pool
+         *
+         * @return PaillierKeyPool, null when disabled
+         */
+        public static PaillierKeyPool getKeyPool() {
+            return keyPool;
+        }
     }
 
     /**
      * todo Public Static Class PaillierPublicKey: Paillier Public Key
      */
     public static class PaillierPublicKey {
+        /**
+         * SCALE_FACTOR_CACHE: max k of the cached BASE ** k
+         */
+        private static final int SCALE_FACTOR_CACHE = 64;
         /**
          * n: the n param of public key
          */
@@ -106,6 +126,30 @@ public class Paillier {
          * maxInt: the max number of plaintext
          */
         final BigInteger maxInt;
+        /**
+         * obfuscatorPool: precomputed obfuscators, null when disabled
+         */
+        private volatile ObfuscatorPool obfuscatorPool;
+        /**
+         * shortExponentBits: bit length of x in the obfuscator h ** x mod n ** 2, 0 when disabled
+         */
+        private volatile int shortExponentBits = 0;
+        /**
+         * lazyObfuscation: encrypt() leaves ciphertexts un-obfuscated until ciphertext(true)
+         */
+        private volatile boolean lazyObfuscation = false;
+        /**
+         * fixedBaseTable: the windowed table of h = r0 ** n mod n ** 2, built lazily
+         */
+        private volatile FixedBaseTable fixedBaseTable;
+        /**
+         * montgomeryContext: Montgomery arithmetic modulo n ** 2, built lazily
+         */
+        private volatile MontgomeryContext montgomeryContext;
+        /**
+         * scaleFactors: exact BASE ** k for the exponent alignment, built lazily
+         */
+        private volatile BigInteger[] scaleFactors;
 
         /**
          * todo Public Function PaillierPublicKey(BigInteger): Class PaillierPublicKey init
@@ -181,25 +225,198 @@ public class Paillier {
                 }
             }
 
-            BigInteger r = rValue == 0 ? BigInteger.ONE : this.getRandomLtN();
-            BigInteger obfuscator = r.modPow(this.n, this.nSquare);
+            BigInteger obfuscator = rValue == 0 ? BigInteger.ONE : this.getObfuscator();
 
             return Util.mulMod(nudeCiphertext, obfuscator, this.nSquare);
         }
 
+        /**
+         * todo Public Function getObfuscator(): get obfuscator r ** n mod n ** 2, from the pool when enabled
+         *
+         * @return BigInteger
+         */
+        public @NotNull BigInteger getObfuscator() {
+            ObfuscatorPool pool = this.obfuscatorPool;
+
+            return pool == null ? this.computeObfuscator() : pool.take();
+        }
+
+        /**
+         * todo Public Function computeObfuscator(): compute obfuscator r ** n mod n ** 2
+         *
+         * @return BigInteger
+         */
+        public @NotNull BigInteger computeObfuscator() {
+            int exponentBits = this.shortExponentBits;
+            if (exponentBits > 0) {
+                return this.getFixedBaseTable(exponentBits).pow(RandomnessProvider.getDefault().nextBits(exponentBits));
+            }
+
+            return Util.modPow(this.getRandomLtN(), this.n, this.nSquare);
+        }
+
+        /**
+         * todo Public Function enableShortExponent(int): obfuscate with h ** x mod n ** 2 and a short random x
+         * <p>
+         * h = r0 ** n mod n ** 2 is fixed for the key, x has 2 * securityParameter bits.
+         *
+         * @param securityParameter the security parameter in bits
+         * @throws Util.ValueErrorException if x would not be shorter than n
+         */
+        public void enableShortExponent(int securityParameter) throws Util.ValueErrorException {
+            if (securityParameter <= 0 || 2 * securityParameter >= this.n.bitLength()) {
+                String exception = "security parameter should be in (0, %s) but got %s";
+                throw new Util.ValueErrorException(String.format(exception, this.n.bitLength() / 2, securityParameter));
+            }
+
+            this.shortExponentBits = 2 * securityParameter;
+        }
+
+        /**
+         * todo Public Function disableShortExponent(): obfuscate with r ** n mod n ** 2 again
+         */
+        public void disableShortExponent() {
+            this.shortExponentBits = 0;
+        }
+
+        /**
+         * todo Public Function enableLazyObfuscation(): defer obfuscation to the trust boundary
+         * <p>
+         * encrypt() returns the un-obfuscated 1 + n * m, scalar additions add it as well, and a ciphertext is
+         * re-randomized once by ciphertext(true) when it leaves, e.g. when it is serialized or sent to the
+         * party holding the private key. One obfuscator on a sum randomizes it as well as one on every addend,
+         * so sums and products of an obfuscated ciphertext count as obfuscated in this mode; it is meant for
+         * operands the receiver has not seen. By default every derived ciphertext is re-randomized when it leaves.
+         */
+        public void enableLazyObfuscation() {
+            this.lazyObfuscation = true;
+        }
+
+        /**
+         * todo Public Function disableLazyObfuscation(): obfuscate every encryption again
+         */
+        public void disableLazyObfuscation() {
+            this.lazyObfuscation = false;
+        }
+
+        /**
+         * todo Public Function isLazyObfuscation(): obfuscation is deferred or not
+         *
+         * @return boolean
+         */
+        public boolean isLazyObfuscation() {
+            return this.lazyObfuscation;
+        }
+
+        /**
+         * todo Public Function getMontgomeryContext(): get Montgomery arithmetic modulo n ** 2, build it on first use
+         *
+         * @return MontgomeryContext
+         */
+        public @NotNull MontgomeryContext getMontgomeryContext() {
+            MontgomeryContext context = this.montgomeryContext;
+            if (context == null) {
+                synchronized (this) {
+                    context = this.montgomeryContext;
+                    if (context == null) {
+                        context = new MontgomeryContext(this.nSquare);
+                        this.montgomeryContext = context;
+                    }
+                }
+            }
+
+            return context;
+        }
+
+        /**
+         * todo Function getScaleFactor(int): exact BASE ** k, cached for the small k that fit in maxInt
+         *
+         * @param k the power, non-negative
+         * @return BigInteger
+         */
+        @NotNull BigInteger getScaleFactor(int k) {
+            BigInteger[] factors = this.scaleFactors;
+            if (factors == null) {
+                synchronized (this) {
+                    factors = this.scaleFactors;
+                    if (factors == null) {
+                        int size = Math.min(SCALE_FACTOR_CACHE, (this.maxInt.bitLength() - 1) / EncodedNumber.LOG2_BASE) + 1;
+                        factors = new BigInteger[size];
+                        for (int i = 0; i < size; i++) {
+                            factors[i] = BigInteger.ONE.shiftLeft(EncodedNumber.LOG2_BASE * i);
+                        }
+                        this.scaleFactors = factors;
+                    }
+                }
+            }
+
+            return k < factors.length ? factors[k] : BigInteger.ONE.shiftLeft(EncodedNumber.LOG2_BASE * k);
+        }
+
+        /**
+         * todo Private Function getFixedBaseTable(int): get the table of h, build it on first use
+         *
+         * @param exponentBits bit length of x
+         * @return FixedBaseTable
+         */
+        private @NotNull FixedBaseTable getFixedBaseTable(int exponentBits) {
+            FixedBaseTable table = this.fixedBaseTable;
+            if (table == null || table.exponentBits < exponentBits) {
+                synchronized (this) {
+                    table = this.fixedBaseTable;
+                    if (table == null || table.exponentBits < exponentBits) {
+                        BigInteger h = table == null ? Util.modPow(this.getRandomLtN(), this.n, this.nSquare) : table.base;
+                        table = new FixedBaseTable(h, this.nSquare, exponentBits);
+                        this.fixedBaseTable = table;
+                    }
+                }
+            }
+
+            return table;
+        }
+
+        /**
+         * todo Public Function enableObfuscatorPool(int, int, int): precompute obfuscators in background threads
+         *
+         * @param lowWatermark  refill is started when the pool is smaller than it
+         * @param highWatermark refill is stopped when the pool reaches it
+         * @param workerCount   number of refill threads
+         * @return ObfuscatorPool
+         */
+        public synchronized @NotNull ObfuscatorPool enableObfuscatorPool(int lowWatermark, int highWatermark,
+                                                                        int workerCount) {
+            disableObfuscatorPool();
+            this.obfuscatorPool = new ObfuscatorPool(this, lowWatermark, highWatermark, workerCount);
+
+            return this.obfuscatorPool;
+        }
+
+        /**
+         * todo Public Function disableObfuscatorPool(): shutdown the obfuscator pool
+         */
+        public synchronized void disableObfuscatorPool() {
+            if (this.obfuscatorPool != null) {
+                this.obfuscatorPool.shutdown();
+                this.obfuscatorPool = null;
+            }
+        }
+
+        /**
+         * todo Public Function getObfuscatorPool(): get the obfuscator pool
+         *
+         * @return ObfuscatorPool, null when disabled
+         */
+        public ObfuscatorPool getObfuscatorPool() {
+            return this.obfuscatorPool;
+        }
+
         /**
          * todo Public Function getRandomLtN(): get random in (1, public.n)
          *
          * @return BigInteger
          */
         public @NotNull BigInteger getRandomLtN() {
-            Random rand = new Random();
-            BigInteger result;
-            do {
-                result = new BigInteger(this.n.bitLength(), rand).abs();
-            } while (result.equals(BigInteger.ZERO));
-
-            return result;
+            return RandomnessProvider.getDefault().nextBelow(this.n);
         }
 
         /**
@@ -231,7 +448,6 @@ public class Paillier {
          */
         public EncryptedNumber encrypt(Object value, Double precision, Integer rValue) {
             EncodedNumber encoding;
-            value = Util.wrapBig(value);
 
             if (value instanceof EncodedNumber) {
                 encoding = ((EncodedNumber) value);
@@ -256,6 +472,10 @@ public class Paillier {
          * @see PaillierPublicKey#encryptEncoded(EncodedNumber, Integer)
          */
         public @NotNull EncryptedNumber encryptEncoded(@NotNull EncodedNumber encoding) {
+            if (this.lazyObfuscation) {
+                return encryptLazy(encoding);
+            }
+
             Integer rValue = 0;
             EncryptedNumber encryptedNumber = encryptEncoded(encoding, rValue);
             encryptedNumber.obfuscate();
@@ -274,7 +494,126 @@ public class Paillier {
             Integer obfuscator = rValue == 0 ? 1 : rValue;
             BigInteger ciphertext = rawEncrypt(encoding.encoding, obfuscator);
 
-            return new EncryptedNumber(this, ciphertext, encoding.exponent);
+            return new EncryptedNumber(this, ciphertext, encoding.intExponent());
+        }
+
+        /**
+         * todo Public Function encryptLazy(Object): encrypt without obfuscation, whatever the mode
+         * <p>
+         * For intermediates that are combined with obfuscated ciphertexts, or re-randomized by ciphertext(true),
+         * before they leave.
+         *
+         * @param value number to be encrypted -> int, float or EncodedNumber
+         * @return EncryptedNumber un-obfuscated
+         */
+        public @NotNull EncryptedNumber encryptLazy(Object value) {
+            EncodedNumber encoding = value instanceof EncodedNumber
+                    ? (EncodedNumber) value : EncodedNumber.encode(this, value);
+            BigInteger ciphertext = rawEncrypt(encoding.encoding, 0);
+
+            return new EncryptedNumber(this, ciphertext, encoding.intExponent());
+        }
+
+        /**
+         * todo Public Function encryptBatch(long[]): parallel integers to encrypting with exponent 0
+         *
+         * @param values numbers to be encrypted
+         * @return EncryptedVector
+         */
+        public @NotNull EncryptedVector encryptBatch(@NotNull long[] values) {
+            BigInteger[] ciphertexts = new BigInteger[values.length];
+            IntStream.range(0, values.length).parallel()
+                    .forEach(i -> ciphertexts[i] = encryptScaled(BigInteger.valueOf(values[i])));
+
+            return new EncryptedVector(this, ciphertexts, 0);
+        }
+
+        /**
+         * todo Public Function encryptBatch(BigInteger[]): parallel integers to encrypting with exponent 0
+         *
+         * @param values numbers to be encrypted
+         * @return EncryptedVector
+         */
+        public @NotNull EncryptedVector encryptBatch(@NotNull BigInteger[] values) {
+            BigInteger[] ciphertexts = new BigInteger[values.length];
+            IntStream.range(0, values.length).parallel().forEach(i -> ciphertexts[i] = encryptScaled(values[i]));
+
+            return new EncryptedVector(this, ciphertexts, 0);
+        }
+
+        /**
+         * @param values numbers to be encrypted
+         * @return EncryptedVector
+         * @see PaillierPublicKey#encryptBatch(double[], Double, Integer)
+         */
+        public @NotNull EncryptedVector encryptBatch(@NotNull double[] values) {
+            return encryptBatch(values, null, null);
+        }
+
+        /**
+         * @param values    numbers to be encrypted
+         * @param precision the precision of encryption
+         * @return EncryptedVector
+         * @see PaillierPublicKey#encryptBatch(double[], Double, Integer)
+         */
+        public @NotNull EncryptedVector encryptBatch(@NotNull double[] values, Double precision) {
+            return encryptBatch(values, precision, null);
+        }
+
+        /**
+         * todo Public Function encryptBatch(double[], Double, Integer): parallel floats to encrypting
+         * <p>
+         * All values share one exponent: the one of precision, or else the smallest exponent encode() would pick
+         * for a single value, so that no value loses precision. Values are scaled from their binary form, there is
+         * no string or BigDecimal round trip.
+         *
+         * @param values      numbers to be encrypted
+         * @param precision   the precision of encryption
+         * @param maxExponent encoding maximum exponent
+         * @return EncryptedVector
+         * @throws Util.ValueErrorException if some value is not finite or is larger than maxInt
+         */
+        public @NotNull EncryptedVector encryptBatch(@NotNull double[] values, Double precision, Integer maxExponent)
+                throws Util.ValueErrorException {
+            int exponent;
+            if (precision != null) {
+                exponent = EncodedNumber.precisionExponent(precision);
+            } else {
+                exponent = 0;
+                for (double value : values) {
+                    if (value != 0) {
+                        exponent = FastMath.min(exponent, EncodedNumber.defaultExponent(value));
+                    }
+                }
+            }
+            if (maxExponent != null) {
+                exponent = FastMath.min(exponent, maxExponent);
+            }
+
+            int sharedExponent = exponent;
+            BigInteger[] ciphertexts = new BigInteger[values.length];
+            IntStream.range(0, values.length).parallel()
+                    .forEach(i -> ciphertexts[i] = encryptScaled(EncodedNumber.scaleFloat(values[i], sharedExponent)));
+
+            return new EncryptedVector(this, ciphertexts, sharedExponent);
+        }
+
+        /**
+         * todo Private Function encryptScaled(BigInteger): encrypt an encoded integer with one obfuscator
+         *
+         * @param intRep the integer representation of a number
+         * @return BigInteger
+         * @throws Util.ValueErrorException if intRep is larger than maxInt
+         */
+        private @NotNull BigInteger encryptScaled(@NotNull BigInteger intRep) throws Util.ValueErrorException {
+            if (intRep.abs().compareTo(this.maxInt) > 0) {
+                String exception = "Integer needs to be within +/- %s but got %s";
+                throw new Util.ValueErrorException(String.format(exception, this.maxInt, intRep.abs()));
+            }
+            // n * plaintext + 1 < n ** 2, no reduction needed
+            BigInteger nudeCiphertext = this.n.multiply(intRep.mod(this.n)).add(BigInteger.ONE);
+
+            return Util.mulMod(nudeCiphertext, this.getObfuscator(), this.nSquare);
         }
     }
 
@@ -297,8 +636,9 @@ public class Paillier {
          * pInverse:  the inverse of p
          * hp:        hFunction h(p)
          * hq:        hFunction h(q)
+         * pSquareInverse: the inverse of pSquare modulo qSquare
          */
-        private final BigInteger pSquare, qSquare, pInverse, hp, hq;
+        private final BigInteger pSquare, qSquare, pInverse, hp, hq, pSquareInverse;
 
         /**
          * todo Public Function PaillierPrivateKey(PaillierPublicKey, BigInteger, BigInteger): Class PaillierPrivateKey init
@@ -334,6 +674,7 @@ public class Paillier {
 
             this.hp = hFunction(this.p, this.pSquare);
             this.hq = hFunction(this.q, this.qSquare);
+            this.pSquareInverse = Util.invert(this.pSquare, this.qSquare);
         }
 
         @Override
@@ -380,6 +721,76 @@ public class Paillier {
             return new PaillierPrivateKey(publicKey, p, q);
         }
 
+        /**
+         * @param value number to be encrypted
+         * @return EncryptedNumber
+         * @see PaillierPrivateKey#encrypt(Object, Double)
+         */
+        public EncryptedNumber encrypt(Object value) {
+            return encrypt(value, null);
+        }
+
+        /**
+         * todo Public Function encrypt(Object, Double): plaintext to encrypting with the private key
+         *
+         * @param value     number to be encrypted
+         * @param precision the precision of encryption
+         * @return EncryptedNumber
+         */
+        public EncryptedNumber encrypt(Object value, Double precision) {
+            EncodedNumber encoding;
+
+            if (value instanceof EncodedNumber) {
+                encoding = (EncodedNumber) value;
+            } else if (precision == null) {
+                encoding = EncodedNumber.encode(this.publicKey, value);
+            } else {
+                encoding = EncodedNumber.encode(this.publicKey, value, precision);
+            }
+
+            return encryptEncoded(encoding);
+        }
+
+        /**
+         * todo Public Function encryptEncoded(EncodedNumber): encrypted number encode with a pooled or CRT obfuscator
+         * <p>
+         * The obfuscator comes from the obfuscator pool of the public key when it has one ready, so the encryptions
+         * of the third cloud platform take values from the pool as well; otherwise it is computed by CRT.
+         *
+         * @param encoding encoded number
+         * @return EncryptedNumber
+         */
+        public @NotNull EncryptedNumber encryptEncoded(@NotNull EncodedNumber encoding) {
+            ObfuscatorPool pool = this.publicKey.getObfuscatorPool();
+            BigInteger obfuscator = pool == null ? null : pool.poll();
+            if (obfuscator == null) {
+                obfuscator = computeObfuscator();
+            }
+
+            BigInteger nudeCiphertext = this.publicKey.rawEncrypt(encoding.encoding, 0);
+            BigInteger ciphertext = Util.mulMod(nudeCiphertext, obfuscator, this.publicKey.nSquare);
+            EncryptedNumber encryptedNumber = new EncryptedNumber(this.publicKey, ciphertext, encoding.intExponent());
+            encryptedNumber.isObfuscated = true;
+
+            return encryptedNumber;
+        }
+
+        /**
+         * todo Public Function computeObfuscator(): obfuscator modulo pSquare and qSquare, combined by crt
+         * <p>
+         * rp ** p mod p ** 2 is uniform in the subgroup of order p - 1 where r ** n mod p ** 2 lives, so the
+         * half-size exponents p and q give the same distribution as r ** n mod n ** 2.
+         *
+         * @return BigInteger
+         */
+        public @NotNull BigInteger computeObfuscator() {
+            BigInteger xp = Util.modPow(randomUnit(this.p, this.pSquare), this.p, this.pSquare);
+            BigInteger xq = Util.modPow(randomUnit(this.q, this.qSquare), this.q, this.qSquare);
+            BigInteger u = Util.mulMod(xq.subtract(xp), this.pSquareInverse, this.qSquare);
+
+            return xp.add(u.multiply(this.pSquare));
+        }
+
         /**
          * todo Public Function decrypt(EncryptedNumber): encrypted number to decrypting
          *
@@ -407,7 +818,7 @@ public class Paillier {
 
             boolean beSecure = false;
             BigInteger encoded = rawDecrypt(encryptedNumber.ciphertext(beSecure));
-            return new EncodedNumber(this.publicKey, encoded, encryptedNumber.exponent);
+            return new EncodedNumber(this.publicKey, encoded, encryptedNumber.intExponent());
         }
 
         /**
@@ -417,81 +828,204 @@ public class Paillier {
          * @return BigInteger
          */
         public @NotNull BigInteger rawDecrypt(@NotNull BigInteger ciphertext) {
-            BigInteger lFuncP = lFunction(ciphertext.modPow(this.p.subtract(BigInteger.ONE), this.pSquare), this.p);
-            BigInteger decryptToP = Util.mulMod(lFuncP, this.hp, this.p);
-
-            BigInteger lFuncQ = lFunction(ciphertext.modPow(this.q.subtract(BigInteger.ONE), this.qSquare), this.q);
-            BigInteger decryptToQ = Util.mulMod(lFuncQ, this.hq, this.q);
-
-            return crt(decryptToP, decryptToQ);
+            return crt(decryptToP(ciphertext), decryptToQ(ciphertext));
         }
 
+        /**
+         * @param ciphertexts the ciphertexts
+         * @return BatchResult
+         * @see PaillierPrivateKey#rawDecryptBatch(BigInteger[], ForkJoinPool)
+         */
+        public @NotNull BatchResult<BigInteger> rawDecryptBatch(@NotNull BigInteger[] ciphertexts) {
+            return rawDecryptBatch(ciphertexts, ForkJoinPool.commonPool());
+        }
 
         /**
-         * todo Public Function hFunction(BigInteger, BigInteger): Decryption using Chinese-remaindering
+         * todo Public Function rawDecryptBatch(BigInteger[], ForkJoinPool): parallel number decryption
+         * <p>
+         * The two CRT halves of every ciphertext are decrypted as separate tasks of the pool.
          *
-         * @param x       a param x
-         * @param xSquare the square of x
-         * @return BigInteger
+         * @param ciphertexts the ciphertexts
+         * @param pool        the fork join pool
+         * @return BatchResult in the order of ciphertexts
          */
-        public @NotNull BigInteger hFunction(BigInteger x, BigInteger xSquare) {
-            return Util.invert(lFunction(this.publicKey.g.modPow(x.subtract(BigInteger.ONE), xSquare), x), x);
+        public @NotNull BatchResult<BigInteger> rawDecryptBatch(@NotNull BigInteger[] ciphertexts,
+                                                                @NotNull ForkJoinPool pool) {
+            List<CompletableFuture<BigInteger>> futures = new ArrayList<>(ciphertexts.length);
+            for (BigInteger ciphertext : ciphertexts) {
+                futures.add(rawDecryptAsync(ciphertext, pool));
+            }
+
+            return BatchResult.collect(futures);
         }
 
         /**
-         * todo Public Function lFunction(BigInteger, BigInteger): l function of Paillier's paper
-         *
-         * @param x a param x
-         * @param p a param p
-         * @return BigInteger L(x,p) = (x-1)/p
+         * @param encryptedNumbers the encrypted numbers
+         * @return BatchResult
+         * @see PaillierPrivateKey#decryptBatch(List, ForkJoinPool)
          */
-        public @NotNull BigInteger lFunction(@NotNull BigInteger x, BigInteger p) {
-            return (x.subtract(BigInteger.ONE)).divide(p);
+        public @NotNull BatchResult<Object> decryptBatch(@NotNull List<EncryptedNumber> encryptedNumbers) {
+            return decryptBatch(encryptedNumbers, ForkJoinPool.commonPool());
         }
 
         /**
-         * todo Public Function crt(BigInteger, BigInteger): the Chinese Remainder Theorem as needed for decryption
+         * todo Public Function decryptBatch(List, ForkJoinPool): parallel encrypted numbers to decrypting
          *
-         * @param mp the solution modulo p
-         * @param mq the solution modulo q
-         * @return BigInteger the solution modulo n=pq
+         * @param encryptedNumbers the encrypted numbers
+         * @param pool             the fork join pool
+         * @return BatchResult -> BigInteger or BigDecimal, in the order of encryptedNumbers
          */
-        public @NotNull BigInteger crt(BigInteger mp, @NotNull BigInteger mq) {
-            BigInteger u = Util.mulMod(mq.subtract(mp), this.pInverse, this.q);
+        public @NotNull BatchResult<Object> decryptBatch(@NotNull List<EncryptedNumber> encryptedNumbers,
+                                                         @NotNull ForkJoinPool pool) {
+            List<CompletableFuture<Object>> futures = new ArrayList<>(encryptedNumbers.size());
+            for (EncryptedNumber encryptedNumber : encryptedNumbers) {
+                futures.add(decryptAsync(encryptedNumber, pool));
+            }
 
-            return mp.add(u.multiply(this.p));
+            return BatchResult.collect(futures);
         }
-    }
 
-    /**
-     * todo Public Static Class PaillierPrivateKeyring: Paillier Private Keyring
-     */
-    public static class PaillierPrivateKeyring {
         /**
-         * keyring: the private keyring
+         * todo Function decryptAsync(EncryptedNumber, Executor): decrypt the CRT halves as two tasks
+         *
+         * @param encryptedNumber the encrypted number
+         * @param executor        the executor of the tasks
+         * @return CompletableFuture -> BigInteger or BigDecimal
          */
-        public HashMap<PaillierPublicKey, PaillierPrivateKey> keyring = new HashMap<>();
+        @NotNull CompletableFuture<Object> decryptAsync(EncryptedNumber encryptedNumber, Executor executor) {
+            if (encryptedNumber == null || this.publicKey != encryptedNumber.publicKey) {
+                CompletableFuture<Object> failed = new CompletableFuture<>();
+                failed.completeExceptionally(
+                        new Util.ValueErrorException("encrypted_number was encrypted against a different key"));
+                return failed;
+            }
+
+            boolean beSecure = false;
+            int exponent = encryptedNumber.intExponent();
+            return rawDecryptAsync(encryptedNumber.ciphertext(beSecure), executor)
+                    .thenApply(encoded -> new EncodedNumber(this.publicKey, encoded, exponent).decode());
+        }
 
         /**
-         * @see PaillierPrivateKeyring#PaillierPrivateKeyring(ArrayList)
+         * todo Private Function rawDecryptAsync(BigInteger, Executor): decrypt the CRT halves as two tasks
+         *
+         * @param ciphertext the ciphertext
+         * @param executor   the executor of the tasks
+         * @return CompletableFuture
          */
-        public PaillierPrivateKeyring() {
+        private @NotNull CompletableFuture<BigInteger> rawDecryptAsync(BigInteger ciphertext, Executor executor) {
+            CompletableFuture<BigInteger> toP = CompletableFuture.supplyAsync(() -> decryptToP(ciphertext), executor);
+            CompletableFuture<BigInteger> toQ = CompletableFuture.supplyAsync(() -> decryptToQ(ciphertext), executor);
 
+            return toP.thenCombine(toQ, this::crt);
         }
 
         /**
-         * todo Public Function PaillierPrivateKeyring(ArrayList): Class PaillierPrivateKeyring init
+         * todo Private Function decryptToP(BigInteger): the half decryption modulo p
          *
-         * @param privateKeys the private keys
+         * @param ciphertext the ciphertext
+         * @return BigInteger
          */
-        public PaillierPrivateKeyring(@NotNull ArrayList<PaillierPrivateKey> privateKeys) {
-            for (PaillierPrivateKey privateKey : privateKeys) {
-                this.keyring.put(privateKey.publicKey, privateKey);
-            }
+        private @NotNull BigInteger decryptToP(@NotNull BigInteger ciphertext) {
+            BigInteger lFuncP = lFunction(Util.modPow(ciphertext, this.p.subtract(BigInteger.ONE), this.pSquare), this.p);
+
+            return Util.mulMod(lFuncP, this.hp, this.p);
         }
 
         /**
-         * todo Public Function get(PaillierPublicKey): get private key corresponding to public key
+         * todo Private Function decryptToQ(BigInteger): the half decryption modulo q
+         *
+         * @param ciphertext the ciphertext
+         * @return BigInteger
+         */
+        private @NotNull BigInteger decryptToQ(@NotNull BigInteger ciphertext) {
+            BigInteger lFuncQ = lFunction(Util.modPow(ciphertext, this.q.subtract(BigInteger.ONE), this.qSquare), this.q);
+
+            return Util.mulMod(lFuncQ, this.hq, this.q);
+        }
+
+
+        /**
+         * todo Private Function randomUnit(BigInteger, BigInteger): get random in (1, xSquare) coprime to x
+         *
+         * @param x       a prime factor of n
+         * @param xSquare the square of x
+         * @return BigInteger
+         */
+        private @NotNull BigInteger randomUnit(BigInteger x, @NotNull BigInteger xSquare) {
+            BigInteger result;
+            do {
+                result = RandomnessProvider.getDefault().nextBits(xSquare.bitLength()).mod(xSquare);
+            } while (result.mod(x).equals(BigInteger.ZERO));
+
+            return result;
+        }
+
+        /**
+         * todo Public Function hFunction(BigInteger, BigInteger): Decryption using Chinese-remaindering
+         *
+         * @param x       a param x
+         * @param xSquare the square of x
+         * @return BigInteger
+         */
+        public @NotNull BigInteger hFunction(BigInteger x, BigInteger xSquare) {
+            return Util.invert(lFunction(Util.modPow(this.publicKey.g, x.subtract(BigInteger.ONE), xSquare), x), x);
+        }
+
+        /**
+         * todo Public Function lFunction(BigInteger, BigInteger): l function of Paillier's paper
+         *
+         * @param x a param x
+         * @param p a param p
+         * @return BigInteger L(x,p) = (x-1)/p
+         */
+        public @NotNull BigInteger lFunction(@NotNull BigInteger x, BigInteger p) {
+            return (x.subtract(BigInteger.ONE)).divide(p);
+        }
+
+        /**
+         * todo Public Function crt(BigInteger, BigInteger): the Chinese Remainder Theorem as needed for decryption
+         *
+         * @param mp the solution modulo p
+         * @param mq the solution modulo q
+         * @return BigInteger the solution modulo n=pq
+         */
+        public @NotNull BigInteger crt(BigInteger mp, @NotNull BigInteger mq) {
+            BigInteger u = Util.mulMod(mq.subtract(mp), this.pInverse, this.q);
+
+            return mp.add(u.multiply(this.p));
+        }
+    }
+
+    /**
+     * todo Public Static Class PaillierPrivateKeyring: Paillier Private Keyring
+     */
+    public static class PaillierPrivateKeyring {
+        /**
+         * keyring: the private keyring
+         */
+        public HashMap<PaillierPublicKey, PaillierPrivateKey> keyring = new HashMap<>();
+
+        /**
+         * @see PaillierPrivateKeyring#PaillierPrivateKeyring(ArrayList)
+         */
+        public PaillierPrivateKeyring() {
+
+        }
+
+        /**
+         * todo Public Function PaillierPrivateKeyring(ArrayList): Class PaillierPrivateKeyring init
+         *
+         * @param privateKeys the private keys
+         */
+        public PaillierPrivateKeyring(@NotNull ArrayList<PaillierPrivateKey> privateKeys) {
+            for (PaillierPrivateKey privateKey : privateKeys) {
+                this.keyring.put(privateKey.publicKey, privateKey);
+            }
+        }
+
+        /**
+         * todo Public Function get(PaillierPublicKey): get private key corresponding to public key
          *
          * @param key the public key
          * @return PaillierPrivateKey
@@ -547,6 +1081,280 @@ public class Paillier {
 
             return relevantPrivateKey.decrypt(encryptedNumber);
         }
+
+        /**
+         * @param encryptedNumbers the encrypted numbers
+         * @return BatchResult
+         * @see PaillierPrivateKeyring#decryptBatch(List, ForkJoinPool)
+         */
+        public @NotNull BatchResult<Object> decryptBatch(@NotNull List<EncryptedNumber> encryptedNumbers) {
+            return decryptBatch(encryptedNumbers, ForkJoinPool.commonPool());
+        }
+
+        /**
+         * todo Public Function decryptBatch(List, ForkJoinPool): parallel decrypted ciphertexts of several keys
+         *
+         * @param encryptedNumbers the encrypted numbers, may be encrypted against different keys
+         * @param pool             the fork join pool
+         * @return BatchResult -> BigInteger or BigDecimal, in the order of encryptedNumbers
+         */
+        public @NotNull BatchResult<Object> decryptBatch(@NotNull List<EncryptedNumber> encryptedNumbers,
+                                                         @NotNull ForkJoinPool pool) {
+            List<CompletableFuture<Object>> futures = new ArrayList<>(encryptedNumbers.size());
+            for (EncryptedNumber encryptedNumber : encryptedNumbers) {
+                PaillierPrivateKey relevantPrivateKey =
+                        encryptedNumber == null ? null : this.keyring.get(encryptedNumber.publicKey);
+                if (relevantPrivateKey == null) {
+                    CompletableFuture<Object> failed = new CompletableFuture<>();
+                    failed.completeExceptionally(new Util.ValueErrorException("no private key in the keyring"));
+                    futures.add(failed);
+                } else {
+                    futures.add(relevantPrivateKey.decryptAsync(encryptedNumber, pool));
+                }
+            }
+
+            return BatchResult.collect(futures);
+        }
+    }
+
+    /**
+     * todo Public Static Class BatchResult: results of a batch operation, with the exception of every element
+     *
+     * @param <T> type of the results
+     */
+    public static class BatchResult<T> {
+        /**
+         * values: the results, null where failed
+         */
+        private final List<T> values;
+        /**
+         * errors: the exceptions, null where succeeded
+         */
+        private final List<Throwable> errors;
+
+        /**
+         * todo Function BatchResult(List, List): Class BatchResult init
+         *
+         * @param values the results
+         * @param errors the exceptions
+         */
+        BatchResult(List<T> values, List<Throwable> errors) {
+            this.values = values;
+            this.errors = errors;
+        }
+
+        /**
+         * todo Static Function collect(List): wait for the futures and keep the exception of every element
+         *
+         * @param futures the futures
+         * @param <T>     type of the results
+         * @return BatchResult
+         */
+        static <T> @NotNull BatchResult<T> collect(@NotNull List<CompletableFuture<T>> futures) {
+            List<T> values = new ArrayList<>(Collections.nCopies(futures.size(), null));
+            List<Throwable> errors = new ArrayList<>(Collections.nCopies(futures.size(), null));
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    values.set(i, futures.get(i).join());
+                } catch (CompletionException | CancellationException e) {
+                    errors.set(i, e.getCause() == null ? e : e.getCause());
+                }
+            }
+
+            return new BatchResult<>(values, errors);
+        }
+
+        /**
+         * todo Public Function size(): get number of elements
+         *
+         * @return int
+         */
+        public int size() {
+            return this.values.size();
+        }
+
+        /**
+         * todo Public Function get(int): get the result of an element
+         *
+         * @param index index of the element
+         * @return T
+         * @throws Util.ValueErrorException if the element failed, with the exception as cause
+         */
+        public T get(int index) throws Util.ValueErrorException {
+            Throwable error = this.errors.get(index);
+            if (error != null) {
+                Util.ValueErrorException exception =
+                        new Util.ValueErrorException(String.format("element %s failed: %s", index, error));
+                exception.initCause(error);
+                throw exception;
+            }
+
+            return this.values.get(index);
+        }
+
+        /**
+         * todo Public Function getError(int): get the exception of an element
+         *
+         * @param index index of the element
+         * @return Throwable, null if the element succeeded
+         */
+        public Throwable getError(int index) {
+            return this.errors.get(index);
+        }
+
+        /**
+         * todo Public Function isFailed(int): the element failed or not
+         *
+         * @param index index of the element
+         * @return boolean
+         */
+        public boolean isFailed(int index) {
+            return this.errors.get(index) != null;
+        }
+
+        /**
+         * todo Public Function hasErrors(): some element failed or not
+         *
+         * @return boolean
+         */
+        public boolean hasErrors() {
+            for (Throwable error : this.errors) {
+                if (error != null) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        /**
+         * todo Public Function values(): get all results
+         *
+         * @return List
+         * @throws Util.ValueErrorException if some element failed
+         */
+        public @NotNull List<T> values() throws Util.ValueErrorException {
+            for (int i = 0; i < size(); i++) {
+                get(i);
+            }
+
+            return Collections.unmodifiableList(this.values);
+        }
+    }
+
+    /**
+     * todo Public Static Class EncryptedVector: Encrypted numbers sharing a public key and an exponent
+     */
+    public static class EncryptedVector implements Iterable<EncryptedNumber> {
+        /**
+         * publicKey: the public key of the encrypted numbers
+         */
+        public final PaillierPublicKey publicKey;
+        /**
+         * exponent: the shared exponent of the encrypted numbers, the BigInteger view of intExponent
+         */
+        public final BigInteger exponent;
+        /**
+         * intExponent: the shared exponent of the encrypted numbers
+         */
+        final int intExponent;
+        /**
+         * ciphertexts: the obfuscated ciphertexts
+         */
+        private final BigInteger[] ciphertexts;
+
+        /**
+         * todo Public Function EncryptedVector(PaillierPublicKey, BigInteger[], BigInteger): Class EncryptedVector init
+         *
+         * @param publicKey   the public key of the encrypted numbers
+         * @param ciphertexts the obfuscated ciphertexts
+         * @param exponent    the shared exponent of the encrypted numbers
+         * @throws Util.OverflowErrorException if exponent does not fit in an int
+         */
+        public EncryptedVector(PaillierPublicKey publicKey, @NotNull BigInteger[] ciphertexts, BigInteger exponent)
+                throws Util.OverflowErrorException {
+            this(publicKey, ciphertexts, EncodedNumber.toExponent(exponent));
+        }
+
+        /**
+         * todo Public Function EncryptedVector(PaillierPublicKey, BigInteger[], int): Class EncryptedVector init
+         *
+         * @param publicKey   the public key of the encrypted numbers
+         * @param ciphertexts the obfuscated ciphertexts
+         * @param exponent    the shared exponent of the encrypted numbers
+         */
+        public EncryptedVector(PaillierPublicKey publicKey, @NotNull BigInteger[] ciphertexts, int exponent) {
+            this.publicKey = publicKey;
+            this.ciphertexts = ciphertexts;
+            this.exponent = EncodedNumber.exponentOf(exponent);
+            this.intExponent = exponent;
+        }
+
+        /**
+         * todo Public Function size(): get number of encrypted numbers
+         *
+         * @return int
+         */
+        public int size() {
+            return this.ciphertexts.length;
+        }
+
+        /**
+         * todo Public Function ciphertext(int): get a ciphertext
+         *
+         * @param index the index
+         * @return BigInteger
+         */
+        public BigInteger ciphertext(int index) {
+            return this.ciphertexts[index];
+        }
+
+        /**
+         * todo Public Function get(int): get an encrypted number
+         *
+         * @param index the index
+         * @return EncryptedNumber
+         */
+        public @NotNull EncryptedNumber get(int index) {
+            EncryptedNumber encryptedNumber = new EncryptedNumber(this.publicKey, this.ciphertexts[index], this.intExponent);
+            encryptedNumber.isObfuscated = true;
+
+            return encryptedNumber;
+        }
+
+        /**
+         * todo Public Function toList(): get all encrypted numbers
+         *
+         * @return List
+         */
+        public @NotNull List<EncryptedNumber> toList() {
+            List<EncryptedNumber> encryptedNumbers = new ArrayList<>(size());
+            for (EncryptedNumber encryptedNumber : this) {
+                encryptedNumbers.add(encryptedNumber);
+            }
+
+            return encryptedNumbers;
+        }
+
+        @Override
+        public @NotNull Iterator<EncryptedNumber> iterator() {
+            return new Iterator<EncryptedNumber>() {
+                private int index = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return this.index < size();
+                }
+
+                @Override
+                public EncryptedNumber next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    return get(this.index++);
+                }
+            };
+        }
     }
 
     /**
@@ -558,9 +1366,16 @@ public class Paillier {
          */
         public PaillierPublicKey publicKey;
         /**
-         * exponent: the exponent of the encrypted number
+         * exponent: the exponent of the encrypted number, the BigInteger view of intExponent; an assigned value is
+         * picked up by intExponent()
          */
         public BigInteger exponent;
+        /**
+         * intExponent:   the exponent of the encrypted number, the one the arithmetic works on
+         * intExponentOf: the exponent intExponent was derived from
+         */
+        private final int intExponent;
+        private final BigInteger intExponentOf;
         /**
          * ciphertext: the ciphertext of the encrypted number
          */
@@ -569,6 +1384,10 @@ public class Paillier {
          * isObfuscated: the encrypted number is confused or not
          */
         private boolean isObfuscated;
+        /**
+         * isMontgomery: the ciphertext is kept as ciphertext * R mod n ** 2 of the public key's MontgomeryContext
+         */
+        private boolean isMontgomery;
 
         /**
          * @param publicKey  the public key of the encrypted number
@@ -576,7 +1395,7 @@ public class Paillier {
          * @see EncodedNumber#EncodedNumber(PaillierPublicKey, BigInteger, BigInteger)
          */
         public EncryptedNumber(PaillierPublicKey publicKey, BigInteger ciphertext) {
-            new EncryptedNumber(publicKey, ciphertext, BigInteger.ZERO);
+            this(publicKey, ciphertext, 0);
         }
 
         /**
@@ -585,14 +1404,66 @@ public class Paillier {
          * @param publicKey  the public key of the encrypted number
          * @param ciphertext the ciphertext of the encrypted number
          * @param exponent   the exponent of the encrypted number
+         * @throws Util.OverflowErrorException if exponent does not fit in an int
          */
-        public EncryptedNumber(PaillierPublicKey publicKey, BigInteger ciphertext, BigInteger exponent) {
+        public EncryptedNumber(PaillierPublicKey publicKey, BigInteger ciphertext, BigInteger exponent)
+                throws Util.OverflowErrorException {
+            this(publicKey, ciphertext, EncodedNumber.toExponent(exponent));
+        }
+
+        /**
+         * todo Public Function EncryptedNumber(PaillierPublicKey, BigInteger, int): Class EncryptedNumber init
+         *
+         * @param publicKey  the public key of the encrypted number
+         * @param ciphertext the ciphertext of the encrypted number
+         * @param exponent   the exponent of the encrypted number
+         */
+        public EncryptedNumber(PaillierPublicKey publicKey, BigInteger ciphertext, int exponent) {
             this.publicKey = publicKey;
             this.ciphertext = ciphertext;
-            this.exponent = exponent;
+            this.exponent = EncodedNumber.exponentOf(exponent);
+            this.intExponent = exponent;
+            this.intExponentOf = this.exponent;
             this.isObfuscated = false;
         }
 
+        /**
+         * todo Public Function EncryptedNumber(PaillierPublicKey, BigInteger, int, boolean): Class EncryptedNumber init
+         * <p>
+         * For a ciphertext received from another party that already re-randomized it, so that it is not
+         * obfuscated again before it is sent on.
+         *
+         * @param publicKey    the public key of the encrypted number
+         * @param ciphertext   the ciphertext of the encrypted number
+         * @param exponent     the exponent of the encrypted number
+         * @param isObfuscated the ciphertext is re-randomized or not
+         */
+        public EncryptedNumber(PaillierPublicKey publicKey, BigInteger ciphertext, int exponent, boolean isObfuscated) {
+            this(publicKey, ciphertext, exponent);
+            this.isObfuscated = isObfuscated;
+        }
+
+        /**
+         * todo Public Function getExponent(): get the exponent without the BigInteger
+         *
+         * @return int
+         */
+        public int getExponent() {
+            return this.intExponent();
+        }
+
+        /**
+         * todo Function intExponent(): the int exponent, re-derived if the public exponent field was assigned
+         *
+         * @return int
+         * @throws Util.OverflowErrorException if an assigned exponent does not fit in an int
+         */
+        int intExponent() {
+            BigInteger exponent = this.exponent;
+
+            return exponent == this.intExponentOf ? this.intExponent : EncodedNumber.toExponent(exponent);
+        }
+
         /**
          * todo Public Function add(Object): add an int, float, EncryptedNumber or EncodedNumber
          *
@@ -606,7 +1477,6 @@ public class Paillier {
             } else if (other instanceof EncodedNumber) {
                 return addEncoded((EncodedNumber) other);
             } else {
-                other = Util.wrapBig(other);
                 return addScalar(other);
             }
         }
@@ -626,14 +1496,19 @@ public class Paillier {
             } else if (other instanceof EncodedNumber) {
                 encoding = (EncodedNumber) other;
             } else {
-                other = Util.wrapBig(other);
                 encoding = EncodedNumber.encode(this.publicKey, other);
             }
 
             BigInteger product = rawMul(encoding.encoding);
-            BigInteger exponent = this.exponent.add(encoding.exponent);
+            int exponent = EncodedNumber.addExponents(this.intExponent(), encoding.intExponent());
+
+            EncryptedNumber encryptedNumber = new EncryptedNumber(this.publicKey, product, exponent);
+            // c ** k keeps the randomness of c unless k is 0, but it is re-randomized before it leaves unless
+            // obfuscation is deferred: whoever has seen c could tell c ** k from it
+            encryptedNumber.isObfuscated = this.publicKey.lazyObfuscation && this.isObfuscated
+                    && encoding.encoding.signum() != 0;
 
-            return new EncryptedNumber(this.publicKey, product, exponent);
+            return encryptedNumber;
         }
 
         /**
@@ -645,11 +1520,15 @@ public class Paillier {
          */
         public EncryptedNumber subtract(Object other) throws Util.ValueErrorException {
             if (other instanceof EncryptedNumber) {
-                return this.add(((EncryptedNumber) other).multiply(-1));
+                return subtractEncrypted((EncryptedNumber) other);
             } else if (other instanceof EncodedNumber) {
                 EncryptedNumber encryptedNumber = this.publicKey.encrypt(other);
 
                 return this.add(encryptedNumber.multiply(-1));
+            } else if (other instanceof Double) {
+                return this.add(-(Double) other);
+            } else if ((other instanceof Integer || other instanceof Long) && ((Number) other).longValue() != Long.MIN_VALUE) {
+                return this.add(-((Number) other).longValue());
             } else {
                 other = Util.wrapBig(other);
                 if (other instanceof BigInteger) {
@@ -683,6 +1562,115 @@ public class Paillier {
             }
         }
 
+        /**
+         * todo Public Static Function linearCombination(EncryptedNumber[], Object[]): sum(xs[i] * weights[i])
+         * <p>
+         * The product of xs[i] ** weights[i] is computed by one multi-exponentiation, with the exponents aligned
+         * once by scaling the weights, instead of one modPow and one addition per term.
+         *
+         * @param xs      the encrypted numbers, against the same public key
+         * @param weights the weights -> int, float or EncodedNumber
+         * @return EncryptedNumber
+         * @throws Util.ValueErrorException if xs is empty, the lengths differ or the public keys do not match
+         */
+        public static @NotNull EncryptedNumber linearCombination(@NotNull EncryptedNumber[] xs, @NotNull Object[] weights)
+                throws Util.ValueErrorException {
+            if (xs.length == 0 || xs.length != weights.length) {
+                String exception = "got %s encrypted numbers and %s weights";
+                throw new Util.ValueErrorException(String.format(exception, xs.length, weights.length));
+            }
+
+            PaillierPublicKey publicKey = xs[0].publicKey;
+            BigInteger[] ciphertexts = new BigInteger[xs.length];
+            EncodedNumber[] encodings = new EncodedNumber[xs.length];
+            int[] exponents = new int[xs.length];
+            for (int i = 0; i < xs.length; i++) {
+                if (xs[i].publicKey != publicKey) {
+                    throw new Util.ValueErrorException("Attempted to add numbers encoded against different public keys");
+                }
+                ciphertexts[i] = xs[i].ciphertext(false);
+                encodings[i] = weights[i] instanceof EncodedNumber
+                        ? (EncodedNumber) weights[i] : EncodedNumber.encode(publicKey, weights[i]);
+                exponents[i] = EncodedNumber.addExponents(xs[i].intExponent(), encodings[i].intExponent());
+            }
+
+            return combine(publicKey, ciphertexts, encodings, exponents);
+        }
+
+        /**
+         * todo Public Static Function dot(EncryptedVector, double[]): sum(vector[i] * weights[i])
+         *
+         * @param vector  the encrypted vector
+         * @param weights the weights
+         * @return EncryptedNumber
+         * @throws Util.ValueErrorException if the vector is empty or the lengths differ
+         * @see EncryptedNumber#linearCombination(EncryptedNumber[], Object[])
+         */
+        public static @NotNull EncryptedNumber dot(@NotNull EncryptedVector vector, double @NotNull [] weights)
+                throws Util.ValueErrorException {
+            if (vector.size() == 0 || vector.size() != weights.length) {
+                String exception = "got %s encrypted numbers and %s weights";
+                throw new Util.ValueErrorException(String.format(exception, vector.size(), weights.length));
+            }
+
+            BigInteger[] ciphertexts = new BigInteger[weights.length];
+            EncodedNumber[] encodings = new EncodedNumber[weights.length];
+            int[] exponents = new int[weights.length];
+            for (int i = 0; i < weights.length; i++) {
+                ciphertexts[i] = vector.ciphertext(i);
+                encodings[i] = EncodedNumber.encode(vector.publicKey, weights[i], null, null);
+                exponents[i] = EncodedNumber.addExponents(vector.intExponent, encodings[i].intExponent());
+            }
+
+            return combine(vector.publicKey, ciphertexts, encodings, exponents);
+        }
+
+        /**
+         * todo Private Static Function combine(PaillierPublicKey, BigInteger[], EncodedNumber[], int[]): prod(c ** k)
+         * <p>
+         * Term i has exponent exponents[i]; its weight is multiplied by BASE ** (exponents[i] - min(exponents)).
+         * Negative weights go to a second product which is inverted once at the end.
+         *
+         * @param publicKey   the public key
+         * @param ciphertexts the ciphertexts
+         * @param encodings   the encoded weights
+         * @param exponents   the exponents of the terms
+         * @return EncryptedNumber
+         */
+        private static @NotNull EncryptedNumber combine(@NotNull PaillierPublicKey publicKey, BigInteger[] ciphertexts,
+                                                        EncodedNumber[] encodings, int @NotNull [] exponents) {
+            int exponent = exponents[0];
+            for (int termExponent : exponents) {
+                exponent = Math.min(exponent, termExponent);
+            }
+
+            BigInteger negativeBound = publicKey.n.subtract(publicKey.maxInt);
+            BigInteger[] positive = new BigInteger[ciphertexts.length], negative = new BigInteger[ciphertexts.length];
+            for (int i = 0; i < ciphertexts.length; i++) {
+                BigInteger scalar = encodings[i].encoding;
+                boolean isNegative = scalar.compareTo(negativeBound) >= 0;
+                if (isNegative) {
+                    scalar = publicKey.n.subtract(scalar);
+                }
+                int shift = EncodedNumber.subtractExponents(exponents[i], exponent);
+                if (shift > 0) {
+                    scalar = scalar.multiply(publicKey.getScaleFactor(shift));
+                }
+
+                positive[i] = isNegative ? BigInteger.ZERO : scalar;
+                negative[i] = isNegative ? scalar : BigInteger.ZERO;
+            }
+
+            MontgomeryContext context = publicKey.getMontgomeryContext();
+            BigInteger product = MultiExponentiation.pow(ciphertexts, positive, context);
+            BigInteger negativeProduct = MultiExponentiation.pow(ciphertexts, negative, context);
+            if (!negativeProduct.equals(BigInteger.ONE)) {
+                product = Util.mulMod(product, Util.invert(negativeProduct, publicKey.nSquare), publicKey.nSquare);
+            }
+
+            return new EncryptedNumber(publicKey, product, exponent);
+        }
+
         /**
          * todo Public Function ciphertext(boolean): set the obfuscated of the ciphertext
          *
@@ -693,9 +1681,66 @@ public class Paillier {
             if (beSecure && !this.isObfuscated) {
                 this.obfuscate();
             }
+            if (this.isMontgomery) {
+                return this.publicKey.getMontgomeryContext().fromMontgomery(this.ciphertext);
+            }
             return this.ciphertext;
         }
 
+        /**
+         * todo Public Function toMontgomery(): keep the ciphertext in Montgomery form
+         * <p>
+         * Additions between Montgomery-form numbers cost a REDC instead of a full modulo, and their sums stay
+         * in Montgomery form; ciphertext() still returns the ordinary ciphertext.
+         *
+         * @return EncryptedNumber in Montgomery form
+         */
+        public EncryptedNumber toMontgomery() {
+            if (this.isMontgomery) {
+                return this;
+            }
+
+            BigInteger montgomery = this.publicKey.getMontgomeryContext().toMontgomery(this.ciphertext);
+            EncryptedNumber encryptedNumber = montgomery(this.publicKey, montgomery, this.intExponent());
+            encryptedNumber.isObfuscated = this.isObfuscated;
+
+            return encryptedNumber;
+        }
+
+        /**
+         * todo Public Function fromMontgomery(): keep the ciphertext in ordinary form
+         *
+         * @return EncryptedNumber in ordinary form
+         */
+        public EncryptedNumber fromMontgomery() {
+            if (!this.isMontgomery) {
+                return this;
+            }
+
+            EncryptedNumber encryptedNumber = new EncryptedNumber(this.publicKey, this.ciphertext(false), this.intExponent());
+            encryptedNumber.isObfuscated = this.isObfuscated;
+
+            return encryptedNumber;
+        }
+
+        /**
+         * todo Public Function isObfuscated(): the ciphertext is re-randomized or not
+         *
+         * @return boolean
+         */
+        public boolean isObfuscated() {
+            return this.isObfuscated;
+        }
+
+        /**
+         * todo Public Function isMontgomery(): the ciphertext is kept in Montgomery form or not
+         *
+         * @return boolean
+         */
+        public boolean isMontgomery() {
+            return this.isMontgomery;
+        }
+
         /**
          * todo Public Function decreaseExponentTo(BigInteger): decrease exponent
          *
@@ -708,19 +1753,75 @@ public class Paillier {
                 String exception = "New exponent %s should be more negative than old exponent %s";
                 throw new Util.ValueErrorException(String.format(exception, newExp, this.exponent));
             }
-            double baseExp = FastMath.pow(EncodedNumber.BASE, this.exponent.subtract(newExp).intValue());
-            EncryptedNumber multiplied = this.multiply(new BigDecimal(Double.toString(baseExp)));
-            multiplied.exponent = newExp;
+
+            return decreaseExponentTo(EncodedNumber.toExponent(newExp));
+        }
+
+        /**
+         * todo Public Function decreaseExponentTo(int): decrease exponent
+         *
+         * @param newExp new exponent
+         * @return EncryptedNumber
+         * @throws Util.ValueErrorException    if newExp > this.exponent
+         * @throws Util.OverflowErrorException if the exponent difference does not fit in an int
+         */
+        public EncryptedNumber decreaseExponentTo(int newExp) throws Util.ValueErrorException, Util.OverflowErrorException {
+            if (newExp > this.intExponent()) {
+                String exception = "New exponent %s should be more negative than old exponent %s";
+                throw new Util.ValueErrorException(String.format(exception, newExp, this.intExponent()));
+            }
+            if (newExp == this.intExponent()) {
+                return this;
+            }
+
+            BigInteger factor = this.publicKey.getScaleFactor(EncodedNumber.subtractExponents(this.intExponent(), newExp));
+            if (factor.compareTo(this.publicKey.maxInt) > 0) {
+                String exception = "Integer needs to be within +/- %s but got %s";
+                throw new Util.ValueErrorException(String.format(exception, this.publicKey.maxInt, factor));
+            }
+
+            EncryptedNumber multiplied = new EncryptedNumber(this.publicKey, rawMul(factor), newExp);
+            multiplied.isObfuscated = this.publicKey.lazyObfuscation && this.isObfuscated;
 
             return multiplied;
         }
 
+        /**
+         * todo Public Static Function alignAll(List): decrease all the exponents to the minimum one
+         *
+         * @param numbers the encrypted numbers
+         * @return List of EncryptedNumber, those already at the minimum exponent are kept as they are
+         * @throws Util.ValueErrorException if the public keys do not match
+         */
+        public static @NotNull List<EncryptedNumber> alignAll(@NotNull List<EncryptedNumber> numbers)
+                throws Util.ValueErrorException {
+            if (numbers.isEmpty()) {
+                return new ArrayList<>();
+            }
+
+            PaillierPublicKey publicKey = numbers.get(0).publicKey;
+            int exponent = numbers.get(0).intExponent();
+            for (EncryptedNumber number : numbers) {
+                if (number.publicKey != publicKey) {
+                    throw new Util.ValueErrorException("Attempted to align numbers encoded against different public keys");
+                }
+                exponent = Math.min(exponent, number.intExponent());
+            }
+
+            List<EncryptedNumber> aligned = new ArrayList<>(numbers.size());
+            for (EncryptedNumber number : numbers) {
+                aligned.add(number.decreaseExponentTo(exponent));
+            }
+
+            return aligned;
+        }
+
         /**
          * todo Public Function obfuscate(): the obfuscate function
          */
         public void obfuscate() {
-            BigInteger r = this.publicKey.getRandomLtN();
-            BigInteger rPowN = r.modPow(this.publicKey.n, this.publicKey.nSquare);
+            BigInteger rPowN = this.publicKey.getObfuscator();
+            // (c * R) * r ** n = (c * r ** n) * R, so the Montgomery form needs no conversion
             this.ciphertext = this.ciphertext.multiply(rPowN).mod(this.publicKey.nSquare);
             this.isObfuscated = true;
         }
@@ -733,8 +1834,7 @@ public class Paillier {
          * @throws Util.ValueErrorException if public key is not match
          */
         private @NotNull EncryptedNumber addScalar(Object scalar) throws Util.ValueErrorException {
-            scalar = Util.wrapBig(scalar);
-            EncodedNumber encoded = EncodedNumber.encode(this.publicKey, scalar, null, this.exponent.intValue());
+            EncodedNumber encoded = EncodedNumber.encode(this.publicKey, scalar, null, this.intExponent());
             return addEncoded(encoded);
         }
 
@@ -752,17 +1852,29 @@ public class Paillier {
             // to add two numbers, their exponents must match
             EncryptedNumber a = this;
             EncodedNumber b = encoded;
-            if (a.exponent.compareTo(b.exponent) > 0) {
-                a = decreaseExponentTo(b.exponent);
-            } else if (a.exponent.compareTo(b.exponent) < 0) {
-                b = b.decreaseExponentTo(a.exponent);
+            if (a.intExponent() > b.intExponent()) {
+                a = decreaseExponentTo(b.intExponent());
+            } else if (a.intExponent() < b.intExponent()) {
+                b = b.decreaseExponentTo(a.intExponent());
             }
 
-            BigInteger encryptedScalar = a.publicKey.rawEncrypt(b.encoding, 1);
-            boolean beSecure = false;
-            BigInteger sumCiphertext = a.rawAdd(a.ciphertext(beSecure), encryptedScalar);
+            // the scalar is obfuscated unless obfuscation is deferred: c * (1 + n * b) would give b away to whoever
+            // has seen c
+            boolean nude = a.publicKey.lazyObfuscation;
+            BigInteger encryptedScalar = a.publicKey.rawEncrypt(b.encoding, nude ? 0 : 1);
+
+            EncryptedNumber sum;
+            if (a.isMontgomery) {
+                // (c * R) * E(b) = (c * E(b)) * R
+                sum = montgomery(a.publicKey, a.rawAdd(a.ciphertext, encryptedScalar), a.intExponent());
+            } else {
+                boolean beSecure = false;
+                BigInteger sumCiphertext = a.rawAdd(a.ciphertext(beSecure), encryptedScalar);
+                sum = new EncryptedNumber(a.publicKey, sumCiphertext, a.intExponent());
+            }
+            sum.isObfuscated = nude && a.isObfuscated;
 
-            return new EncryptedNumber(a.publicKey, sumCiphertext, a.exponent);
+            return sum;
         }
 
         /**
@@ -779,16 +1891,97 @@ public class Paillier {
             EncryptedNumber a = this;
             EncryptedNumber b = other;
 
-            if (a.exponent.compareTo(b.exponent) > 0) {
-                a = this.decreaseExponentTo(b.exponent);
-            } else if (a.exponent.compareTo(b.exponent) < 0) {
-                b = b.decreaseExponentTo(a.exponent);
+            if (a.intExponent() > b.intExponent()) {
+                a = this.decreaseExponentTo(b.intExponent());
+            } else if (a.intExponent() < b.intExponent()) {
+                b = b.decreaseExponentTo(a.intExponent());
             }
 
-            boolean beSecure = false;
-            BigInteger sumCiphertext = a.rawAdd(a.ciphertext(beSecure), b.ciphertext(beSecure));
+            EncryptedNumber sum;
+            if (a.isMontgomery || b.isMontgomery) {
+                MontgomeryContext context = a.publicKey.getMontgomeryContext();
+                BigInteger sumCiphertext = context.multiply(a.montgomeryCiphertext(), b.montgomeryCiphertext());
+                sum = montgomery(a.publicKey, sumCiphertext, a.intExponent());
+            } else {
+                boolean beSecure = false;
+                BigInteger sumCiphertext = a.rawAdd(a.ciphertext(beSecure), b.ciphertext(beSecure));
+                sum = new EncryptedNumber(a.publicKey, sumCiphertext, a.intExponent());
+            }
+            // one obfuscated addend randomizes the sum when obfuscation is deferred; otherwise the sum is
+            // re-randomized before it leaves, whoever has seen an addend could strip it off
+            sum.isObfuscated = a.publicKey.lazyObfuscation && (a.isObfuscated || b.isObfuscated);
+
+            return sum;
+        }
 
-            return new EncryptedNumber(a.publicKey, sumCiphertext, a.exponent);
+        /**
+         * todo Private Function subtractEncrypted(EncryptedNumber): subtract EncryptedNumber
+         * <p>
+         * E(a - b) is E(a) * E(b) ** -1, a modular inverse instead of the modPow of a multiplication by -1; in
+         * Montgomery form the inverse and the product cost a REDC each and the difference stays in Montgomery form.
+         *
+         * @param other EncryptedNumber
+         * @return EncryptedNumber
+         * @throws Util.ValueErrorException if public key is not match
+         */
+        private @NotNull EncryptedNumber subtractEncrypted(@NotNull EncryptedNumber other)
+                throws Util.ValueErrorException {
+            if (this.publicKey != other.publicKey) {
+                throw new Util.ValueErrorException("Attempted to subtract numbers encoded against different public keys");
+            }
+            EncryptedNumber a = this;
+            EncryptedNumber b = other;
+
+            if (a.intExponent() > b.intExponent()) {
+                a = this.decreaseExponentTo(b.intExponent());
+            } else if (a.intExponent() < b.intExponent()) {
+                b = b.decreaseExponentTo(a.intExponent());
+            }
+
+            EncryptedNumber difference;
+            if (a.isMontgomery || b.isMontgomery) {
+                MontgomeryContext context = a.publicKey.getMontgomeryContext();
+                BigInteger differenceCiphertext = context.multiply(a.montgomeryCiphertext(),
+                        context.inverse(b.montgomeryCiphertext()));
+                difference = montgomery(a.publicKey, differenceCiphertext, a.intExponent());
+            } else {
+                boolean beSecure = false;
+                BigInteger negC = Util.invert(b.ciphertext(beSecure), a.publicKey.nSquare);
+                difference = new EncryptedNumber(a.publicKey, a.rawAdd(a.ciphertext(beSecure), negC), a.intExponent());
+            }
+            // E(b) ** -1 keeps the randomness of E(b), so the difference is obfuscated as a sum would be
+            difference.isObfuscated = a.publicKey.lazyObfuscation && (a.isObfuscated || b.isObfuscated);
+
+            return difference;
+        }
+
+        /**
+         * todo Private Function montgomeryCiphertext(): get the ciphertext in Montgomery form
+         *
+         * @return BigInteger ciphertext * R mod n ** 2
+         */
+        private @NotNull BigInteger montgomeryCiphertext() {
+            if (this.isMontgomery) {
+                return this.ciphertext;
+            }
+
+            return this.publicKey.getMontgomeryContext().toMontgomery(this.ciphertext);
+        }
+
+        /**
+         * todo Private Static Function montgomery(PaillierPublicKey, BigInteger, int): EncryptedNumber in Montgomery form
+         *
+         * @param publicKey  the public key of the encrypted number
+         * @param ciphertext the ciphertext in Montgomery form
+         * @param exponent   the exponent of the encrypted number
+         * @return EncryptedNumber
+         */
+        private static @NotNull EncryptedNumber montgomery(PaillierPublicKey publicKey, BigInteger ciphertext,
+                                                           int exponent) {
+            EncryptedNumber encryptedNumber = new EncryptedNumber(publicKey, ciphertext, exponent);
+            encryptedNumber.isMontgomery = true;
+
+            return encryptedNumber;
         }
 
         /**
@@ -818,9 +2011,9 @@ public class Paillier {
                 BigInteger negC = Util.invert(this.ciphertext(beSecure), this.publicKey.nSquare);
                 BigInteger negScalar = this.publicKey.n.subtract(plaintext);
 
-                return negC.modPow(negScalar, this.publicKey.nSquare);
+                return Util.modPow(negC, negScalar, this.publicKey.nSquare);
             } else {
-                return this.ciphertext(beSecure).modPow(plaintext, this.publicKey.nSquare);
+                return Util.modPow(this.ciphertext(beSecure), plaintext, this.publicKey.nSquare);
             }
         }
     }
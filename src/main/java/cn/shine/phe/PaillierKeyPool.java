@@ -0,0 +1,575 @@
+package cn.shine.phe;
+
+/*
+ * @Project PHE-Maven
+ * @Package cn.shine.phe
+ * @Class   PaillierKeyPool
+ * @Version 1.0.0
+ * @Author  Zhan Shi
+ * @Time    2026/10/17 14:30
+ * @License MIT
+ */
+
+import org.jetbrains.annotations.NotNull;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.*;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * todo Public Class PaillierKeyPool: pre-generated Paillier key pairs
+ * <p>
+ * A background thread keeps depth key pairs of every configured length. When a file is given, the pool is
+ * written to it after every change, encrypted with AES-GCM under a key derived from the passphrase, and
+ * loaded back on start; a key pair handed out is removed from the file before take() returns it, so it is never
+ * handed out twice, even across a crash. The file is forced to the disk before it replaces the old one, and the
+ * directory after, where the file system lets a directory be forced.
+ *
+ * @author Zhan Shi
+ * @see Paillier.PaillierKeyPair#setKeyPool(PaillierKeyPool)
+ */
+public class PaillierKeyPool {
+    /**
+     * MAGIC:      file header "PKP1"
+     * SALT_BYTES: PBKDF2 salt length
+     * IV_BYTES:   AES-GCM nonce length
+     * TAG_BITS:   AES-GCM tag length
+     * KEY_BITS:   AES key length
+     * ITERATIONS: PBKDF2 iterations
+     */
+    private static final int MAGIC = 0x504B5031, SALT_BYTES = 16, IV_BYTES = 12, TAG_BITS = 128, KEY_BITS = 256,
+            ITERATIONS = 65536;
+    /**
+     * SECURE_RANDOM: random source of salts and nonces
+     */
+    private static final SecureRandom SECURE_RANDOM = new SecureRandom();
+    /**
+     * file: the encrypted pool file, null when the pool is in memory only
+     */
+    private final Path file;
+    /**
+     * salt:      PBKDF2 salt of the file
+     * secretKey: AES key of the file
+     */
+    private final byte[] salt;
+    private final SecretKey secretKey;
+    /**
+     * depths: target depth of each configured key length
+     * pools:  the key pairs of each key length
+     */
+    private final Map<Integer, Integer> depths;
+    private final Map<Integer, ConcurrentLinkedQueue<Paillier.PaillierKeyPair>> pools = new ConcurrentHashMap<>();
+    /**
+     * available: key pairs in the pool
+     */
+    private final AtomicInteger available = new AtomicInteger();
+    /**
+     * hits:            take() served from the pool
+     * misses:          take() generated inline
+     * generated:       key pairs generated by the refill thread
+     * generationNanos: time spent by the refill thread in key generation
+     */
+    private final AtomicLong hits = new AtomicLong(), misses = new AtomicLong(), generated = new AtomicLong(),
+            generationNanos = new AtomicLong();
+    /**
+     * refilling:      the refill thread is running
+     * persistPending: a write of the file is queued
+     */
+    private final AtomicBoolean refilling = new AtomicBoolean(), persistPending = new AtomicBoolean();
+    /**
+     * generator: refill thread
+     * persister: file writer thread
+     */
+    private final ExecutorService generator, persister;
+    /**
+     * closed:       the pool is shut down
+     * persistError: last failure of writing the file, null if none
+     */
+    private volatile boolean closed = false;
+    private volatile Throwable persistError;
+
+    /**
+     * @param depth      target depth of each key length
+     * @param keyLengths the key lengths to pre-generate
+     * @see PaillierKeyPool#PaillierKeyPool(Path, char[], int, int...)
+     */
+    public PaillierKeyPool(int depth, int... keyLengths) {
+        this(null, null, depth, keyLengths);
+    }
+
+    /**
+     * todo Public Function PaillierKeyPool(Path, char[], int, int...): Class PaillierKeyPool init
+     *
+     * @param file       the encrypted pool file, loaded if it exists; null to keep the pool in memory only
+     * @param passphrase the passphrase of the file, ignored when file is null
+     * @param depth      target depth of each key length
+     * @param keyLengths the key lengths to pre-generate
+     * @throws Util.ValueErrorException if the depth or the key lengths are invalid, or the file cannot be read
+     */
+    public PaillierKeyPool(Path file, char[] passphrase, int depth, int @NotNull ... keyLengths)
+            throws Util.ValueErrorException {
+        if (depth <= 0) {
+            throw new Util.ValueErrorException("depth should be positive");
+        }
+        if (keyLengths.length == 0) {
+            throw new Util.ValueErrorException("key lengths should not be empty");
+        }
+        if (file != null && (passphrase == null || passphrase.length == 0)) {
+            throw new Util.ValueErrorException("passphrase should not be empty");
+        }
+
+        Map<Integer, Integer> depths = new LinkedHashMap<>();
+        for (int keyLength : keyLengths) {
+            if (keyLength < 2 * PrimeGenerator.MIN_BITS) {
+                String exception = "key length should be at least %s but got %s";
+                throw new Util.ValueErrorException(String.format(exception, 2 * PrimeGenerator.MIN_BITS, keyLength));
+            }
+            depths.put(keyLength, depth);
+            this.pools.put(keyLength, new ConcurrentLinkedQueue<>());
+        }
+        this.depths = Collections.unmodifiableMap(depths);
+        this.file = file;
+
+        if (file == null) {
+            this.salt = null;
+            this.secretKey = null;
+        } else {
+            try {
+                if (Files.exists(file)) {
+                    this.salt = readSalt(file);
+                    this.secretKey = deriveKey(passphrase, this.salt);
+                    load();
+                } else {
+                    this.salt = new byte[SALT_BYTES];
+                    SECURE_RANDOM.nextBytes(this.salt);
+                    this.secretKey = deriveKey(passphrase, this.salt);
+                }
+            } catch (IOException | GeneralSecurityException e) {
+                Util.ValueErrorException exception =
+                        new Util.ValueErrorException(String.format("cannot read key pool file %s: %s", file, e));
+                exception.initCause(e);
+                throw exception;
+            }
+        }
+
+        this.generator = Executors.newSingleThreadExecutor(runnable -> daemon(runnable, "paillier-key-pool"));
+        this.persister = Executors.newSingleThreadExecutor(runnable -> daemon(runnable, "paillier-key-pool-io"));
+
+        refill();
+    }
+
+    /**
+     * todo Public Function take(int): take a key pair, generated inline when the pool is empty
+     *
+     * @param nLength the key pair length
+     * @return PaillierKeyPair
+     * @throws Util.IOErrorException if the key pair cannot be removed from the file; it stays in the pool
+     */
+    public @NotNull Paillier.PaillierKeyPair take(int nLength) throws Util.IOErrorException {
+        ConcurrentLinkedQueue<Paillier.PaillierKeyPair> pool = this.pools.get(nLength);
+        Paillier.PaillierKeyPair keyPair;
+        // the file is rewritten before the key pair leaves, under the lock of persist()
+        synchronized (this) {
+            keyPair = pool == null ? null : pool.poll();
+            if (keyPair != null && this.file != null) {
+                try {
+                    write();
+                } catch (IOException | GeneralSecurityException e) {
+                    pool.offer(keyPair);
+                    Util.IOErrorException exception =
+                            new Util.IOErrorException(String.format("cannot write key pool file %s: %s", this.file, e));
+                    exception.initCause(e);
+                    throw exception;
+                }
+            }
+        }
+        if (keyPair == null) {
+            this.misses.incrementAndGet();
+            refill();
+            return Paillier.PaillierKeyPair.generate(nLength);
+        }
+
+        this.hits.incrementAndGet();
+        this.available.decrementAndGet();
+        refill();
+
+        return keyPair;
+    }
+
+    /**
+     * todo Public Function depth(int): get number of key pairs of a key length in the pool
+     *
+     * @param nLength the key pair length
+     * @return int
+     */
+    public int depth(int nLength) {
+        ConcurrentLinkedQueue<Paillier.PaillierKeyPair> pool = this.pools.get(nLength);
+
+        return pool == null ? 0 : pool.size();
+    }
+
+    /**
+     * todo Public Function depth(): get number of key pairs in the pool
+     *
+     * @return int
+     */
+    public int depth() {
+        return this.available.get();
+    }
+
+    /**
+     * todo Public Function getDepths(): get target depth of each configured key length
+     *
+     * @return Map
+     */
+    public @NotNull Map<Integer, Integer> getDepths() {
+        return this.depths;
+    }
+
+    /**
+     * todo Public Function getRefillRate(): get key pairs generated per second by the refill thread
+     *
+     * @return double, 0 before the first key pair is generated
+     */
+    public double getRefillRate() {
+        long nanos = this.generationNanos.get();
+
+        return nanos == 0 ? 0. : this.generated.get() * 1e9 / nanos;
+    }
+
+    /**
+     * todo Public Function getGenerated(): get number of key pairs generated by the refill thread
+     *
+     * @return long
+     */
+    public long getGenerated() {
+        return this.generated.get();
+    }
+
+    /**
+     * todo Public Function getHits(): get number of take() served from the pool
+     *
+     * @return long
+     */
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    /**
+     * todo Public Function getMisses(): get number of take() generated inline
+     *
+     * @return long
+     */
+    public long getMisses() {
+        return this.misses.get();
+    }
+
+    /**
+     * todo Public Function getPersistError(): get last failure of writing the file
+     *
+     * @return Throwable, null if none
+     */
+    public Throwable getPersistError() {
+        return this.persistError;
+    }
+
+    /**
+     * todo Public Function shutdown(): stop the refill thread and write the pool to the file
+     */
+    public void shutdown() {
+        this.closed = true;
+        this.generator.shutdownNow();
+        this.persister.shutdown();
+        try {
+            this.persister.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        persist();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("<PaillierKeyPool depth=%s hits=%s misses=%s rate=%.3f/s>", depth(), getHits(),
+                getMisses(), getRefillRate());
+    }
+
+    /**
+     * todo Private Function refill(): start the refill thread unless it is running
+     */
+    private void refill() {
+        if (this.closed || nextLength() == null || !this.refilling.compareAndSet(false, true)) {
+            return;
+        }
+
+        this.generator.execute(this::fill);
+    }
+
+    /**
+     * todo Private Function fill(): generate key pairs until every key length reaches its depth
+     */
+    private void fill() {
+        try {
+            Integer nLength;
+            while (!this.closed && (nLength = nextLength()) != null) {
+                long start = System.nanoTime();
+                Paillier.PaillierKeyPair keyPair = Paillier.PaillierKeyPair.generate(nLength);
+                this.generationNanos.addAndGet(System.nanoTime() - start);
+                this.generated.incrementAndGet();
+
+                this.pools.get(nLength).offer(keyPair);
+                this.available.incrementAndGet();
+                schedulePersist();
+            }
+        } finally {
+            this.refilling.set(false);
+        }
+
+        // a take() may have seen the thread still running just before it stopped
+        refill();
+    }
+
+    /**
+     * todo Private Function nextLength(): get the configured key length furthest below its depth
+     *
+     * @return Integer, null if every key length is full
+     */
+    private Integer nextLength() {
+        Integer nLength = null;
+        int missing = 0;
+        for (Map.Entry<Integer, Integer> entry : this.depths.entrySet()) {
+            int lack = entry.getValue() - depth(entry.getKey());
+            if (lack > missing) {
+                missing = lack;
+                nLength = entry.getKey();
+            }
+        }
+
+        return nLength;
+    }
+
+    /**
+     * todo Private Function schedulePersist(): queue a write of the file unless one is queued
+     */
+    private void schedulePersist() {
+        if (this.file == null || this.closed || !this.persistPending.compareAndSet(false, true)) {
+            return;
+        }
+
+        this.persister.execute(() -> {
+            this.persistPending.set(false);
+            persist();
+        });
+    }
+
+    /**
+     * todo Private Function persist(): write the pool to the file in the background, recording a failure
+     */
+    private synchronized void persist() {
+        if (this.file == null) {
+            return;
+        }
+
+        try {
+            write();
+        } catch (IOException | GeneralSecurityException e) {
+            this.persistError = e;
+        }
+    }
+
+    /**
+     * todo Private Function write(): write the pool to the file, replacing it atomically once it is on the disk
+     *
+     * @throws IOException              if the file cannot be written
+     * @throws GeneralSecurityException if AES-GCM is not available
+     */
+    private synchronized void write() throws IOException, GeneralSecurityException {
+        List<Paillier.PaillierKeyPair> keyPairs = new ArrayList<>();
+        for (ConcurrentLinkedQueue<Paillier.PaillierKeyPair> pool : this.pools.values()) {
+            keyPairs.addAll(pool);
+        }
+
+        ByteArrayOutputStream plain = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(plain)) {
+            out.writeInt(keyPairs.size());
+            for (Paillier.PaillierKeyPair keyPair : keyPairs) {
+                writeBigInteger(out, keyPair.privateKey.p);
+                writeBigInteger(out, keyPair.privateKey.q);
+            }
+        }
+
+        byte[] iv = new byte[IV_BYTES];
+        SECURE_RANDOM.nextBytes(iv);
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, this.secretKey, new GCMParameterSpec(TAG_BITS, iv));
+        byte[] sealed = cipher.doFinal(plain.toByteArray());
+
+        ByteBuffer content = ByteBuffer.allocate(4 + this.salt.length + iv.length + sealed.length);
+        content.putInt(MAGIC).put(this.salt).put(iv).put(sealed).flip();
+
+        Path temp = this.file.resolveSibling(this.file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (content.hasRemaining()) {
+                channel.write(content);
+            }
+            channel.force(true);
+        }
+        try {
+            Files.setPosixFilePermissions(temp, PosixFilePermissions.fromString("rw-------"));
+        } catch (UnsupportedOperationException ignored) {
+            // not a POSIX file system
+        }
+        Files.move(temp, this.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        forceDirectory(this.file.toAbsolutePath().getParent());
+    }
+
+    /**
+     * todo Private Static Function forceDirectory(Path): force a directory entry change to the disk
+     *
+     * @param directory the directory
+     */
+    private static void forceDirectory(Path directory) {
+        if (directory == null) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException ignored) {
+            // a directory cannot be opened or forced on every file system, Windows among them
+        }
+    }
+
+    /**
+     * todo Private Function load(): read the key pairs of the file into the pool
+     *
+     * @throws IOException              if the file cannot be read
+     * @throws GeneralSecurityException if the passphrase is wrong or the file was tampered with
+     */
+    private void load() throws IOException, GeneralSecurityException {
+        byte[] iv = new byte[IV_BYTES], sealed;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(this.file)))) {
+            in.skipBytes(4 + SALT_BYTES);
+            in.readFully(iv);
+            sealed = in.readAllBytes();
+        }
+
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.DECRYPT_MODE, this.secretKey, new GCMParameterSpec(TAG_BITS, iv));
+        byte[] plain = cipher.doFinal(sealed);
+
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(plain))) {
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                BigInteger p = readBigInteger(in), q = readBigInteger(in), n = p.multiply(q);
+                Paillier.PaillierPublicKey publicKey = new Paillier.PaillierPublicKey(n);
+                Paillier.PaillierPrivateKey privateKey = new Paillier.PaillierPrivateKey(publicKey, p, q);
+
+                this.pools.computeIfAbsent(n.bitLength(), key -> new ConcurrentLinkedQueue<>())
+                        .offer(new Paillier.PaillierKeyPair(publicKey, privateKey));
+                this.available.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * todo Private Static Function readSalt(Path): read the salt of a pool file
+     *
+     * @param file the pool file
+     * @return byte[]
+     * @throws IOException if the file cannot be read or is not a pool file
+     */
+    private static byte @NotNull [] readSalt(@NotNull Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(file))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("not a key pool file");
+            }
+            byte[] salt = new byte[SALT_BYTES];
+            in.readFully(salt);
+
+            return salt;
+        }
+    }
+
+    /**
+     * todo Private Static Function deriveKey(char[], byte[]): derive the AES key of a passphrase
+     *
+     * @param passphrase the passphrase
+     * @param salt       the salt
+     * @return SecretKey
+     * @throws GeneralSecurityException if PBKDF2 is not available
+     */
+    private static @NotNull SecretKey deriveKey(char[] passphrase, byte[] salt) throws GeneralSecurityException {
+        PBEKeySpec spec = new PBEKeySpec(passphrase, salt, ITERATIONS, KEY_BITS);
+        try {
+            byte[] key = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(spec).getEncoded();
+            return new SecretKeySpec(key, "AES");
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    /**
+     * todo Private Static Function writeBigInteger(DataOutputStream, BigInteger): write a length-prefixed BigInteger
+     *
+     * @param out   the output
+     * @param value the value
+     * @throws IOException if the output fails
+     */
+    private static void writeBigInteger(@NotNull DataOutputStream out, @NotNull BigInteger value) throws IOException {
+        byte[] bytes = value.toByteArray();
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * todo Private Static Function readBigInteger(DataInputStream): read a length-prefixed BigInteger
+     *
+     * @param in the input
+     * @return BigInteger
+     * @throws IOException if the input fails
+     */
+    private static @NotNull BigInteger readBigInteger(@NotNull DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+
+        return new BigInteger(bytes);
+    }
+
+    /**
+     * todo Private Static Function daemon(Runnable, String): create a daemon thread
+     *
+     * @param runnable the task
+     * @param name     the thread name
+     * @return Thread
+     */
+    private static @NotNull Thread daemon(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+
+        return thread;
+    }
+}
@@ -0,0 +1,267 @@
+package cn.shine.phe;
+
+/*
+ * @Project PHE-Maven
+ * @Package cn.shine.phe
+ * @Class   PrimeGenerator
+ * @Version 1.0.0
+ * @Author  Zhan Shi
+ * @Time    2026/10/17 13:40
+ * @License MIT
+ */
+
+import org.jetbrains.annotations.NotNull;
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * todo Public Class PrimeGenerator: sieve-based probable prime search
+ * <p>
+ * A candidate is drawn from a SecureRandom with its top two bits and its lowest bit set, so the product of two
+ * such primes has exactly the sum of their lengths. The candidate is then walked upwards in steps of 2 through a
+ * bitmap sieve: each small prime crosses off its multiples from where its residue puts the first one, segment by
+ * segment, and only the survivors of the sieve get a Miller-Rabin test.
+ *
+ * @author Zhan Shi
+ */
+public class PrimeGenerator {
+    /**
+     * MIN_BITS:    min bit length of generated primes
+     * CERTAINTY:   Miller-Rabin certainty, the same as BigInteger.nextProbablePrime
+     * SEARCH_SPAN: max offset walked from one candidate before a new one is drawn
+     */
+    public static final int MIN_BITS = 32, CERTAINTY = 100, SEARCH_SPAN = 1 << 20;
+    /**
+     * SIEVE_LIMIT:  small primes below it are used by the sieve
+     * SEGMENT:      odd candidates sieved at a time, a multiple of 64
+     * SMALL_PRIMES: odd primes below SIEVE_LIMIT
+     */
+    private static final int SIEVE_LIMIT = 1 << 14, SEGMENT = 1 << 12;
+    private static final int[] SMALL_PRIMES;
+
+    static {
+        boolean[] composite = new boolean[SIEVE_LIMIT];
+        int count = 0;
+        for (int i = 3; i < SIEVE_LIMIT; i += 2) {
+            if (!composite[i]) {
+                count++;
+                for (int j = i * i; j < SIEVE_LIMIT; j += 2 * i) {
+                    composite[j] = true;
+                }
+            }
+        }
+
+        SMALL_PRIMES = new int[count];
+        for (int i = 3, k = 0; i < SIEVE_LIMIT; i += 2) {
+            if (!composite[i]) {
+                SMALL_PRIMES[k++] = i;
+            }
+        }
+    }
+
+    /**
+     * @param bits bit length of the prime
+     * @return BigInteger
+     * @see PrimeGenerator#generate(int, int)
+     */
+    public static @NotNull BigInteger generate(int bits) {
+        return generate(bits, ForkJoinPool.getCommonPoolParallelism());
+    }
+
+    /**
+     * todo Public Static Function generate(int, int): generate a prime with workers searching in parallel
+     *
+     * @param bits    bit length of the prime
+     * @param workers number of parallel searches, the first prime found wins
+     * @return BigInteger
+     * @throws Util.ValueErrorException if bits or workers is out of range
+     */
+    public static @NotNull BigInteger generate(int bits, int workers) throws Util.ValueErrorException {
+        if (workers <= 0) {
+            throw new Util.ValueErrorException("worker count should be positive");
+        }
+
+        return join(race(bits, workers));
+    }
+
+    /**
+     * todo Public Static Function generatePair(int): generate primes p != q with |p * q| == nLength
+     * <p>
+     * p and q are searched at the same time, each by half of the common pool.
+     *
+     * @param nLength bit length of p * q
+     * @return BigInteger[] -> {p, q}
+     * @throws Util.ValueErrorException if nLength is too short
+     */
+    public static @NotNull BigInteger[] generatePair(int nLength) throws Util.ValueErrorException {
+        int workers = Math.max(1, ForkJoinPool.getCommonPoolParallelism() / 2);
+        int pLength = (nLength + 1) / 2, qLength = nLength / 2;
+
+        CompletableFuture<BigInteger> pFuture = race(pLength, workers), qFuture = race(qLength, workers);
+        BigInteger p = join(pFuture), q = join(qFuture);
+        while (p.equals(q)) {
+            q = generate(qLength, workers);
+        }
+
+        return new BigInteger[]{p, q};
+    }
+
+    /**
+     * todo Public Static Function search(int, Random): generate a prime in the current thread
+     *
+     * @param bits   bit length of the prime
+     * @param random the random source of the candidates
+     * @return BigInteger
+     * @throws Util.ValueErrorException if bits is too short
+     */
+    public static @NotNull BigInteger search(int bits, @NotNull Random random) throws Util.ValueErrorException {
+        checkBits(bits);
+
+        return search(bits, random, new AtomicBoolean());
+    }
+
+    /**
+     * todo Private Static Function race(int, int): start workers searching for the same prime
+     *
+     * @param bits    bit length of the prime
+     * @param workers number of parallel searches
+     * @return CompletableFuture completed by the first prime found
+     */
+    private static @NotNull CompletableFuture<BigInteger> race(int bits, int workers) {
+        checkBits(bits);
+
+        CompletableFuture<BigInteger> result = new CompletableFuture<>();
+        AtomicBoolean found = new AtomicBoolean();
+        for (int i = 0; i < workers; i++) {
+            CompletableFuture.runAsync(() -> {
+                try {
+                    BigInteger prime = search(bits, new SecureRandom(), found);
+                    if (prime != null) {
+                        result.complete(prime);
+                    }
+                } catch (Throwable e) {
+                    found.set(true);
+                    result.completeExceptionally(e);
+                }
+            });
+        }
+
+        return result;
+    }
+
+    /**
+     * todo Private Static Function search(int, Random, AtomicBoolean): sieve candidates until a prime is found
+     *
+     * @param bits   bit length of the prime
+     * @param random the random source of the candidates
+     * @param found  set by the winner, the other searches stop on it
+     * @return BigInteger, or null if another search found the prime first
+     */
+    private static BigInteger search(int bits, @NotNull Random random, @NotNull AtomicBoolean found) {
+        int[] next = new int[SMALL_PRIMES.length];
+        long[] composite = new long[SEGMENT / Long.SIZE];
+        while (!found.get()) {
+            BigInteger base = new BigInteger(bits, random).setBit(bits - 1).setBit(bits - 2).setBit(0);
+            for (int i = 0; i < SMALL_PRIMES.length; i++) {
+                int prime = SMALL_PRIMES[i], residue = base.mod(BigInteger.valueOf(prime)).intValue();
+                // base + 2 * k is a multiple of prime for k = -residue / 2 mod prime
+                next[i] = (int) ((long) (prime - residue) % prime * ((prime + 1) / 2) % prime);
+            }
+
+            BigInteger prime = walk(base, bits, next, composite, found);
+            if (prime != null) {
+                found.set(true);
+                return prime;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * todo Private Static Function walk(BigInteger, int, int[], long[], AtomicBoolean): test the survivors of the sieve
+     *
+     * @param base      the odd candidate the walk starts from
+     * @param bits      bit length of the prime
+     * @param next      for each small prime, index of the next odd candidate base + 2 * k it divides
+     * @param composite bitmap of one segment, reused across the walk
+     * @param found     set by the winner, the walk stops on it
+     * @return BigInteger, or null if the span or the bit length is exhausted or another search found the prime
+     */
+    private static BigInteger walk(@NotNull BigInteger base, int bits, int @NotNull [] next,
+                                   long @NotNull [] composite, @NotNull AtomicBoolean found) {
+        for (int start = 0; start < SEARCH_SPAN / 2 && !found.get(); start += SEGMENT) {
+            sieve(next, composite, start);
+
+            for (int word = 0; word < composite.length; word++) {
+                for (long free = ~composite[word]; free != 0; free &= free - 1) {
+                    long offset = 2L * (start + word * Long.SIZE + Long.numberOfTrailingZeros(free));
+                    BigInteger candidate = base.add(BigInteger.valueOf(offset));
+                    if (candidate.bitLength() != bits || found.get()) {
+                        return null;
+                    }
+                    if (candidate.isProbablePrime(CERTAINTY)) {
+                        return candidate;
+                    }
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * todo Private Static Function sieve(int[], long[], int): cross off the odd candidates with a small prime factor
+     *
+     * @param next      for each small prime, index of the next odd candidate it divides, moved past the segment
+     * @param composite bitmap of the odd candidates start ... start + SEGMENT - 1, overwritten
+     * @param start     index of the first odd candidate of the segment
+     */
+    private static void sieve(int @NotNull [] next, long @NotNull [] composite, int start) {
+        Arrays.fill(composite, 0L);
+        for (int i = 0; i < SMALL_PRIMES.length; i++) {
+            int prime = SMALL_PRIMES[i], k = next[i] - start;
+            for (; k < SEGMENT; k += prime) {
+                composite[k >>> 6] |= 1L << k;
+            }
+            next[i] = start + k;
+        }
+    }
+
+    /**
+     * todo Private Static Function join(CompletableFuture): join and unwrap the exception of a search
+     *
+     * @param future the search
+     * @return BigInteger
+     */
+    private static @NotNull BigInteger join(@NotNull CompletableFuture<BigInteger> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * todo Private Static Function checkBits(int): check the bit length of a prime
+     *
+     * @param bits bit length of the prime
+     * @throws Util.ValueErrorException if bits is too short
+     */
+    private static void checkBits(int bits) throws Util.ValueErrorException {
+        if (bits < MIN_BITS) {
+            String exception = "prime length should be at least %s bits but got %s";
+            throw new Util.ValueErrorException(String.format(exception, MIN_BITS, bits));
+        }
+    }
+}
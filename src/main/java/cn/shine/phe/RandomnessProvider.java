@@ -0,0 +1,181 @@
+package cn.shine.phe;
+
+/*
+ * @Project PHE-Maven
+ * @Package cn.shine.phe
+ * @Class   RandomnessProvider
+ * @Version 1.0.0
+ * @Author  Zhan Shi
+ * @Time    2026/10/17 19:00
+ * @License MIT
+ */
+
+import org.jetbrains.annotations.NotNull;
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.Random;
+
+/**
+ * todo Public Class RandomnessProvider: random source of obfuscators, masks and coin flips
+ * <p>
+ * The default provider gives every thread its own SecureRandom, seeded once, so concurrent callers neither
+ * construct generators per call nor contend on a shared one. A seeded provider replays the same sequence for
+ * reproducible benchmarks; it is shared by all threads, so the sequence is only reproducible single-threaded,
+ * and it must never be used outside of benchmarks.
+ *
+ * @author Zhan Shi
+ */
+public class RandomnessProvider {
+    /**
+     * defaultProvider: the provider used by the phe and smpcp packages
+     */
+    private static volatile RandomnessProvider defaultProvider = secure();
+    /**
+     * local:  per-thread SecureRandom, null for a seeded provider
+     * seeded: the shared seeded Random, null for a secure provider
+     */
+    private final ThreadLocal<SecureRandom> local;
+    private final Random seeded;
+
+    /**
+     * todo Private Function RandomnessProvider(ThreadLocal, Random): Class RandomnessProvider init
+     *
+     * @param local  per-thread SecureRandom
+     * @param seeded the shared seeded Random
+     */
+    private RandomnessProvider(ThreadLocal<SecureRandom> local, Random seeded) {
+        this.local = local;
+        this.seeded = seeded;
+    }
+
+    /**
+     * todo Public Static Function secure(): a provider of thread-local SecureRandom
+     *
+     * @return RandomnessProvider
+     */
+    public static @NotNull RandomnessProvider secure() {
+        return new RandomnessProvider(ThreadLocal.withInitial(SecureRandom::new), null);
+    }
+
+    /**
+     * todo Public Static Function seeded(long): a deterministic provider for reproducible benchmarks
+     *
+     * @param seed the seed
+     * @return RandomnessProvider
+     */
+    public static @NotNull RandomnessProvider seeded(long seed) {
+        return new RandomnessProvider(null, new Random(seed));
+    }
+
+    /**
+     * todo Public Static Function getDefault(): get the provider used by the phe and smpcp packages
+     *
+     * @return RandomnessProvider
+     */
+    public static @NotNull RandomnessProvider getDefault() {
+        return defaultProvider;
+    }
+
+    /**
+     * todo Public Static Function setDefault(RandomnessProvider): replace the provider used by the phe and smpcp packages
+     *
+     * @param provider the provider
+     */
+    public static void setDefault(@NotNull RandomnessProvider provider) {
+        defaultProvider = provider;
+    }
+
+    /**
+     * todo Public Function isSeeded(): the provider is deterministic or not
+     *
+     * @return boolean
+     */
+    public boolean isSeeded() {
+        return this.seeded != null;
+    }
+
+    /**
+     * todo Public Function random(): the generator of the current thread
+     *
+     * @return Random
+     */
+    public @NotNull Random random() {
+        return this.seeded != null ? this.seeded : this.local.get();
+    }
+
+    /**
+     * todo Public Function nextBoolean(): a fair coin
+     *
+     * @return boolean
+     */
+    public boolean nextBoolean() {
+        return random().nextBoolean();
+    }
+
+    /**
+     * todo Public Function nextBits(int): uniform random in [0, 2 ** bits)
+     *
+     * @param bits bit length
+     * @return BigInteger
+     */
+    public @NotNull BigInteger nextBits(int bits) {
+        return new BigInteger(bits, random());
+    }
+
+    /**
+     * todo Public Function nextBelow(BigInteger): uniform random in [1, bound)
+     *
+     * @param bound the exclusive upper bound, greater than 1
+     * @return BigInteger
+     * @throws Util.ValueErrorException if bound is not greater than 1
+     */
+    public @NotNull BigInteger nextBelow(@NotNull BigInteger bound) throws Util.ValueErrorException {
+        if (bound.compareTo(BigInteger.ONE) <= 0) {
+            throw new Util.ValueErrorException(String.format("bound should be greater than 1 but got %s", bound));
+        }
+
+        Random random = random();
+        BigInteger result;
+        do {
+            result = new BigInteger(bound.bitLength(), random);
+        } while (result.signum() == 0 || result.compareTo(bound) >= 0);
+
+        return result;
+    }
+
+    /**
+     * todo Public Function nextMasks(int, int): count uniform random masks in [1, 2 ** bits)
+     * <p>
+     * The random bytes of the whole batch are drawn in one call.
+     *
+     * @param bits  bit length of a mask
+     * @param count number of masks
+     * @return BigInteger[]
+     * @throws Util.ValueErrorException if bits or count is not positive
+     */
+    public @NotNull BigInteger[] nextMasks(int bits, int count) throws Util.ValueErrorException {
+        if (bits <= 0 || count <= 0) {
+            throw new Util.ValueErrorException(String.format("got %s masks of %s bits", count, bits));
+        }
+
+        Random random = random();
+        int width = (bits + 7) / 8;
+        byte[] bytes = new byte[width * count];
+        random.nextBytes(bytes);
+
+        BigInteger[] masks = new BigInteger[count];
+        byte[] magnitude = new byte[width];
+        for (int i = 0; i < count; i++) {
+            System.arraycopy(bytes, i * width, magnitude, 0, width);
+            // clear the bits above the mask length
+            magnitude[0] &= (byte) (0xff >>> (8 * width - bits));
+            masks[i] = new BigInteger(1, magnitude);
+            while (masks[i].signum() == 0) {
+                masks[i] = new BigInteger(bits, random);
+            }
+        }
+
+        return masks;
+    }
+}
@@ -0,0 +1,374 @@
+package cn.shine.smpcp;
+
+/*
+ * @Project SMPCP-Maven
+ * @Package cn.shine.smpcp
+ * @Class   C2Channel
+ * @Version 1.0.0
+ * @Author  Zhan Shi
+ * @Time    2026/10/17 21:00
+ * @License MIT
+ */
+
+import cn.shine.phe.Paillier.EncryptedNumber;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * todo Public Interface C2Channel: the requests of the first cloud platform to the third one
+ * <p>
+ * Protocol.CloudPlatformThird is the in-process implementation, a plain method call; TcpC2Channel sends the same
+ * requests to a C2Server in another process.
+ * <p>
+ * Every request has an asynchronous form. By default it is answered in the calling thread and returns a completed
+ * future; TcpC2Channel overrides them to keep many requests in flight on one connection.
+ *
+ * @author Zhan Shi
+ */
+public interface C2Channel extends Closeable {
+    /**
+     * todo Public Function multiply(EncryptedNumber, EncryptedNumber): secure multiply protocol third
+     *
+     * @param h1 param 1
+     * @param h2 param 2
+     * @return EncryptedNumber
+     */
+    EncryptedNumber multiply(EncryptedNumber h1, EncryptedNumber h2);
+
+    /**
+     * todo Public Function multiplyBatch(List, List): secure multiply protocol third for pairs
+     *
+     * @param h1 param 1 of the pairs
+     * @param h2 param 2 of the pairs
+     * @return List -> EncryptedNumber, in the order of the pairs
+     */
+    List<EncryptedNumber> multiplyBatch(@NotNull List<EncryptedNumber> h1, @NotNull List<EncryptedNumber> h2);
+
+    /**
+     * todo Public Function divide(EncryptedNumber, EncryptedNumber): secure divide protocol third
+     *
+     * @param h1 param 1
+     * @param h2 param 2
+     * @return EncryptedNumber
+     */
+    EncryptedNumber divide(EncryptedNumber h1, EncryptedNumber h2);
+
+    /**
+     * todo Public Function optimum(EncryptedNumber, EncryptedNumber, EncryptedNumber, String): secure optimum protocol third
+     *
+     * @param h1   param 1
+     * @param h2   param 2
+     * @param h3   param 3
+     * @param mode optimum mode 'max' or 'min'
+     * @return List -> EncryptedNumber, alpha and beta
+     */
+    List<EncryptedNumber> optimum(EncryptedNumber h1, EncryptedNumber h2, EncryptedNumber h3, String mode);
+
+    /**
+     * todo Public Function parity(EncryptedNumber): secure parity protocol third
+     *
+     * @param h param
+     * @return EncryptedNumber
+     */
+    EncryptedNumber parity(EncryptedNumber h);
+
+    /**
+     * todo Public Function equals(EncryptedNumber): secure equals protocol third
+     *
+     * @param h param
+     * @return EncryptedNumber
+     */
+    EncryptedNumber equals(EncryptedNumber h);
+
+    /**
+     * todo Public Function equalsBatch(List): secure equals protocol third for a batch
+     *
+     * @param h params
+     * @return List -> EncryptedNumber, in the order of h
+     */
+    List<EncryptedNumber> equalsBatch(@NotNull List<EncryptedNumber> h);
+
+    /**
+     * todo Public Function multiplyAsync(EncryptedNumber, EncryptedNumber): asynchronous multiply
+     *
+     * @param h1 param 1
+     * @param h2 param 2
+     * @return CompletableFuture -> EncryptedNumber
+     */
+    default CompletableFuture<EncryptedNumber> multiplyAsync(EncryptedNumber h1, EncryptedNumber h2) {
+        return complete(() -> multiply(h1, h2));
+    }
+
+    /**
+     * todo Public Function multiplyBatchAsync(List, List): asynchronous multiplyBatch
+     *
+     * @param h1 param 1 of the pairs
+     * @param h2 param 2 of the pairs
+     * @return CompletableFuture -> List -> EncryptedNumber, in the order of the pairs
+     */
+    default CompletableFuture<List<EncryptedNumber>> multiplyBatchAsync(@NotNull List<EncryptedNumber> h1,
+                                                                        @NotNull List<EncryptedNumber> h2) {
+        return complete(() -> multiplyBatch(h1, h2));
+    }
+
+    /**
+     * todo Public Function divideAsync(EncryptedNumber, EncryptedNumber): asynchronous divide
+     *
+     * @param h1 param 1
+     * @param h2 param 2
+     * @return CompletableFuture -> EncryptedNumber
+     */
+    default CompletableFuture<EncryptedNumber> divideAsync(EncryptedNumber h1, EncryptedNumber h2) {
+        return complete(() -> divide(h1, h2));
+    }
+
+    /**
+     * todo Public Function optimumAsync(EncryptedNumber, EncryptedNumber, EncryptedNumber, String): asynchronous optimum
+     *
+     * @param h1   param 1
+     * @param h2   param 2
+     * @param h3   param 3
+     * @param mode optimum mode 'max' or 'min'
+     * @return CompletableFuture -> List -> EncryptedNumber, alpha and beta
+     */
+    default CompletableFuture<List<EncryptedNumber>> optimumAsync(EncryptedNumber h1, EncryptedNumber h2,
+                                                                  EncryptedNumber h3, String mode) {
+        return complete(() -> optimum(h1, h2, h3, mode));
+    }
+
+    /**
+     * todo Public Function parityAsync(EncryptedNumber): asynchronous parity
+     *
+     * @param h param
+     * @return CompletableFuture -> EncryptedNumber
+     */
+    default CompletableFuture<EncryptedNumber> parityAsync(EncryptedNumber h) {
+        return complete(() -> parity(h));
+    }
+
+    /**
+     * todo Public Function equalsAsync(EncryptedNumber): asynchronous equals
+     *
+     * @param h param
+     * @return CompletableFuture -> EncryptedNumber
+     */
+    default CompletableFuture<EncryptedNumber> equalsAsync(EncryptedNumber h) {
+        return complete(() -> equals(h));
+    }
+
+    /**
+     * todo Public Function equalsBatchAsync(List): asynchronous equalsBatch
+     *
+     * @param h params
+     * @return CompletableFuture -> List -> EncryptedNumber, in the order of h
+     */
+    default CompletableFuture<List<EncryptedNumber>> equalsBatchAsync(@NotNull List<EncryptedNumber> h) {
+        return complete(() -> equalsBatch(h));
+    }
+
+    /**
+     * todo Public Function close(): release the transport, nothing for an in-process channel
+     */
+    @Override
+    default void close() {
+    }
+
+    /**
+     * todo Private Static Function complete(Supplier): the result of a request answered in the calling thread
+     *
+     * @param request the request
+     * @param <T>     result type
+     * @return CompletableFuture, completed normally or exceptionally
+     */
+    private static <T> @NotNull CompletableFuture<T> complete(@NotNull Supplier<T> request) {
+        try {
+            return CompletableFuture.completedFuture(request.get());
+        } catch (RuntimeException | Error e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * todo Public Enum Operation: the requests of a channel, the ordinal is the opcode on the wire
+     */
+    enum Operation {
+        PUBLIC_KEY, MULTIPLY, MULTIPLY_BATCH, DIVIDE, OPTIMUM, PARITY, EQUALS, EQUALS_BATCH
+    }
+
+    /**
+     * todo Public Static Class Statistics: per operation message, byte and latency counters of a channel
+     */
+    final class Statistics {
+        /**
+         * messages:      requests served
+         * bytesSent:     bytes written, frame headers included
+         * bytesReceived: bytes read, frame headers included
+         * nanos:         round trip time for a client, service time for a server
+         */
+        private final LongAdder[] messages, bytesSent, bytesReceived, nanos;
+
+        /**
+         * todo Public Function Statistics(): Class Statistics init
+         */
+        public Statistics() {
+            int count = Operation.values().length;
+            this.messages = adders(count);
+            this.bytesSent = adders(count);
+            this.bytesReceived = adders(count);
+            this.nanos = adders(count);
+        }
+
+        /**
+         * todo Function record(Operation, long, long, long): count one message
+         *
+         * @param operation the operation
+         * @param sent      bytes written
+         * @param received  bytes read
+         * @param elapsed   nanoseconds taken
+         */
+        void record(@NotNull Operation operation, long sent, long received, long elapsed) {
+            int i = operation.ordinal();
+            this.messages[i].increment();
+            this.bytesSent[i].add(sent);
+            this.bytesReceived[i].add(received);
+            this.nanos[i].add(elapsed);
+        }
+
+        /**
+         * todo Public Function getMessages(Operation): messages of an operation
+         *
+         * @param operation the operation
+         * @return long
+         */
+        public long getMessages(@NotNull Operation operation) {
+            return this.messages[operation.ordinal()].sum();
+        }
+
+        /**
+         * todo Public Function getBytesSent(Operation): bytes written for an operation
+         *
+         * @param operation the operation
+         * @return long
+         */
+        public long getBytesSent(@NotNull Operation operation) {
+            return this.bytesSent[operation.ordinal()].sum();
+        }
+
+        /**
+         * todo Public Function getBytesReceived(Operation): bytes read for an operation
+         *
+         * @param operation the operation
+         * @return long
+         */
+        public long getBytesReceived(@NotNull Operation operation) {
+            return this.bytesReceived[operation.ordinal()].sum();
+        }
+
+        /**
+         * todo Public Function getNanos(Operation): nanoseconds taken by an operation
+         *
+         * @param operation the operation
+         * @return long
+         */
+        public long getNanos(@NotNull Operation operation) {
+            return this.nanos[operation.ordinal()].sum();
+        }
+
+        /**
+         * todo Public Function getMessages(): messages of all operations
+         *
+         * @return long
+         */
+        public long getMessages() {
+            return total(this.messages);
+        }
+
+        /**
+         * todo Public Function getBytesSent(): bytes written for all operations
+         *
+         * @return long
+         */
+        public long getBytesSent() {
+            return total(this.bytesSent);
+        }
+
+        /**
+         * todo Public Function getBytesReceived(): bytes read for all operations
+         *
+         * @return long
+         */
+        public long getBytesReceived() {
+            return total(this.bytesReceived);
+        }
+
+        /**
+         * todo Public Function getNanos(): nanoseconds taken by all operations
+         *
+         * @return long
+         */
+        public long getNanos() {
+            return total(this.nanos);
+        }
+
+        /**
+         * todo Public Function reset(): zero the counters
+         */
+        public void reset() {
+            for (LongAdder[] adders : List.of(this.messages, this.bytesSent, this.bytesReceived, this.nanos)) {
+                for (LongAdder adder : adders) {
+                    adder.reset();
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder("<Statistics");
+            for (Operation operation : Operation.values()) {
+                long count = getMessages(operation);
+                if (count > 0) {
+                    builder.append(String.format(" %s: %d messages, %d bytes sent, %d bytes received, %d us mean;",
+                            operation, count, getBytesSent(operation), getBytesReceived(operation),
+                            getNanos(operation) / count / 1000));
+                }
+            }
+
+            return builder.append('>').toString();
+        }
+
+        /**
+         * todo Private Static Function adders(int): new counters
+         *
+         * @param count number of counters
+         * @return LongAdder[]
+         */
+        private static @NotNull LongAdder[] adders(int count) {
+            LongAdder[] adders = new LongAdder[count];
+            for (int i = 0; i < count; i++) {
+                adders[i] = new LongAdder();
+            }
+
+            return adders;
+        }
+
+        /**
+         * todo Private Static Function total(LongAdder[]): sum of counters
+         *
+         * @param adders the counters
+         * @return long
+         */
+        private static long total(@NotNull LongAdder[] adders) {
+            long total = 0;
+            for (LongAdder adder : adders) {
+                total += adder.sum();
+            }
+
+            return total;
+        }
+    }
+}
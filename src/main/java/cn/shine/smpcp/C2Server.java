@@ -0,0 +1,307 @@
+package cn.shine.smpcp;
+
+/*
+ * @Project SMPCP-Maven
+ * @Package cn.shine.smpcp
+ * @Class   C2Server
+ * @Version 1.0.0
+ * @Author  Zhan Shi
+ * @Time    2026/10/17 21:00
+ * @License MIT
+ */
+
+import cn.shine.phe.Paillier.EncryptedNumber;
+import cn.shine.phe.Paillier.PaillierKeyPair;
+import cn.shine.smpcp.C2Channel.Operation;
+import cn.shine.smpcp.C2Channel.Statistics;
+import cn.shine.smpcp.Protocol.CloudPlatformThird;
+import cn.shine.smpcp.TcpC2Channel.Frame;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * todo Public Class C2Server: serves a CloudPlatformThird to TcpC2Channel clients
+ * <p>
+ * One thread accepts connections and every connection gets its own reader thread. The requests are answered
+ * concurrently by the worker threads, each response as soon as it is ready, so the pipelined requests of a
+ * TcpC2Channel do not wait for each other; the frames are described in TcpC2Channel.
+ *
+ * @author Zhan Shi
+ */
+public class C2Server implements Closeable {
+    /**
+     * c2:         the served third cloud platform
+     * statistics: per operation counters, the latency is the service time
+     */
+    private final CloudPlatformThird c2;
+    private final Statistics statistics = new Statistics();
+    /**
+     * workers: answer the requests
+     */
+    private final ExecutorService workers;
+    /**
+     * server:      the listening socket, null before start
+     * connections: the open connections
+     */
+    private volatile ServerSocketChannel server;
+    private final Set<SocketChannel> connections = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param c2 the served third cloud platform
+     * @see C2Server#C2Server(CloudPlatformThird, int)
+     */
+    public C2Server(CloudPlatformThird c2) {
+        this(c2, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * todo Public Function C2Server(CloudPlatformThird, int): Class C2Server init
+     *
+     * @param c2          the served third cloud platform
+     * @param workerCount number of worker threads
+     */
+    public C2Server(CloudPlatformThird c2, int workerCount) {
+        this.c2 = c2;
+        this.workers = Executors.newFixedThreadPool(workerCount, runnable -> daemon(runnable, "c2-server-worker"));
+    }
+
+    /**
+     * todo Public Function start(SocketAddress): listen and serve in background threads
+     *
+     * @param address the local address, port 0 for an ephemeral port
+     * @return C2Server this
+     * @throws IOException if the address cannot be bound
+     */
+    public synchronized C2Server start(SocketAddress address) throws IOException {
+        if (this.server != null) {
+            throw new IllegalStateException("server already started");
+        }
+
+        this.server = ServerSocketChannel.open().bind(address);
+        daemon(this::accept, "c2-server-accept").start();
+
+        return this;
+    }
+
+    /**
+     * todo Public Function getAddress(): the bound address
+     *
+     * @return InetSocketAddress
+     * @throws IOException if the socket is closed
+     */
+    public InetSocketAddress getAddress() throws IOException {
+        return (InetSocketAddress) this.server.getLocalAddress();
+    }
+
+    /**
+     * todo Public Function getStatistics(): per operation counters, the latency is the service time
+     *
+     * @return Statistics
+     */
+    public Statistics getStatistics() {
+        return this.statistics;
+    }
+
+    /**
+     * todo Public Function close(): stop listening, drop the connections and stop the workers
+     */
+    @Override
+    public void close() {
+        this.workers.shutdownNow();
+        try {
+            if (this.server != null) {
+                this.server.close();
+            }
+        } catch (IOException ignored) {
+        }
+        for (SocketChannel connection : this.connections) {
+            try {
+                connection.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * todo Private Function accept(): the accept loop
+     */
+    private void accept() {
+        while (this.server.isOpen()) {
+            try {
+                SocketChannel connection = this.server.accept();
+                connection.socket().setTcpNoDelay(true);
+                this.connections.add(connection);
+                daemon(() -> serve(connection), "c2-server-" + connection.getRemoteAddress()).start();
+            } catch (IOException e) {
+                // closed by close()
+                return;
+            }
+        }
+    }
+
+    /**
+     * todo Private Function serve(SocketChannel): the request loop of a connection
+     *
+     * @param connection the connection
+     */
+    private void serve(SocketChannel connection) {
+        try (connection) {
+            while (true) {
+                Frame request = Frame.read(connection);
+                this.workers.execute(() -> respond(connection, request));
+            }
+        } catch (EOFException ignored) {
+            // closed by the client
+        } catch (IOException | RejectedExecutionException ignored) {
+            // the connection is dropped or the server is closed
+        } finally {
+            this.connections.remove(connection);
+        }
+    }
+
+    /**
+     * todo Private Function respond(SocketChannel, Frame): answer a request on a worker thread
+     *
+     * @param connection the connection
+     * @param request    the request
+     */
+    private void respond(SocketChannel connection, Frame request) {
+        long start = System.nanoTime();
+        try {
+            ByteBuffer response;
+            try {
+                response = handle(request).encode();
+            } catch (IOException e) {
+                response = Frame.of(request.id, TcpC2Channel.ERROR, e.getMessage(), List.of()).encode();
+            }
+            Operation[] operations = Operation.values();
+            // counted before the write, so a client that got the response also sees the count
+            if (request.code >= 0 && request.code < operations.length) {
+                this.statistics.record(operations[request.code], response.remaining(), request.length,
+                        System.nanoTime() - start);
+            }
+            synchronized (connection) {
+                Frame.writeFully(connection, response);
+            }
+        } catch (IOException e) {
+            try {
+                connection.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * todo Function handle(Frame): the response to a request
+     *
+     * @param request the request
+     * @return Frame the response, ERROR with the message if the request failed
+     */
+    @NotNull Frame handle(@NotNull Frame request) {
+        Operation[] operations = Operation.values();
+        if (request.code < 0 || request.code >= operations.length) {
+            return Frame.of(request.id, TcpC2Channel.ERROR, String.format("unknown opcode %s", request.code), List.of());
+        }
+
+        Operation operation = operations[request.code];
+        try {
+            List<EncryptedNumber> h = request.numbers(this.c2.publicKey);
+            List<EncryptedNumber> result;
+            switch (operation) {
+                case PUBLIC_KEY:
+                    return Frame.of(request.id, TcpC2Channel.OK, this.c2.publicKey.n.toString(16), List.of());
+                case MULTIPLY:
+                    result = List.of(this.c2.multiply(h.get(0), h.get(1)));
+                    break;
+                case MULTIPLY_BATCH:
+                    if (h.size() % 2 != 0) {
+                        throw new Protocol.ValueErrorException(String.format("got %s numbers to multiply in pairs", h.size()));
+                    }
+                    result = this.c2.multiplyBatch(h.subList(0, h.size() / 2), h.subList(h.size() / 2, h.size()));
+                    break;
+                case DIVIDE:
+                    result = List.of(this.c2.divide(h.get(0), h.get(1)));
+                    break;
+                case OPTIMUM:
+                    result = this.c2.optimum(h.get(0), h.get(1), h.get(2), request.text);
+                    break;
+                case PARITY:
+                    result = List.of(this.c2.parity(h.get(0)));
+                    break;
+                case EQUALS:
+                    result = List.of(this.c2.equals(h.get(0)));
+                    break;
+                case EQUALS_BATCH:
+                    result = this.c2.equalsBatch(h);
+                    break;
+                default:
+                    throw new Protocol.ValueErrorException(String.format("unsupported operation %s", operation));
+            }
+
+            return Frame.of(request.id, TcpC2Channel.OK, null, result);
+        } catch (RuntimeException | Error e) {
+            return Frame.of(request.id, TcpC2Channel.ERROR, e.getClass().getSimpleName() + ": " + e.getMessage(), List.of());
+        }
+    }
+
+    /**
+     * todo Private Static Function daemon(Runnable, String): create a daemon thread
+     *
+     * @param runnable the task
+     * @param name     the thread name
+     * @return Thread
+     */
+    private static @NotNull Thread daemon(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+
+        return thread;
+    }
+
+    /**
+     * todo Public Static Function main(String[]): run a third cloud platform with a fresh key pair
+     * <p>
+     * Usage: C2Server port [keyLength] [bindAddress]. Clients get the public key with new TcpC2Channel(address).
+     * The server decrypts for anyone who connects, so it listens on the loopback address unless another one, such
+     * as 0.0.0.0 for every interface, is given explicitly.
+     *
+     * @param args port, key length, 2048 by default, and bind address, the loopback address by default
+     * @throws IOException          if the port cannot be bound or the bind address is unknown
+     * @throws InterruptedException if the main thread is interrupted
+     */
+    public static void main(String @NotNull [] args) throws IOException, InterruptedException {
+        if (args.length < 1) {
+            System.err.println("usage: C2Server port [keyLength] [bindAddress]");
+            System.exit(2);
+        }
+        int port = Integer.parseInt(args[0]);
+        int keyLength = args.length > 1 ? Integer.parseInt(args[1]) : 2048;
+        InetAddress bindAddress = args.length > 2 ? InetAddress.getByName(args[2]) : InetAddress.getLoopbackAddress();
+
+        PaillierKeyPair keyPair = PaillierKeyPair.generate(keyLength);
+        C2Server server = new C2Server(new CloudPlatformThird(keyPair.publicKey, keyPair.privateKey))
+                .start(new InetSocketAddress(bindAddress, port));
+        System.out.printf("C2Server listening on %s with a %s bit key%n", server.getAddress(), keyLength);
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.close();
+            System.out.println(server.getStatistics());
+        }));
+        Thread.currentThread().join();
+    }
+}
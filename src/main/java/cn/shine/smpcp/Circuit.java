@@ -0,0 +1,660 @@
+package cn.shine.smpcp;
+
+/*
+ * @Project SMPCP-Maven
+ * @Package cn.shine.smpcp
+ * @Class   Circuit
+ * @Version 1.0.0
+ * @Author  Zhan Shi
+ * @Time    2026/10/18 02:00
+ * @License MIT
+ */
+
+import cn.shine.phe.Paillier.EncryptedNumber;
+import cn.shine.smpcp.Protocol.SMPCProtocol;
+import org.jetbrains.annotations.NotNull;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * todo Public Class Circuit: lazy SMPC expressions, evaluated one batched round per multiplicative depth
+ * <p>
+ * The operations of a Node are recorded instead of executed. Additions, subtractions and scalar multiplications are
+ * folded into one linear combination per node, and the operations that need the third cloud platform are reduced to
+ * four kinds: multiply (bitAnd, bitOr and bitXor are linear around it), optimum, equals and lessThan (the other
+ * comparisons are linear around it, notEquals around equals).
+ * <p>
+ * The depth of a node is the number of c2 rounds before its value is known. evaluate() walks the depths in order and
+ * sends all nodes of a depth as one multiplyBatch, one equalsBatch, one lessThanBatch and one optimum per node, which
+ * run in parallel; so (a > b) AND (c <= d) OR e == f costs 3 rounds instead of one per primitive.
+ *
+ * @author Zhan Shi
+ */
+public class Circuit {
+    /**
+     * protocol:    the first and the third cloud platform
+     * parallelism: requests of one round in flight at once
+     */
+    private final SMPCProtocol protocol;
+    private final int parallelism;
+
+    /**
+     * @param protocol the first and the third cloud platform
+     * @see Circuit#Circuit(SMPCProtocol, int)
+     */
+    public Circuit(@NotNull SMPCProtocol protocol) {
+        this(protocol, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * todo Public Function Circuit(SMPCProtocol, int): Class Circuit init
+     *
+     * @param protocol    the first and the third cloud platform
+     * @param parallelism requests of one round in flight at once, 1 to send them one after another
+     * @throws Protocol.ValueErrorException if parallelism is not positive
+     */
+    public Circuit(@NotNull SMPCProtocol protocol, int parallelism) throws Protocol.ValueErrorException {
+        if (parallelism <= 0) {
+            throw new Protocol.ValueErrorException(String.format("parallelism should be positive but got %s", parallelism));
+        }
+
+        this.protocol = protocol;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * todo Public Function input(EncryptedNumber): a ciphertext as a node
+     *
+     * @param cipher the ciphertext
+     * @return Node
+     */
+    public @NotNull Node input(@NotNull EncryptedNumber cipher) {
+        return new Node(this, Kind.INPUT, cipher, null, null, null, null);
+    }
+
+    /**
+     * todo Public Function constant(Number): a public constant as a node
+     *
+     * @param value int, long, float, double, BigInteger or BigDecimal
+     * @return Node
+     */
+    public @NotNull Node constant(@NotNull Number value) {
+        return Node.linear(this, new IdentityHashMap<>(), decimal(value));
+    }
+
+    /**
+     * todo Public Function evaluate(Node): the value of a node
+     *
+     * @param output the node
+     * @return EncryptedNumber
+     */
+    public EncryptedNumber evaluate(@NotNull Node output) {
+        return evaluate(List.of(output)).get(0);
+    }
+
+    /**
+     * todo Public Function evaluate(List): the values of nodes, the nodes they share evaluated once
+     *
+     * @param outputs the nodes
+     * @return List -> EncryptedNumber, in the order of outputs
+     * @throws Protocol.ValueErrorException if a node belongs to another circuit
+     */
+    public List<EncryptedNumber> evaluate(@NotNull List<Node> outputs) throws Protocol.ValueErrorException {
+        for (Node output : outputs) {
+            check(output);
+        }
+
+        // the c2 nodes reachable from the outputs, by depth
+        TreeMap<Integer, List<Node>> layers = new TreeMap<>();
+        Set<Node> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Node output : outputs) {
+            collect(output, visited, layers);
+        }
+
+        Map<Node, EncryptedNumber> values = new IdentityHashMap<>();
+        ExecutorService executor = this.parallelism > 1 && !layers.isEmpty()
+                ? Executors.newFixedThreadPool(this.parallelism, runnable -> {
+                    Thread thread = new Thread(runnable, "circuit-round");
+                    thread.setDaemon(true);
+                    return thread;
+                }) : null;
+        try {
+            for (List<Node> layer : layers.values()) {
+                round(layer, values, executor);
+            }
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
+
+        List<EncryptedNumber> results = new ArrayList<>(outputs.size());
+        for (Node output : outputs) {
+            results.add(valueOf(output, values));
+        }
+
+        return results;
+    }
+
+    /**
+     * todo Private Function round(List, Map, ExecutorService): one c2 round for the nodes of a depth
+     *
+     * @param layer    the nodes
+     * @param values   the known values, the results are added
+     * @param executor runs the requests, null to run them in this thread
+     */
+    private void round(@NotNull List<Node> layer, Map<Node, EncryptedNumber> values, ExecutorService executor) {
+        Protocol.CloudPlatform c1 = this.protocol.c1;
+        C2Channel c2 = this.protocol.c2;
+
+        // the operands are local, known from the earlier rounds
+        Map<Kind, List<Node>> groups = new TreeMap<>();
+        Map<Kind, List<EncryptedNumber>> lefts = new TreeMap<>(), rights = new TreeMap<>();
+        for (Node node : layer) {
+            groups.computeIfAbsent(node.kind, kind -> new ArrayList<>()).add(node);
+            lefts.computeIfAbsent(node.kind, kind -> new ArrayList<>()).add(valueOf(node.operands[0], values));
+            rights.computeIfAbsent(node.kind, kind -> new ArrayList<>()).add(valueOf(node.operands[1], values));
+        }
+
+        List<List<Node>> targets = new ArrayList<>();
+        List<Supplier<List<EncryptedNumber>>> requests = new ArrayList<>();
+        for (Map.Entry<Kind, List<Node>> group : groups.entrySet()) {
+            List<Node> nodes = group.getValue();
+            List<EncryptedNumber> x = lefts.get(group.getKey()), y = rights.get(group.getKey());
+            switch (group.getKey()) {
+                case MULTIPLY:
+                    targets.add(nodes);
+                    requests.add(() -> c1.multiplyBatch(x, y, c2));
+                    break;
+                case EQUALS:
+                    targets.add(nodes);
+                    requests.add(() -> c1.equalsBatch(x, y, c2));
+                    break;
+                case LESS_THAN:
+                    targets.add(nodes);
+                    requests.add(() -> c1.lessThanBatch(x, y, c2));
+                    break;
+                case OPTIMUM:
+                    for (int i = 0; i < nodes.size(); i++) {
+                        Node node = nodes.get(i);
+                        EncryptedNumber xi = x.get(i), yi = y.get(i);
+                        targets.add(List.of(node));
+                        requests.add(() -> List.of(c1.optimum(xi, yi, c2, node.mode)));
+                    }
+                    break;
+                default:
+                    throw new Protocol.ValueErrorException(String.format("%s is not a c2 operation", group.getKey()));
+            }
+        }
+
+        List<CompletableFuture<List<EncryptedNumber>>> futures = new ArrayList<>(requests.size());
+        for (Supplier<List<EncryptedNumber>> request : requests) {
+            futures.add(executor == null ? CompletableFuture.completedFuture(request.get())
+                    : CompletableFuture.supplyAsync(request, executor));
+        }
+        for (int i = 0; i < futures.size(); i++) {
+            List<EncryptedNumber> results = Protocol.await(futures.get(i));
+            List<Node> nodes = targets.get(i);
+            for (int j = 0; j < nodes.size(); j++) {
+                values.put(nodes.get(j), results.get(j));
+            }
+        }
+    }
+
+    /**
+     * todo Private Function valueOf(Node, Map): the value of a node whose c2 operations are done
+     *
+     * @param node   the node
+     * @param values the known values, a linear node is added once computed
+     * @return EncryptedNumber
+     */
+    private EncryptedNumber valueOf(@NotNull Node node, @NotNull Map<Node, EncryptedNumber> values) {
+        if (node.kind == Kind.INPUT) {
+            return node.value;
+        }
+        EncryptedNumber value = values.get(node);
+        if (value != null) {
+            return value;
+        }
+        if (node.kind != Kind.LINEAR) {
+            throw new Protocol.ValueErrorException(String.format("%s node evaluated before its round", node.kind));
+        }
+
+        EncryptedNumber sum = null;
+        for (Map.Entry<Node, BigInteger> term : node.terms.entrySet()) {
+            EncryptedNumber x = valueOf(term.getKey(), values);
+            x = term.getValue().equals(BigInteger.ONE) ? x : x.multiply(term.getValue());
+            sum = sum == null ? x : sum.add(x);
+        }
+        Number constant = number(node.constant);
+        if (sum == null) {
+            sum = this.protocol.c1.publicKey.encryptLazy(constant);
+        } else if (node.constant.signum() != 0) {
+            sum = sum.add(constant);
+        }
+        values.put(node, sum);
+
+        return sum;
+    }
+
+    /**
+     * todo Private Function check(Node): fail on a node of another circuit
+     *
+     * @param node the node
+     * @throws Protocol.ValueErrorException if the node belongs to another circuit
+     */
+    private void check(@NotNull Node node) throws Protocol.ValueErrorException {
+        if (node.circuit != this) {
+            throw new Protocol.ValueErrorException("Attempted to combine nodes of different circuits");
+        }
+    }
+
+    /**
+     * todo Private Static Function collect(Node, Set, TreeMap): the c2 nodes a node depends on, by depth
+     *
+     * @param node    the node
+     * @param visited the nodes already walked
+     * @param layers  the c2 nodes by depth
+     */
+    private static void collect(@NotNull Node node, @NotNull Set<Node> visited, @NotNull TreeMap<Integer, List<Node>> layers) {
+        if (!visited.add(node)) {
+            return;
+        }
+        if (node.kind == Kind.LINEAR) {
+            for (Node term : node.terms.keySet()) {
+                collect(term, visited, layers);
+            }
+        } else if (node.kind != Kind.INPUT) {
+            for (Node operand : node.operands) {
+                collect(operand, visited, layers);
+            }
+            layers.computeIfAbsent(node.depth, depth -> new ArrayList<>()).add(node);
+        }
+    }
+
+    /**
+     * todo Private Static Function decimal(Number): a constant as BigDecimal
+     *
+     * @param value the constant
+     * @return BigDecimal
+     */
+    private static @NotNull BigDecimal decimal(@NotNull Number value) {
+        if (value instanceof BigDecimal) {
+            return (BigDecimal) value;
+        } else if (value instanceof BigInteger) {
+            return new BigDecimal((BigInteger) value);
+        }
+
+        return new BigDecimal(value.toString());
+    }
+
+    /**
+     * todo Private Static Function number(BigDecimal): a constant as BigInteger when it is integral
+     *
+     * @param value the constant
+     * @return Number, BigInteger or BigDecimal
+     */
+    private static @NotNull Number number(@NotNull BigDecimal value) {
+        return value.signum() == 0 || value.stripTrailingZeros().scale() <= 0 ? value.toBigInteger() : value;
+    }
+
+    /**
+     * todo Private Enum Kind: the operation of a node
+     */
+    private enum Kind {
+        MULTIPLY, EQUALS, LESS_THAN, OPTIMUM, INPUT, LINEAR
+    }
+
+    /**
+     * todo Public Static Class Node: a recorded operation
+     */
+    public static final class Node {
+        /**
+         * circuit:  the circuit of the node
+         * kind:     the operation
+         * value:    the ciphertext of an INPUT node
+         * operands: the two operands of a c2 node
+         * mode:     optimum mode 'max' or 'min' of an OPTIMUM node
+         * terms:    node -> coefficient of a LINEAR node
+         * constant: the constant term of a LINEAR node
+         * depth:    c2 rounds before the value is known
+         */
+        private final Circuit circuit;
+        private final Kind kind;
+        private final EncryptedNumber value;
+        private final Node[] operands;
+        private final String mode;
+        private final Map<Node, BigInteger> terms;
+        private final BigDecimal constant;
+        private final int depth;
+
+        /**
+         * todo Private Function Node(Circuit, Kind, EncryptedNumber, Node[], String, Map, BigDecimal): Class Node init
+         *
+         * @param circuit  the circuit of the node
+         * @param kind     the operation
+         * @param value    the ciphertext of an INPUT node
+         * @param operands the operands of a c2 node
+         * @param mode     optimum mode of an OPTIMUM node
+         * @param terms    the terms of a LINEAR node
+         * @param constant the constant term of a LINEAR node
+         */
+        private Node(Circuit circuit, Kind kind, EncryptedNumber value, Node[] operands, String mode,
+                     Map<Node, BigInteger> terms, BigDecimal constant) {
+            this.circuit = circuit;
+            this.kind = kind;
+            this.value = value;
+            this.operands = operands;
+            this.mode = mode;
+            this.terms = terms;
+            this.constant = constant;
+
+            int depth = 0;
+            if (operands != null) {
+                for (Node operand : operands) {
+                    depth = Math.max(depth, operand.depth + 1);
+                }
+            }
+            if (terms != null) {
+                for (Node term : terms.keySet()) {
+                    depth = Math.max(depth, term.depth);
+                }
+            }
+            this.depth = depth;
+        }
+
+        /**
+         * todo Public Function getDepth(): c2 rounds before the value is known
+         *
+         * @return int
+         */
+        public int getDepth() {
+            return this.depth;
+        }
+
+        /**
+         * todo Public Function evaluate(): the value of the node
+         *
+         * @return EncryptedNumber
+         */
+        public EncryptedNumber evaluate() {
+            return this.circuit.evaluate(this);
+        }
+
+        /**
+         * todo Public Function add(Node): local addition
+         *
+         * @param other other node
+         * @return Node this + other
+         */
+        public @NotNull Node add(@NotNull Node other) {
+            return combine(this, BigInteger.ONE, other, BigInteger.ONE, BigDecimal.ZERO);
+        }
+
+        /**
+         * todo Public Function add(Number): local addition of a constant
+         *
+         * @param other the constant
+         * @return Node this + other
+         */
+        public @NotNull Node add(@NotNull Number other) {
+            return combine(this, BigInteger.ONE, null, BigInteger.ZERO, decimal(other));
+        }
+
+        /**
+         * todo Public Function subtract(Node): local subtraction
+         *
+         * @param other other node
+         * @return Node this - other
+         */
+        public @NotNull Node subtract(@NotNull Node other) {
+            return combine(this, BigInteger.ONE, other, BigInteger.ONE.negate(), BigDecimal.ZERO);
+        }
+
+        /**
+         * todo Public Function subtract(Number): local subtraction of a constant
+         *
+         * @param other the constant
+         * @return Node this - other
+         */
+        public @NotNull Node subtract(@NotNull Number other) {
+            return combine(this, BigInteger.ONE, null, BigInteger.ZERO, decimal(other).negate());
+        }
+
+        /**
+         * todo Public Function multiply(long): local multiplication by an integer constant
+         *
+         * @param other the constant
+         * @return Node this * other
+         */
+        public @NotNull Node multiply(long other) {
+            return multiply(BigInteger.valueOf(other));
+        }
+
+        /**
+         * todo Public Function multiply(BigInteger): local multiplication by an integer constant
+         *
+         * @param other the constant
+         * @return Node this * other
+         */
+        public @NotNull Node multiply(@NotNull BigInteger other) {
+            return combine(this, other, null, BigInteger.ZERO, BigDecimal.ZERO);
+        }
+
+        /**
+         * todo Public Function multiply(Node): secure multiply protocol, one round
+         *
+         * @param other other node
+         * @return Node this * other
+         */
+        public @NotNull Node multiply(@NotNull Node other) {
+            return c2(Kind.MULTIPLY, this, other, null);
+        }
+
+        /**
+         * todo Public Function optimum(Node, String): secure optimum protocol, one round
+         *
+         * @param other other node
+         * @param mode  optimum mode 'max' or 'min'
+         * @return Node
+         */
+        public @NotNull Node optimum(@NotNull Node other, @NotNull String mode) {
+            return c2(Kind.OPTIMUM, this, other, mode);
+        }
+
+        /**
+         * todo Public Function bitAnd(Node): secure bit and protocol, one round
+         *
+         * @param other other node
+         * @return Node
+         */
+        public @NotNull Node bitAnd(@NotNull Node other) {
+            return multiply(other);
+        }
+
+        /**
+         * todo Public Function bitOr(Node): secure bit or protocol, one round
+         *
+         * @param other other node
+         * @return Node this + other - this * other
+         */
+        public @NotNull Node bitOr(@NotNull Node other) {
+            return add(other).subtract(multiply(other));
+        }
+
+        /**
+         * todo Public Function bitXor(Node): secure bit xor protocol, one round
+         *
+         * @param other other node
+         * @return Node this + other - 2 * this * other
+         */
+        public @NotNull Node bitXor(@NotNull Node other) {
+            return add(other).subtract(multiply(other).multiply(2));
+        }
+
+        /**
+         * todo Public Function bitNot(): local bit not
+         *
+         * @return Node 1 - this
+         */
+        public @NotNull Node bitNot() {
+            return combine(this, BigInteger.ONE.negate(), null, BigInteger.ZERO, BigDecimal.ONE);
+        }
+
+        /**
+         * todo Public Function equals(Node): secure equals protocol, one round
+         *
+         * @param other other node
+         * @return Node
+         */
+        public @NotNull Node equals(@NotNull Node other) {
+            return c2(Kind.EQUALS, this, other, null);
+        }
+
+        /**
+         * todo Public Function notEquals(Node): secure not equals protocol, one round
+         *
+         * @param other other node
+         * @return Node
+         */
+        public @NotNull Node notEquals(@NotNull Node other) {
+            return equals(other).bitNot();
+        }
+
+        /**
+         * todo Public Function greaterThan(Node): secure greater than protocol, one round
+         *
+         * @param other other node
+         * @return Node
+         */
+        public @NotNull Node greaterThan(@NotNull Node other) {
+            return other.lessThan(this);
+        }
+
+        /**
+         * todo Public Function greaterEquals(Node): secure greater equals protocol, one round
+         *
+         * @param other other node
+         * @return Node
+         */
+        public @NotNull Node greaterEquals(@NotNull Node other) {
+            return lessThan(other).bitNot();
+        }
+
+        /**
+         * todo Public Function lessThan(Node): secure less than protocol, one round
+         *
+         * @param other other node
+         * @return Node
+         */
+        public @NotNull Node lessThan(@NotNull Node other) {
+            return c2(Kind.LESS_THAN, this, other, null);
+        }
+
+        /**
+         * todo Public Function lessEquals(Node): secure less equals protocol, one round
+         *
+         * @param other other node
+         * @return Node
+         */
+        public @NotNull Node lessEquals(@NotNull Node other) {
+            return other.lessThan(this).bitNot();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("<Node %s depth=%s>", this.kind, this.depth);
+        }
+
+        /**
+         * todo Private Static Function c2(Kind, Node, Node, String): a node that needs the third cloud platform
+         *
+         * @param kind  the operation
+         * @param x     operand 1
+         * @param y     operand 2
+         * @param mode  optimum mode, null otherwise
+         * @return Node
+         */
+        private static @NotNull Node c2(Kind kind, @NotNull Node x, @NotNull Node y, String mode) {
+            x.circuit.check(y);
+
+            return new Node(x.circuit, kind, null, new Node[]{x, y}, mode, null, null);
+        }
+
+        /**
+         * todo Private Static Function combine(Node, BigInteger, Node, BigInteger, BigDecimal): the folded
+         * linear combination a * x + b * y + constant
+         *
+         * @param x        node 1
+         * @param a        coefficient of node 1
+         * @param y        node 2, null for none
+         * @param b        coefficient of node 2
+         * @param constant the constant term
+         * @return Node
+         */
+        private static @NotNull Node combine(@NotNull Node x, @NotNull BigInteger a, Node y, @NotNull BigInteger b,
+                                             @NotNull BigDecimal constant) {
+            Map<Node, BigInteger> terms = new IdentityHashMap<>();
+            BigDecimal sum = x.fold(a, terms).add(constant);
+            if (y != null) {
+                x.circuit.check(y);
+                sum = sum.add(y.fold(b, terms));
+            }
+            terms.values().removeIf(coefficient -> coefficient.signum() == 0);
+
+            // x + 0 is x
+            if (sum.signum() == 0 && terms.size() == 1) {
+                Map.Entry<Node, BigInteger> term = terms.entrySet().iterator().next();
+                if (term.getValue().equals(BigInteger.ONE)) {
+                    return term.getKey();
+                }
+            }
+
+            return linear(x.circuit, terms, sum);
+        }
+
+        /**
+         * todo Private Static Function linear(Circuit, Map, BigDecimal): a LINEAR node
+         *
+         * @param circuit  the circuit of the node
+         * @param terms    node -> coefficient
+         * @param constant the constant term
+         * @return Node
+         */
+        private static @NotNull Node linear(Circuit circuit, Map<Node, BigInteger> terms, BigDecimal constant) {
+            return new Node(circuit, Kind.LINEAR, null, null, null, terms, constant);
+        }
+
+        /**
+         * todo Private Function fold(BigInteger, Map): add coefficient * this to the terms of a linear combination
+         *
+         * @param coefficient the coefficient
+         * @param terms       node -> coefficient, updated
+         * @return BigDecimal the constant term of coefficient * this
+         */
+        private @NotNull BigDecimal fold(@NotNull BigInteger coefficient, @NotNull Map<Node, BigInteger> terms) {
+            if (this.kind != Kind.LINEAR) {
+                terms.merge(this, coefficient, BigInteger::add);
+                return BigDecimal.ZERO;
+            }
+
+            for (Map.Entry<Node, BigInteger> term : this.terms.entrySet()) {
+                terms.merge(term.getKey(), term.getValue().multiply(coefficient), BigInteger::add);
+            }
+
+            return this.constant.multiply(new BigDecimal(coefficient));
+        }
+    }
+}
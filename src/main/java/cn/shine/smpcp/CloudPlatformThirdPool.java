@@ -0,0 +1,407 @@
+package cn.shine.smpcp;
+
+/*
+ * @Project SMPCP-Maven
+ * @Package cn.shine.smpcp
+ * @Class   CloudPlatformThirdPool
+ * @Version 1.0.0
+ * @Author  Zhan Shi
+ * @Time    2026/10/17 23:00
+ * @License MIT
+ */
+
+import cn.shine.phe.Paillier.EncryptedNumber;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * todo Public Class CloudPlatformThirdPool: C2Channel routing the requests across replicas of the third cloud platform
+ * <p>
+ * The replicas hold the same key pair, usually TcpC2Channel connections to C2Servers on other cores or machines.
+ * A request goes to the next replica in turn or to the one with the fewest requests in flight, and a batch is split
+ * into one shard per healthy replica and reassembled in order. A replica that loses its transport is taken out of the
+ * rotation, since a broken TcpC2Channel does not reconnect, and the request is retried on another one; a request
+ * rejected by a replica fails as it is, since every replica would reject it. A lost replica is brought back by
+ * replacing its channel with a new connection.
+ * <p>
+ * The requests go through the asynchronous methods of the replicas, so the shards of a batch only run in parallel on
+ * replicas which answer asynchronously, as TcpC2Channel does.
+ *
+ * @author Zhan Shi
+ */
+public class CloudPlatformThirdPool implements C2Channel {
+    /**
+     * todo Public Enum Routing: how a replica is picked for a request
+     */
+    public enum Routing {
+        ROUND_ROBIN, LEAST_LOADED
+    }
+
+    /**
+     * replicas: the third cloud platforms, a slot swapped as a whole by replace
+     * routing:  how a replica is picked
+     */
+    private final List<Replica> replicas;
+    private final Routing routing;
+    /**
+     * next: start of the next replica search, turns the rotation
+     */
+    private final AtomicInteger next = new AtomicInteger();
+
+    /**
+     * @param replicas the third cloud platforms
+     * @see CloudPlatformThirdPool#CloudPlatformThirdPool(List, Routing)
+     */
+    public CloudPlatformThirdPool(@NotNull List<? extends C2Channel> replicas) {
+        this(replicas, Routing.LEAST_LOADED);
+    }
+
+    /**
+     * todo Public Function CloudPlatformThirdPool(List, Routing): Class CloudPlatformThirdPool init
+     *
+     * @param replicas the third cloud platforms, holding the same key pair
+     * @param routing  how a replica is picked
+     * @throws Protocol.ValueErrorException if there is no replica
+     */
+    public CloudPlatformThirdPool(@NotNull List<? extends C2Channel> replicas, @NotNull Routing routing)
+            throws Protocol.ValueErrorException {
+        if (replicas.isEmpty()) {
+            throw new Protocol.ValueErrorException("a pool needs at least one replica");
+        }
+
+        List<Replica> slots = new ArrayList<>(replicas.size());
+        for (C2Channel channel : replicas) {
+            slots.add(new Replica(channel));
+        }
+        this.replicas = new CopyOnWriteArrayList<>(slots);
+        this.routing = routing;
+    }
+
+    /**
+     * todo Public Function getReplicaCount(): number of replicas
+     *
+     * @return int
+     */
+    public int getReplicaCount() {
+        return this.replicas.size();
+    }
+
+    /**
+     * todo Public Function isHealthy(int): whether a replica is in the rotation
+     *
+     * @param index index of the replica
+     * @return boolean
+     */
+    public boolean isHealthy(int index) {
+        return this.replicas.get(index).healthy;
+    }
+
+    /**
+     * todo Public Function getLoad(int): requests in flight on a replica
+     *
+     * @param index index of the replica
+     * @return int
+     */
+    public int getLoad(int index) {
+        return this.replicas.get(index).load.get();
+    }
+
+    /**
+     * todo Public Function getServed(int): requests answered by a replica
+     *
+     * @param index index of the replica
+     * @return long
+     */
+    public long getServed(int index) {
+        return this.replicas.get(index).served.get();
+    }
+
+    /**
+     * todo Public Function getFailures(int): transport failures of a replica
+     *
+     * @param index index of the replica
+     * @return long
+     */
+    public long getFailures(int index) {
+        return this.replicas.get(index).failures.get();
+    }
+
+    /**
+     * todo Public Function replace(int, C2Channel): put a new channel in the place of a replica, back in the rotation
+     * <p>
+     * The old channel is closed and the counters of the replica start over. Requests already in flight on the old
+     * channel complete or fail as they would have, without taking the new one out of the rotation.
+     *
+     * @param index   index of the replica
+     * @param channel the new third cloud platform, holding the same key pair
+     * @throws Protocol.ValueErrorException if there is no such replica
+     */
+    public void replace(int index, @NotNull C2Channel channel) throws Protocol.ValueErrorException {
+        if (index < 0 || index >= this.replicas.size()) {
+            throw new Protocol.ValueErrorException(String.format("no replica %s in a pool of %s", index, this.replicas.size()));
+        }
+
+        Replica old = this.replicas.set(index, new Replica(channel));
+        try {
+            old.channel.close();
+        } catch (Exception ignored) {
+        }
+    }
+
+    @Override
+    public EncryptedNumber multiply(EncryptedNumber h1, EncryptedNumber h2) {
+        return Protocol.await(multiplyAsync(h1, h2));
+    }
+
+    @Override
+    public List<EncryptedNumber> multiplyBatch(@NotNull List<EncryptedNumber> h1, @NotNull List<EncryptedNumber> h2) {
+        return Protocol.await(multiplyBatchAsync(h1, h2));
+    }
+
+    @Override
+    public EncryptedNumber divide(EncryptedNumber h1, EncryptedNumber h2) {
+        return Protocol.await(divideAsync(h1, h2));
+    }
+
+    @Override
+    public List<EncryptedNumber> optimum(EncryptedNumber h1, EncryptedNumber h2, EncryptedNumber h3, String mode) {
+        return Protocol.await(optimumAsync(h1, h2, h3, mode));
+    }
+
+    @Override
+    public EncryptedNumber parity(EncryptedNumber h) {
+        return Protocol.await(parityAsync(h));
+    }
+
+    @Override
+    public EncryptedNumber equals(EncryptedNumber h) {
+        return Protocol.await(equalsAsync(h));
+    }
+
+    @Override
+    public List<EncryptedNumber> equalsBatch(@NotNull List<EncryptedNumber> h) {
+        return Protocol.await(equalsBatchAsync(h));
+    }
+
+    @Override
+    public CompletableFuture<EncryptedNumber> multiplyAsync(EncryptedNumber h1, EncryptedNumber h2) {
+        return dispatch(replica -> replica.multiplyAsync(h1, h2));
+    }
+
+    @Override
+    public CompletableFuture<List<EncryptedNumber>> multiplyBatchAsync(@NotNull List<EncryptedNumber> h1,
+                                                                       @NotNull List<EncryptedNumber> h2)
+            throws Protocol.ValueErrorException {
+        if (h1.size() != h2.size()) {
+            throw new Protocol.ValueErrorException(String.format("got %s and %s numbers in a batch", h1.size(), h2.size()));
+        }
+
+        return split(h1.size(), (from, to) -> {
+            List<EncryptedNumber> shard1 = new ArrayList<>(h1.subList(from, to));
+            List<EncryptedNumber> shard2 = new ArrayList<>(h2.subList(from, to));
+
+            return dispatch(replica -> replica.multiplyBatchAsync(shard1, shard2));
+        });
+    }
+
+    @Override
+    public CompletableFuture<EncryptedNumber> divideAsync(EncryptedNumber h1, EncryptedNumber h2) {
+        return dispatch(replica -> replica.divideAsync(h1, h2));
+    }
+
+    @Override
+    public CompletableFuture<List<EncryptedNumber>> optimumAsync(EncryptedNumber h1, EncryptedNumber h2,
+                                                                 EncryptedNumber h3, String mode) {
+        return dispatch(replica -> replica.optimumAsync(h1, h2, h3, mode));
+    }
+
+    @Override
+    public CompletableFuture<EncryptedNumber> parityAsync(EncryptedNumber h) {
+        return dispatch(replica -> replica.parityAsync(h));
+    }
+
+    @Override
+    public CompletableFuture<EncryptedNumber> equalsAsync(EncryptedNumber h) {
+        return dispatch(replica -> replica.equalsAsync(h));
+    }
+
+    @Override
+    public CompletableFuture<List<EncryptedNumber>> equalsBatchAsync(@NotNull List<EncryptedNumber> h) {
+        return split(h.size(), (from, to) -> {
+            List<EncryptedNumber> shard = new ArrayList<>(h.subList(from, to));
+
+            return dispatch(replica -> replica.equalsBatchAsync(shard));
+        });
+    }
+
+    /**
+     * todo Public Function close(): close every replica
+     */
+    @Override
+    public void close() {
+        for (Replica replica : this.replicas) {
+            try {
+                replica.channel.close();
+            } catch (Exception ignored) {
+            }
+        }
+    }
+
+    /**
+     * todo Private Function dispatch(Function): send a request to a replica, retried on another one if it is lost
+     *
+     * @param request the request to a replica
+     * @param <T>     result type
+     * @return CompletableFuture -> T
+     */
+    private <T> @NotNull CompletableFuture<T> dispatch(@NotNull Function<C2Channel, CompletableFuture<T>> request) {
+        return dispatch(request, this.replicas.size());
+    }
+
+    /**
+     * @param attempts replicas left to try
+     * @see CloudPlatformThirdPool#dispatch(Function)
+     */
+    private <T> @NotNull CompletableFuture<T> dispatch(@NotNull Function<C2Channel, CompletableFuture<T>> request,
+                                                       int attempts) {
+        Replica replica;
+        try {
+            replica = select();
+        } catch (Protocol.ChannelErrorException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        replica.load.incrementAndGet();
+        CompletableFuture<T> future;
+        try {
+            future = request.apply(replica.channel);
+        } catch (RuntimeException | Error e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+
+        return future.handle((result, error) -> {
+            replica.load.decrementAndGet();
+            if (error == null) {
+                replica.served.incrementAndGet();
+                return CompletableFuture.completedFuture(result);
+            }
+
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            // a rejected request has no cause, a lost one carries the transport error
+            if (cause instanceof Protocol.ChannelErrorException && cause.getCause() != null) {
+                replica.down();
+                if (attempts > 1) {
+                    return dispatch(request, attempts - 1);
+                }
+            }
+
+            return CompletableFuture.<T>failedFuture(cause);
+        }).thenCompose(Function.identity());
+    }
+
+    /**
+     * todo Private Function split(int, BiFunction): a batch sent as one shard per healthy replica
+     *
+     * @param size  size of the batch
+     * @param shard sends the shard [from, to) of the batch
+     * @return CompletableFuture -> List -> EncryptedNumber, the shards reassembled in order
+     */
+    private @NotNull CompletableFuture<List<EncryptedNumber>> split(
+            int size, @NotNull BiFunction<Integer, Integer, CompletableFuture<List<EncryptedNumber>>> shard) {
+        if (size == 0) {
+            return CompletableFuture.completedFuture(new ArrayList<>());
+        }
+
+        int healthy = (int) this.replicas.stream().filter(replica -> replica.healthy).count();
+        int count = Math.max(1, Math.min(size, healthy));
+
+        List<CompletableFuture<List<EncryptedNumber>>> shards = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            shards.add(shard.apply(i * size / count, (i + 1) * size / count));
+        }
+
+        return CompletableFuture.allOf(shards.toArray(new CompletableFuture<?>[0])).thenApply(ignored -> {
+            List<EncryptedNumber> results = new ArrayList<>(size);
+            for (CompletableFuture<List<EncryptedNumber>> future : shards) {
+                results.addAll(future.join());
+            }
+
+            return results;
+        });
+    }
+
+    /**
+     * todo Private Function select(): the replica of the next request
+     *
+     * @return Replica
+     * @throws Protocol.ChannelErrorException if no replica is healthy
+     */
+    private @NotNull Replica select() throws Protocol.ChannelErrorException {
+        int size = this.replicas.size();
+        int start = Math.floorMod(this.next.getAndIncrement(), size);
+
+        Replica selected = null;
+        for (int i = 0; i < size; i++) {
+            Replica replica = this.replicas.get((start + i) % size);
+            if (!replica.healthy) {
+                continue;
+            }
+            if (this.routing == Routing.ROUND_ROBIN) {
+                return replica;
+            }
+            // the rotation breaks the ties of equally loaded replicas
+            if (selected == null || replica.load.get() < selected.load.get()) {
+                selected = replica;
+            }
+        }
+
+        if (selected == null) {
+            throw new Protocol.ChannelErrorException(String.format("none of the %s replicas is healthy", size));
+        }
+
+        return selected;
+    }
+
+    /**
+     * todo Private Static Class Replica: a third cloud platform of the pool and its health
+     */
+    private static final class Replica {
+        /**
+         * channel:  the third cloud platform
+         * load:     requests in flight
+         * served:   requests answered
+         * failures: transport failures
+         * healthy:  in the rotation, false once the transport is lost until the replica is replaced
+         */
+        private final C2Channel channel;
+        private final AtomicInteger load = new AtomicInteger();
+        private final AtomicLong served = new AtomicLong(), failures = new AtomicLong();
+        private volatile boolean healthy = true;
+
+        /**
+         * todo Private Function Replica(C2Channel): Class Replica init
+         *
+         * @param channel the third cloud platform
+         */
+        private Replica(C2Channel channel) {
+            this.channel = channel;
+        }
+
+        /**
+         * todo Private Function down(): count a transport failure, out of the rotation
+         */
+        private void down() {
+            this.failures.incrementAndGet();
+            this.healthy = false;
+        }
+    }
+}
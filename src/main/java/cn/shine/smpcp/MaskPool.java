@@ -0,0 +1,256 @@
+package cn.shine.smpcp;
+
+/*
+ * @Project SMPCP-Maven
+ * @Package cn.shine.smpcp
+ * @Class   MaskPool
+ * @Version 1.0.0
+ * @Author  Zhan Shi
+ * @Time    2026/10/18 00:30
+ * @License MIT
+ */
+
+import cn.shine.phe.Paillier.EncryptedNumber;
+import cn.shine.phe.Paillier.PaillierPublicKey;
+import cn.shine.phe.RandomnessProvider;
+import org.jetbrains.annotations.NotNull;
+
+import java.math.BigInteger;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * todo Public Class MaskPool: precomputed mask tuples of the first cloud platform for a public key
+ * <p>
+ * The offline phase: worker threads refill the pool up to the high watermark whenever it drops below the low
+ * watermark, and every tuple carries its masks already encrypted and obfuscated. The online protocol steps add the
+ * encrypted masks instead of the plain ones, so the messages to the third cloud platform come out re-randomized and
+ * the full-width modPow of obfuscation is moved out of the request path.
+ *
+ * @author Zhan Shi
+ */
+public class MaskPool {
+    /**
+     * publicKey: the public key of the encrypted masks
+     */
+    final PaillierPublicKey publicKey;
+    /**
+     * lowWatermark:  refill is started when the pool is smaller than it
+     * highWatermark: refill is stopped when the pool reaches it
+     * workerCount:   number of refill threads
+     */
+    private final int lowWatermark, highWatermark, workerCount;
+    /**
+     * pool: the precomputed tuples
+     */
+    private final ConcurrentLinkedQueue<Mask> pool = new ConcurrentLinkedQueue<>();
+    /**
+     * available: tuples in the pool
+     * reserved:  tuples in the pool and in computation
+     * active:    refill threads still running
+     */
+    private final AtomicInteger available = new AtomicInteger(), reserved = new AtomicInteger(),
+            active = new AtomicInteger();
+    /**
+     * hits:   take() served from the pool
+     * misses: take() drawn inline
+     */
+    private final AtomicLong hits = new AtomicLong(), misses = new AtomicLong();
+    /**
+     * workers: refill threads
+     */
+    private final ExecutorService workers;
+    /**
+     * closed: the pool is shut down
+     */
+    private volatile boolean closed = false;
+
+    /**
+     * todo Public Function MaskPool(PaillierPublicKey, int, int, int): Class MaskPool init
+     *
+     * @param publicKey     the public key of the encrypted masks
+     * @param lowWatermark  refill is started when the pool is smaller than it
+     * @param highWatermark refill is stopped when the pool reaches it
+     * @param workerCount   number of refill threads
+     * @throws Protocol.ValueErrorException if the watermarks or the worker count are invalid
+     */
+    public MaskPool(@NotNull PaillierPublicKey publicKey, int lowWatermark, int highWatermark, int workerCount)
+            throws Protocol.ValueErrorException {
+        if (lowWatermark < 0 || highWatermark <= lowWatermark) {
+            String exception = "watermarks should satisfy 0 <= low < high but got low %s and high %s";
+            throw new Protocol.ValueErrorException(String.format(exception, lowWatermark, highWatermark));
+        }
+        if (workerCount <= 0) {
+            throw new Protocol.ValueErrorException("worker count should be positive");
+        }
+
+        this.publicKey = publicKey;
+        this.lowWatermark = lowWatermark;
+        this.highWatermark = highWatermark;
+        this.workerCount = workerCount;
+        this.workers = Executors.newFixedThreadPool(workerCount, runnable -> {
+            Thread thread = new Thread(runnable, "mask-pool-" + publicKey);
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        refill();
+    }
+
+    /**
+     * todo Public Function take(): take a tuple, drawn inline with lazily encrypted masks when the pool is empty
+     *
+     * @return Mask
+     */
+    public @NotNull Mask take() {
+        Mask mask = this.pool.poll();
+        if (mask == null) {
+            this.misses.incrementAndGet();
+            refill();
+            return Mask.draw(this.publicKey, false);
+        }
+
+        this.hits.incrementAndGet();
+        this.reserved.decrementAndGet();
+        if (this.available.decrementAndGet() < this.lowWatermark) {
+            refill();
+        }
+
+        return mask;
+    }
+
+    /**
+     * todo Public Function size(): get number of tuples in the pool
+     *
+     * @return int
+     */
+    public int size() {
+        return this.available.get();
+    }
+
+    /**
+     * todo Public Function getHits(): get number of take() served from the pool
+     *
+     * @return long
+     */
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    /**
+     * todo Public Function getMisses(): get number of take() drawn inline
+     *
+     * @return long
+     */
+    public long getMisses() {
+        return this.misses.get();
+    }
+
+    /**
+     * todo Public Function shutdown(): stop the refill threads and drop the tuples
+     */
+    public void shutdown() {
+        this.closed = true;
+        this.workers.shutdownNow();
+        this.pool.clear();
+        this.available.set(0);
+        this.reserved.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("<MaskPool for %s size=%s hits=%s misses=%s>", this.publicKey, size(), getHits(),
+                getMisses());
+    }
+
+    /**
+     * todo Private Function refill(): start the refill threads unless they are running
+     */
+    private void refill() {
+        if (this.closed || !this.active.compareAndSet(0, this.workerCount)) {
+            return;
+        }
+
+        for (int i = 0; i < this.workerCount; i++) {
+            this.workers.execute(this::fill);
+        }
+    }
+
+    /**
+     * todo Private Function fill(): compute tuples until the pool reaches the high watermark
+     */
+    private void fill() {
+        try {
+            while (!this.closed) {
+                if (this.reserved.incrementAndGet() > this.highWatermark) {
+                    this.reserved.decrementAndGet();
+                    break;
+                }
+                this.pool.offer(Mask.draw(this.publicKey, true));
+                this.available.incrementAndGet();
+            }
+        } finally {
+            this.active.decrementAndGet();
+        }
+    }
+
+    /**
+     * todo Public Static Class Mask: a mask tuple, used by one protocol call only
+     */
+    public static final class Mask {
+        /**
+         * r1:      mask 1, r1 > r2
+         * r2:      mask 2, r2 > 0
+         * product: r1 * r2
+         */
+        final BigInteger r1, r2, product;
+        /**
+         * e1: E(r1) at exponent 0, obfuscated when precomputed
+         * e2: E(r2) at exponent 0, obfuscated when precomputed
+         */
+        final EncryptedNumber e1, e2;
+
+        /**
+         * todo Private Function Mask(BigInteger, BigInteger, EncryptedNumber, EncryptedNumber): Class Mask init
+         *
+         * @param r1 mask 1
+         * @param r2 mask 2
+         * @param e1 E(r1)
+         * @param e2 E(r2)
+         */
+        private Mask(BigInteger r1, BigInteger r2, EncryptedNumber e1, EncryptedNumber e2) {
+            this.r1 = r1;
+            this.r2 = r2;
+            this.product = r1.multiply(r2);
+            this.e1 = e1;
+            this.e2 = e2;
+        }
+
+        /**
+         * todo Static Function draw(PaillierPublicKey, boolean): a fresh tuple
+         * <p>
+         * Un-obfuscated masks cost nothing to encrypt; the protocol re-randomizes what it sends, as it would have
+         * without a tuple.
+         *
+         * @param publicKey  the public key of the encrypted masks
+         * @param obfuscated obfuscate the encrypted masks or not
+         * @return Mask
+         */
+        static @NotNull Mask draw(@NotNull PaillierPublicKey publicKey, boolean obfuscated) {
+            BigInteger[] masks = RandomnessProvider.getDefault().nextMasks(Protocol.CloudPlatform.MASK_BITS, 2);
+            BigInteger r1 = masks[0].max(masks[1]).add(BigInteger.ONE), r2 = masks[0].min(masks[1]);
+
+            EncryptedNumber e1 = publicKey.encryptLazy(r1);
+            EncryptedNumber e2 = publicKey.encryptLazy(r2);
+            if (obfuscated) {
+                e1.obfuscate();
+                e2.obfuscate();
+            }
+
+            return new Mask(r1, r2, e1, e2);
+        }
+    }
+}
@@ -10,9 +10,11 @@ package cn.shine.smpcp;
  * @License MIT
  */
 
+import cn.shine.phe.Paillier.BatchResult;
 import cn.shine.phe.Paillier.EncryptedNumber;
 import cn.shine.phe.Paillier.PaillierPrivateKey;
 import cn.shine.phe.Paillier.PaillierPublicKey;
+import cn.shine.phe.RandomnessProvider;
 import org.jetbrains.annotations.NotNull;
 
 import java.math.BigDecimal;
@@ -21,8 +23,12 @@ import java.math.MathContext;
 import java.math.RoundingMode;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Objects;
-import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  * todo Public Class Protocol: Protocol
@@ -30,6 +36,27 @@ import java.util.Random;
  * @author Zhan Shi
  */
 public class Protocol {
+    /**
+     * todo Static Function await(CompletableFuture): the result of a future, its own error rethrown if it failed
+     *
+     * @param future the future
+     * @param <T>    result type
+     * @return T
+     */
+    static <T> T await(@NotNull CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw e;
+        }
+    }
+
     /**
      * todo Public Static Class SMPCProtocol: Secure Multi-party Computation Protocol
      */
@@ -39,28 +66,28 @@ public class Protocol {
          * c2: third cloud platform
          */
         final CloudPlatform c1;
-        final CloudPlatformThird c2;
+        final C2Channel c2;
         /**
          * cipher: ciphertext
          */
         EncryptedNumber cipher;
 
         /**
-         * todo Public Function SMPCProtocol(CloudPlatform, CloudPlatformThird): Protocol Init
+         * todo Public Function SMPCProtocol(CloudPlatform, C2Channel): Protocol Init
          *
          * @param c1 cloud platform
          * @param c2 third cloud platform
          */
-        public SMPCProtocol(CloudPlatform c1, CloudPlatformThird c2) {
+        public SMPCProtocol(CloudPlatform c1, C2Channel c2) {
             this.c1 = c1;
             this.c2 = c2;
         }
 
         /**
          * @param cipher cipher: ciphertext
-         * @see SMPCProtocol#SMPCProtocol(CloudPlatform, CloudPlatformThird)
+         * @see SMPCProtocol#SMPCProtocol(CloudPlatform, C2Channel)
          */
-        public SMPCProtocol(CloudPlatform c1, CloudPlatformThird c2, EncryptedNumber cipher) {
+        public SMPCProtocol(CloudPlatform c1, C2Channel c2, EncryptedNumber cipher) {
             this.c1 = c1;
             this.c2 = c2;
             this.cipher = cipher;
@@ -95,6 +122,17 @@ public class Protocol {
             return this.c1.multiply(this.cipher, other, this.c2);
         }
 
+        /**
+         * todo Public Function multiplyBatch(List, List): secure multiply protocol for pairs in one round trip
+         *
+         * @param ciphers cipher 1 of the pairs
+         * @param others  cipher 2 of the pairs
+         * @return List -> EncryptedNumber, in the order of the pairs
+         */
+        public List<EncryptedNumber> multiplyBatch(List<EncryptedNumber> ciphers, List<EncryptedNumber> others) {
+            return this.c1.multiplyBatch(ciphers, others, this.c2);
+        }
+
         /**
          * todo Public Function divide(EncryptedNumber): secure division protocol
          *
@@ -223,12 +261,190 @@ public class Protocol {
         public EncryptedNumber lessEquals(EncryptedNumber other) {
             return this.c1.lessEquals(this.cipher, other, this.c2);
         }
+
+        /**
+         * todo Public Function equalsBatch(List, List): secure equals protocol for pairs
+         *
+         * @param ciphers cipher 1 of the pairs
+         * @param others  cipher 2 of the pairs
+         * @return List -> EncryptedNumber, in the order of the pairs
+         */
+        public List<EncryptedNumber> equalsBatch(List<EncryptedNumber> ciphers, List<EncryptedNumber> others) {
+            return this.c1.equalsBatch(ciphers, others, this.c2);
+        }
+
+        /**
+         * todo Public Function notEqualsBatch(List, List): secure not equals protocol for pairs
+         *
+         * @param ciphers cipher 1 of the pairs
+         * @param others  cipher 2 of the pairs
+         * @return List -> EncryptedNumber, in the order of the pairs
+         */
+        public List<EncryptedNumber> notEqualsBatch(List<EncryptedNumber> ciphers, List<EncryptedNumber> others) {
+            return this.c1.notEqualsBatch(ciphers, others, this.c2);
+        }
+
+        /**
+         * todo Public Function greaterThanBatch(List, List): secure greater than protocol for pairs
+         *
+         * @param ciphers cipher 1 of the pairs
+         * @param others  cipher 2 of the pairs
+         * @return List -> EncryptedNumber, in the order of the pairs
+         */
+        public List<EncryptedNumber> greaterThanBatch(List<EncryptedNumber> ciphers, List<EncryptedNumber> others) {
+            return this.c1.greaterThanBatch(ciphers, others, this.c2);
+        }
+
+        /**
+         * todo Public Function lessThanBatch(List, List): secure less than protocol for pairs
+         *
+         * @param ciphers cipher 1 of the pairs
+         * @param others  cipher 2 of the pairs
+         * @return List -> EncryptedNumber, in the order of the pairs
+         */
+        public List<EncryptedNumber> lessThanBatch(List<EncryptedNumber> ciphers, List<EncryptedNumber> others) {
+            return this.c1.lessThanBatch(ciphers, others, this.c2);
+        }
+
+        /**
+         * todo Public Function multiplyAsync(EncryptedNumber): asynchronous secure multiply protocol
+         *
+         * @param other other encrypted number
+         * @return CompletableFuture -> EncryptedNumber
+         */
+        public CompletableFuture<EncryptedNumber> multiplyAsync(EncryptedNumber other) {
+            return this.c1.multiplyAsync(this.cipher, other, this.c2);
+        }
+
+        /**
+         * todo Public Function divideAsync(EncryptedNumber): asynchronous secure division protocol
+         *
+         * @param other other encrypted number
+         * @return CompletableFuture -> EncryptedNumber
+         */
+        public CompletableFuture<EncryptedNumber> divideAsync(EncryptedNumber other) {
+            return this.c1.divideAsync(this.cipher, other, this.c2);
+        }
+
+        /**
+         * todo Public Function optimumAsync(EncryptedNumber, String mode): asynchronous secure optimum protocol
+         *
+         * @param other other encrypted number
+         * @param mode  optimum mode 'max' or 'min'
+         * @return CompletableFuture -> EncryptedNumber
+         */
+        public CompletableFuture<EncryptedNumber> optimumAsync(EncryptedNumber other, String mode) {
+            return this.c1.optimumAsync(this.cipher, other, this.c2, mode);
+        }
+
+        /**
+         * todo Public Function parityAsync(): asynchronous secure parity protocol
+         *
+         * @return CompletableFuture -> EncryptedNumber
+         */
+        public CompletableFuture<EncryptedNumber> parityAsync() {
+            return this.c1.parityAsync(this.cipher, this.c2);
+        }
+
+        /**
+         * todo Public Function bitAndAsync(EncryptedNumber): asynchronous secure bit and protocol
+         *
+         * @param other other encrypted number
+         * @return CompletableFuture -> EncryptedNumber
+         */
+        public CompletableFuture<EncryptedNumber> bitAndAsync(EncryptedNumber other) {
+            return this.c1.bitAndAsync(this.cipher, other, this.c2);
+        }
+
+        /**
+         * todo Public Function bitOrAsync(EncryptedNumber): asynchronous secure bit or protocol
+         *
+         * @param other other encrypted number
+         * @return CompletableFuture -> EncryptedNumber
+         */
+        public CompletableFuture<EncryptedNumber> bitOrAsync(EncryptedNumber other) {
+            return this.c1.bitOrAsync(this.cipher, other, this.c2);
+        }
+
+        /**
+         * todo Public Function bitXorAsync(EncryptedNumber): asynchronous secure bit xor protocol
+         *
+         * @param other other encrypted number
+         * @return CompletableFuture -> EncryptedNumber
+         */
+        public CompletableFuture<EncryptedNumber> bitXorAsync(EncryptedNumber other) {
+            return this.c1.bitXorAsync(this.cipher, other, this.c2);
+        }
+
+        /**
+         * todo Public Function equalsAsync(EncryptedNumber): asynchronous secure equals protocol
+         *
+         * @param other other encrypted number
+         * @return CompletableFuture -> EncryptedNumber
+         */
+        public CompletableFuture<EncryptedNumber> equalsAsync(EncryptedNumber other) {
+            return this.c1.equalsAsync(this.cipher, other, this.c2);
+        }
+
+        /**
+         * todo Public Function notEqualsAsync(EncryptedNumber): asynchronous secure not equals protocol
+         *
+         * @param other other encrypted number
+         * @return CompletableFuture -> EncryptedNumber
+         */
+        public CompletableFuture<EncryptedNumber> notEqualsAsync(EncryptedNumber other) {
+            return this.c1.notEqualsAsync(this.cipher, other, this.c2);
+        }
+
+        /**
+         * todo Public Function greaterThanAsync(EncryptedNumber): asynchronous secure greater than protocol
+         *
+         * @param other other encrypted number
+         * @return CompletableFuture -> EncryptedNumber
+         */
+        public CompletableFuture<EncryptedNumber> greaterThanAsync(EncryptedNumber other) {
+            return this.c1.greaterThanAsync(this.cipher, other, this.c2);
+        }
+
+        /**
+         * todo Public Function greaterEqualsAsync(EncryptedNumber): asynchronous secure greater equals protocol
+         *
+         * @param other other encrypted number
+         * @return CompletableFuture -> EncryptedNumber
+         */
+        public CompletableFuture<EncryptedNumber> greaterEqualsAsync(EncryptedNumber other) {
+            return this.c1.greaterEqualsAsync(this.cipher, other, this.c2);
+        }
+
+        /**
+         * todo Public Function lessThanAsync(EncryptedNumber): asynchronous secure less than protocol
+         *
+         * @param other other encrypted number
+         * @return CompletableFuture -> EncryptedNumber
+         */
+        public CompletableFuture<EncryptedNumber> lessThanAsync(EncryptedNumber other) {
+            return this.c1.lessThanAsync(this.cipher, other, this.c2);
+        }
+
+        /**
+         * todo Public Function lessEqualsAsync(EncryptedNumber): asynchronous secure less equals protocol
+         *
+         * @param other other encrypted number
+         * @return CompletableFuture -> EncryptedNumber
+         */
+        public CompletableFuture<EncryptedNumber> lessEqualsAsync(EncryptedNumber other) {
+            return this.c1.lessEqualsAsync(this.cipher, other, this.c2);
+        }
     }
 
     /**
      * todo Public Static Class CloudPlatform: Cloud Platform Class
      */
     public static class CloudPlatform {
+        /**
+         * MASK_BITS: bit length of the random masks
+         */
+        static final int MASK_BITS = 0b0001_0100;
 
         /**
          * publicKey: public key
@@ -239,9 +455,13 @@ public class Protocol {
          */
         final Integer keyLength;
         /**
-         * eOne: encrypted number 1
+         * eOne: encrypted number 1, un-obfuscated since it is only combined with other ciphertexts
          */
         final EncryptedNumber eOne;
+        /**
+         * maskPool: precomputed mask tuples, null when disabled
+         */
+        private volatile MaskPool maskPool;
 
         /**
          * todo Public Function CloudPlatform(PaillierPublicKey): Class CloudPlatform Init
@@ -251,47 +471,150 @@ public class Protocol {
         public CloudPlatform(PaillierPublicKey publicKey) {
             this.publicKey = publicKey;
             this.keyLength = this.publicKey.n.bitLength();
-            this.eOne = this.publicKey.encrypt(1);
+            this.eOne = this.publicKey.encryptLazy(1);
+        }
+
+        /**
+         * todo Public Function enableMaskPool(int, int, int): precompute mask tuples in background threads
+         *
+         * @param lowWatermark  refill is started when the pool is smaller than it
+         * @param highWatermark refill is stopped when the pool reaches it
+         * @param workerCount   number of refill threads
+         * @return MaskPool
+         * @throws ValueErrorException if the watermarks or the worker count are invalid, the current pool is kept
+         */
+        public synchronized @NotNull MaskPool enableMaskPool(int lowWatermark, int highWatermark, int workerCount)
+                throws ValueErrorException {
+            MaskPool created = new MaskPool(this.publicKey, lowWatermark, highWatermark, workerCount);
+            MaskPool previous = this.maskPool;
+            this.maskPool = created;
+            if (previous != null) {
+                previous.shutdown();
+            }
+
+            return created;
+        }
+
+        /**
+         * todo Public Function disableMaskPool(): shutdown the mask pool
+         */
+        public synchronized void disableMaskPool() {
+            if (this.maskPool != null) {
+                this.maskPool.shutdown();
+                this.maskPool = null;
+            }
         }
 
         /**
-         * todo Public Function multiply(EncryptedNumber, EncryptedNumber, CloudPlatformThird): secure multiply protocol
+         * todo Public Function getMaskPool(): get the mask pool
+         *
+         * @return MaskPool, null when disabled
+         */
+        public MaskPool getMaskPool() {
+            return this.maskPool;
+        }
+
+        /**
+         * todo Public Function multiply(EncryptedNumber, EncryptedNumber, C2Channel): secure multiply protocol
          *
          * @param cipher cipher 1
          * @param other  cipher 2
          * @param c2     third cloud platform
          * @return EncryptedNumber
          */
-        public EncryptedNumber multiply(@NotNull EncryptedNumber cipher, @NotNull EncryptedNumber other, @NotNull CloudPlatformThird c2) {
-            BigInteger r1 = getRandomLtN();
-            BigInteger r2 = getRandomLtN();
+        public EncryptedNumber multiply(@NotNull EncryptedNumber cipher, @NotNull EncryptedNumber other, @NotNull C2Channel c2) {
+            return await(multiplyAsync(cipher, other, c2));
+        }
+
+        /**
+         * todo Public Function multiplyAsync(EncryptedNumber, EncryptedNumber, C2Channel): asynchronous secure multiply protocol
+         *
+         * @param cipher cipher 1
+         * @param other  cipher 2
+         * @param c2     third cloud platform
+         * @return CompletableFuture -> EncryptedNumber
+         */
+        public CompletableFuture<EncryptedNumber> multiplyAsync(@NotNull EncryptedNumber cipher, @NotNull EncryptedNumber other,
+                                                                @NotNull C2Channel c2) {
+            MaskPool.Mask mask = takeMask();
 
-            EncryptedNumber h1 = cipher.add(r1);
-            EncryptedNumber h2 = other.add(r2);
+            EncryptedNumber h1 = cipher.add(mask.e1);
+            EncryptedNumber h2 = other.add(mask.e2);
 
-            return c2.multiply(h1, h2).subtract(cipher.multiply(r2).add(other.multiply(r1)).add(r1.multiply(r2)));
+            return c2.multiplyAsync(blind(h1, mask.e1), blind(h2, mask.e2))
+                    .thenApply(h -> h.subtract(cipher.multiply(mask.r2).add(other.multiply(mask.r1)).add(mask.product)));
         }
 
         /**
-         * todo Public Function divide(EncryptedNumber, EncryptedNumber, CloudPlatformThird): secure divide protocol
+         * todo Public Function multiplyBatch(List, List, C2Channel): secure multiply protocol for pairs
+         * <p>
+         * The pairs are masked together, sent to c2 in one request and unmasked together, so N products cost
+         * one round trip instead of N.
+         *
+         * @param ciphers cipher 1 of the pairs
+         * @param others  cipher 2 of the pairs
+         * @param c2      third cloud platform
+         * @return List -> EncryptedNumber, in the order of the pairs
+         * @throws ValueErrorException if the lists differ in length
+         */
+        public List<EncryptedNumber> multiplyBatch(@NotNull List<EncryptedNumber> ciphers, @NotNull List<EncryptedNumber> others,
+                                                   @NotNull C2Channel c2) throws ValueErrorException {
+            int size = checkBatch(ciphers, others);
+            if (size == 0) {
+                return new ArrayList<>();
+            }
+
+            MaskPool.Mask[] masks = new MaskPool.Mask[size];
+            EncryptedNumber[] h1 = new EncryptedNumber[size], h2 = new EncryptedNumber[size];
+            IntStream.range(0, size).parallel().forEach(i -> {
+                masks[i] = takeMask();
+                h1[i] = blind(ciphers.get(i).add(masks[i].e1), masks[i].e1);
+                h2[i] = blind(others.get(i).add(masks[i].e2), masks[i].e2);
+            });
+
+            List<EncryptedNumber> products = c2.multiplyBatch(Arrays.asList(h1), Arrays.asList(h2));
+
+            EncryptedNumber[] results = new EncryptedNumber[size];
+            IntStream.range(0, size).parallel().forEach(i -> {
+                MaskPool.Mask mask = masks[i];
+                results[i] = products.get(i).subtract(ciphers.get(i).multiply(mask.r2).add(others.get(i).multiply(mask.r1)).add(mask.product));
+            });
+
+            return new ArrayList<>(Arrays.asList(results));
+        }
+
+        /**
+         * todo Public Function divide(EncryptedNumber, EncryptedNumber, C2Channel): secure divide protocol
          *
          * @param cipher cipher 1
          * @param other  cipher 2
          * @param c2     third cloud platform
          * @return EncryptedNumber
          */
-        public EncryptedNumber divide(@NotNull EncryptedNumber cipher, @NotNull EncryptedNumber other, @NotNull CloudPlatformThird c2) {
-            BigInteger r1 = getRandomLtN();
-            BigInteger r2 = getRandomLtN();
+        public EncryptedNumber divide(@NotNull EncryptedNumber cipher, @NotNull EncryptedNumber other, @NotNull C2Channel c2) {
+            return await(divideAsync(cipher, other, c2));
+        }
+
+        /**
+         * todo Public Function divideAsync(EncryptedNumber, EncryptedNumber, C2Channel): asynchronous secure divide protocol
+         *
+         * @param cipher cipher 1
+         * @param other  cipher 2
+         * @param c2     third cloud platform
+         * @return CompletableFuture -> EncryptedNumber
+         */
+        public CompletableFuture<EncryptedNumber> divideAsync(@NotNull EncryptedNumber cipher, @NotNull EncryptedNumber other,
+                                                              @NotNull C2Channel c2) {
+            MaskPool.Mask mask = takeMask();
 
-            EncryptedNumber h1 = cipher.multiply(r1).add(other.multiply(r1).multiply(r2));
-            EncryptedNumber h2 = other.multiply(r1);
+            EncryptedNumber h1 = cipher.multiply(mask.r1).add(other.multiply(mask.product));
+            EncryptedNumber h2 = other.multiply(mask.r1);
 
-            return c2.divide(h1, h2).subtract(r2);
+            return c2.divideAsync(blind(h1), blind(h2)).thenApply(h -> h.subtract(mask.r2));
         }
 
         /**
-         * todo Public Function optimum(EncryptedNumber, EncryptedNumber, CloudPlatformThird): secure optimum protocol
+         * todo Public Function optimum(EncryptedNumber, EncryptedNumber, C2Channel): secure optimum protocol
          *
          * @param cipher cipher 1
          * @param other  cipher 2
@@ -299,73 +622,122 @@ public class Protocol {
          * @param mode   optimum mode 'max' or 'min'
          * @return EncryptedNumber
          */
-        public EncryptedNumber optimum(EncryptedNumber cipher, EncryptedNumber other, CloudPlatformThird c2, String mode) {
-            BigInteger r1 = getRandomLtN();
-            BigInteger r2 = getRandomLtN();
-            BigInteger r3 = getRandomLtN();
+        public EncryptedNumber optimum(EncryptedNumber cipher, EncryptedNumber other, C2Channel c2, String mode) {
+            return await(optimumAsync(cipher, other, c2, mode));
+        }
+
+        /**
+         * todo Public Function optimumAsync(EncryptedNumber, EncryptedNumber, C2Channel, String): asynchronous secure optimum protocol
+         *
+         * @param cipher cipher 1
+         * @param other  cipher 2
+         * @param c2     third cloud platform
+         * @param mode   optimum mode 'max' or 'min'
+         * @return CompletableFuture -> EncryptedNumber
+         */
+        public CompletableFuture<EncryptedNumber> optimumAsync(EncryptedNumber cipher, EncryptedNumber other, C2Channel c2,
+                                                               String mode) {
+            // the tuple masks the operands, r1 only scales their difference
+            MaskPool.Mask mask = takeMask();
+            BigInteger r1 = getRandomLtN(), r2 = mask.r1, r3 = mask.r2;
 
             EncryptedNumber h1, h2, h3;
             double v = 5e-1;
-            if (new Random().nextDouble() > v) {
+            if (RandomnessProvider.getDefault().random().nextDouble() > v) {
                 h1 = (cipher.subtract(other)).multiply(r1);
-                h2 = cipher.add(r2);
-                h3 = other.add(r3);
+                h2 = cipher.add(mask.e1);
+                h3 = other.add(mask.e2);
             } else {
                 h1 = (other.subtract(cipher)).multiply(r1);
-                h2 = other.add(r2);
-                h3 = cipher.add(r3);
+                h2 = other.add(mask.e1);
+                h3 = cipher.add(mask.e2);
             }
 
-            ArrayList<EncryptedNumber> param = c2.optimum(h1, h2, h3, mode);
-            EncryptedNumber alpha = param.get(0);
-            EncryptedNumber beta = param.get(1);
+            return c2.optimumAsync(blind(h1), blind(h2, mask.e1), blind(h3, mask.e2), mode).thenApply(param -> {
+                EncryptedNumber alpha = param.get(0);
+                EncryptedNumber beta = param.get(1);
 
-            return cipher.add(other).subtract(beta).add(alpha.multiply(r3)).add((this.eOne.subtract(alpha)).multiply(r2));
+                return cipher.add(other).subtract(beta).add(alpha.multiply(r3)).add((this.eOne.subtract(alpha)).multiply(r2));
+            });
         }
 
         /**
-         * todo Public Function parity(EncryptedNumber, CloudPlatformThird): secure parity protocol
+         * todo Public Function parity(EncryptedNumber, C2Channel): secure parity protocol
          *
          * @param cipher cipher
          * @param c2     third cloud platform
          * @return EncryptedNumber
          */
-        public EncryptedNumber parity(@NotNull EncryptedNumber cipher, @NotNull CloudPlatformThird c2) {
+        public EncryptedNumber parity(@NotNull EncryptedNumber cipher, @NotNull C2Channel c2) {
+            return await(parityAsync(cipher, c2));
+        }
+
+        /**
+         * todo Public Function parityAsync(EncryptedNumber, C2Channel): asynchronous secure parity protocol
+         *
+         * @param cipher cipher
+         * @param c2     third cloud platform
+         * @return CompletableFuture -> EncryptedNumber
+         */
+        public CompletableFuture<EncryptedNumber> parityAsync(@NotNull EncryptedNumber cipher, @NotNull C2Channel c2) {
             BigInteger r = getRandomLtN();
 
             EncryptedNumber h = cipher.add(r);
 
-            EncryptedNumber alpha = c2.parity(h);
-
-            return r.mod(BigInteger.TWO).equals(BigInteger.ZERO) ? alpha : this.eOne.subtract(alpha);
+            return c2.parityAsync(blind(h))
+                    .thenApply(alpha -> r.mod(BigInteger.TWO).equals(BigInteger.ZERO) ? alpha : this.eOne.subtract(alpha));
         }
 
         /**
-         * todo Public Function bitAnd(EncryptedNumber, Integer, CloudPlatformThird): secure bit and protocol
+         * todo Public Function bitAnd(EncryptedNumber, Integer, C2Channel): secure bit and protocol
          *
          * @param cipher cipher 1
          * @param other  cipher 2
          * @param c2     third cloud platform
          * @return EncryptedNumber
          */
-        public EncryptedNumber bitAnd(EncryptedNumber cipher, EncryptedNumber other, CloudPlatformThird c2) {
+        public EncryptedNumber bitAnd(EncryptedNumber cipher, EncryptedNumber other, C2Channel c2) {
             return multiply(cipher, other, c2);
         }
 
         /**
-         * todo Public Function bitOr(EncryptedNumber, Integer, CloudPlatformThird): secure bit or protocol
+         * todo Public Function bitAndAsync(EncryptedNumber, EncryptedNumber, C2Channel): asynchronous secure bit and protocol
+         *
+         * @param cipher cipher 1
+         * @param other  cipher 2
+         * @param c2     third cloud platform
+         * @return CompletableFuture -> EncryptedNumber
+         */
+        public CompletableFuture<EncryptedNumber> bitAndAsync(EncryptedNumber cipher, EncryptedNumber other, C2Channel c2) {
+            return multiplyAsync(cipher, other, c2);
+        }
+
+        /**
+         * todo Public Function bitOr(EncryptedNumber, Integer, C2Channel): secure bit or protocol
          *
          * @param cipher cipher 1
          * @param other  cipher 2
          * @param c2     third cloud platform
          * @return EncryptedNumber
          */
-        public EncryptedNumber bitOr(@NotNull EncryptedNumber cipher, EncryptedNumber other, CloudPlatformThird c2) {
-            return cipher.add(other).subtract(bitAnd(cipher, other, c2));
+        public EncryptedNumber bitOr(@NotNull EncryptedNumber cipher, EncryptedNumber other, C2Channel c2) {
+            return await(bitOrAsync(cipher, other, c2));
         }
 
         /**
-         * todo Public Static Function bitNot(EncryptedNumber, Integer, CloudPlatformThird): secure bit not protocol
+         * todo Public Function bitOrAsync(EncryptedNumber, EncryptedNumber, C2Channel): asynchronous secure bit or protocol
+         *
+         * @param cipher cipher 1
+         * @param other  cipher 2
+         * @param c2     third cloud platform
+         * @return CompletableFuture -> EncryptedNumber
+         */
+        public CompletableFuture<EncryptedNumber> bitOrAsync(@NotNull EncryptedNumber cipher, EncryptedNumber other, C2Channel c2) {
+            return bitAndAsync(cipher, other, c2).thenApply(and -> cipher.add(other).subtract(and));
+        }
+
+        /**
+         * todo Public Static Function bitNot(EncryptedNumber, Integer, C2Channel): secure bit not protocol
          *
          * @param cipher cipher 1
          * @return EncryptedNumber
@@ -375,131 +747,404 @@ public class Protocol {
         }
 
         /**
-         * todo Public Static Function bitXor(EncryptedNumber, Integer, CloudPlatformThird): secure bit xor protocol
+         * todo Public Static Function bitXor(EncryptedNumber, Integer, C2Channel): secure bit xor protocol
          *
          * @param cipher cipher 1
          * @param other  cipher 2
          * @param c2     third cloud platform
          * @return EncryptedNumber
          */
-        public EncryptedNumber bitXor(@NotNull EncryptedNumber cipher, EncryptedNumber other, CloudPlatformThird c2) {
-            return cipher.add(other).subtract(multiply(cipher, other, c2).multiply(2));
+        public EncryptedNumber bitXor(@NotNull EncryptedNumber cipher, EncryptedNumber other, C2Channel c2) {
+            return await(bitXorAsync(cipher, other, c2));
         }
 
         /**
-         * todo Public Static Function equals(EncryptedNumber, Integer, CloudPlatformThird): secure equals protocol
+         * todo Public Function bitXorAsync(EncryptedNumber, EncryptedNumber, C2Channel): asynchronous secure bit xor protocol
          *
          * @param cipher cipher 1
          * @param other  cipher 2
          * @param c2     third cloud platform
-         * @return EncryptedNumber
+         * @return CompletableFuture -> EncryptedNumber
          */
-        public EncryptedNumber equals(EncryptedNumber cipher, EncryptedNumber other, CloudPlatformThird c2) {
-            BigInteger sigma = BigInteger.valueOf(new Random().nextDouble() > 5e-1 ? -1 : 1);
+        public CompletableFuture<EncryptedNumber> bitXorAsync(@NotNull EncryptedNumber cipher, EncryptedNumber other, C2Channel c2) {
+            return multiplyAsync(cipher, other, c2).thenApply(and -> cipher.add(other).subtract(and.multiply(2)));
+        }
 
-            BigInteger r1 = getRandomLtN();
-            BigInteger r2 = getRandomLtN();
+        /**
+         * todo Public Static Function equals(EncryptedNumber, Integer, C2Channel): secure equals protocol
+         * <p>
+         * [x == y] = [x - y >= 0] + [y - x >= 0] - 1, the two sign tests sharing one c2 round.
+         *
+         * @param cipher cipher 1
+         * @param other  cipher 2
+         * @param c2     third cloud platform
+         * @return EncryptedNumber
+         */
+        public EncryptedNumber equals(EncryptedNumber cipher, EncryptedNumber other, C2Channel c2) {
+            return await(equalsAsync(cipher, other, c2));
+        }
 
-            if (r2.compareTo(r1) > 0) {
-                BigInteger tmp = r2;
-                r2 = r1;
-                r1 = tmp;
-            }
+        /**
+         * todo Public Function equalsAsync(EncryptedNumber, EncryptedNumber, C2Channel): asynchronous secure equals protocol
+         *
+         * @param cipher cipher 1
+         * @param other  cipher 2
+         * @param c2     third cloud platform
+         * @return CompletableFuture -> EncryptedNumber
+         */
+        public CompletableFuture<EncryptedNumber> equalsAsync(EncryptedNumber cipher, EncryptedNumber other, C2Channel c2) {
+            EncryptedNumber difference = cipher.subtract(other);
 
-            EncryptedNumber r1s = this.publicKey.encrypt(r1.multiply(sigma));
-            EncryptedNumber r2o = this.publicKey.encrypt(r2.multiply(sigma));
+            return nonNegativeBatchAsync(List.of(difference, difference.multiply(-1)), c2)
+                    .thenApply(signs -> signs.get(0).add(signs.get(1)).subtract(1));
+        }
 
-            EncryptedNumber alpha = multiply(r1s,
-                    multiply(cipher.subtract(other), cipher.subtract(other), c2), c2).subtract(r2o);
+        /**
+         * todo Public Static Function notEquals(EncryptedNumber, Integer, C2Channel): secure not equals protocol
+         *
+         * @param cipher cipher 1
+         * @param other  cipher 2
+         * @param c2     third cloud platform
+         * @return EncryptedNumber
+         */
+        public EncryptedNumber notEquals(EncryptedNumber cipher, EncryptedNumber other, C2Channel c2) {
+            return await(notEqualsAsync(cipher, other, c2));
+        }
 
-            return sigma.equals(BigInteger.ONE) ? this.eOne.subtract(c2.equals(alpha)) : c2.equals(alpha);
+        /**
+         * todo Public Function notEqualsAsync(EncryptedNumber, EncryptedNumber, C2Channel): asynchronous secure not equals protocol
+         *
+         * @param cipher cipher 1
+         * @param other  cipher 2
+         * @param c2     third cloud platform
+         * @return CompletableFuture -> EncryptedNumber
+         */
+        public CompletableFuture<EncryptedNumber> notEqualsAsync(EncryptedNumber cipher, EncryptedNumber other, C2Channel c2) {
+            return equalsAsync(cipher, other, c2).thenApply(this.eOne::subtract);
         }
 
         /**
-         * todo Public Static Function notEquals(EncryptedNumber, Integer, CloudPlatformThird): secure not equals protocol
+         * todo Public Static Function greaterThan(EncryptedNumber, Integer, C2Channel): secure greater than protocol
          *
          * @param cipher cipher 1
          * @param other  cipher 2
          * @param c2     third cloud platform
          * @return EncryptedNumber
          */
-        public EncryptedNumber notEquals(EncryptedNumber cipher, EncryptedNumber other, CloudPlatformThird c2) {
-            return this.eOne.subtract(equals(cipher, other, c2));
+        public EncryptedNumber greaterThan(EncryptedNumber cipher, EncryptedNumber other, C2Channel c2) {
+            return await(greaterThanAsync(cipher, other, c2));
         }
 
         /**
-         * todo Public Static Function greaterThan(EncryptedNumber, Integer, CloudPlatformThird): secure greater than protocol
+         * todo Public Function greaterThanAsync(EncryptedNumber, EncryptedNumber, C2Channel): asynchronous secure greater than protocol
          *
          * @param cipher cipher 1
          * @param other  cipher 2
          * @param c2     third cloud platform
-         * @return EncryptedNumber
+         * @return CompletableFuture -> EncryptedNumber
          */
-        public EncryptedNumber greaterThan(EncryptedNumber cipher, EncryptedNumber other, CloudPlatformThird c2) {
-            return getThanParam(other, cipher, c2);
+        public CompletableFuture<EncryptedNumber> greaterThanAsync(EncryptedNumber cipher, EncryptedNumber other, C2Channel c2) {
+            return getThanParamAsync(other, cipher, c2);
         }
 
         /**
-         * todo Public Static Function greaterEquals(EncryptedNumber, Integer, CloudPlatformThird): secure greater equals protocol
+         * todo Public Static Function greaterEquals(EncryptedNumber, Integer, C2Channel): secure greater equals protocol
          *
          * @param cipher cipher 1
          * @param other  cipher 2
          * @param c2     third cloud platform
          * @return EncryptedNumber
          */
-        public EncryptedNumber greaterEquals(EncryptedNumber cipher, EncryptedNumber other, CloudPlatformThird c2) {
-            return bitOr(equals(cipher, other, c2), greaterThan(cipher, other, c2), c2);
+        public EncryptedNumber greaterEquals(EncryptedNumber cipher, EncryptedNumber other, C2Channel c2) {
+            return await(greaterEqualsAsync(cipher, other, c2));
         }
 
         /**
-         * todo Public Static Function lessThan(EncryptedNumber, Integer, CloudPlatformThird): secure less than protocol
+         * todo Public Function greaterEqualsAsync(EncryptedNumber, EncryptedNumber, C2Channel): asynchronous secure greater equals protocol
          *
          * @param cipher cipher 1
          * @param other  cipher 2
          * @param c2     third cloud platform
-         * @return EncryptedNumber
+         * @return CompletableFuture -> EncryptedNumber
          */
-        public EncryptedNumber lessThan(EncryptedNumber cipher, EncryptedNumber other, CloudPlatformThird c2) {
-            return getThanParam(cipher, other, c2);
+        public CompletableFuture<EncryptedNumber> greaterEqualsAsync(EncryptedNumber cipher, EncryptedNumber other, C2Channel c2) {
+            return nonNegativeAsync(cipher.subtract(other), c2);
         }
 
         /**
+         * todo Public Static Function lessThan(EncryptedNumber, Integer, C2Channel): secure less than protocol
+         *
          * @param cipher cipher 1
          * @param other  cipher 2
          * @param c2     third cloud platform
          * @return EncryptedNumber
-         * @see CloudPlatform#greaterThan(EncryptedNumber, EncryptedNumber, CloudPlatformThird)
-         * @see CloudPlatform#lessThan(EncryptedNumber, EncryptedNumber, CloudPlatformThird)
          */
-        private EncryptedNumber getThanParam(EncryptedNumber cipher, EncryptedNumber other, CloudPlatformThird c2) {
-            BigInteger sigma = BigInteger.valueOf(new Random().nextDouble() > 5e-1 ? -1 : 1);
-
-            BigInteger r1 = getRandomLtN();
-            BigInteger r2 = getRandomLtN();
+        public EncryptedNumber lessThan(EncryptedNumber cipher, EncryptedNumber other, C2Channel c2) {
+            return await(lessThanAsync(cipher, other, c2));
+        }
 
-            if (r2.compareTo(r1) > 0) {
-                BigInteger tmp = r2;
-                r2 = r1;
-                r1 = tmp;
-            }
+        /**
+         * todo Public Function lessThanAsync(EncryptedNumber, EncryptedNumber, C2Channel): asynchronous secure less than protocol
+         *
+         * @param cipher cipher 1
+         * @param other  cipher 2
+         * @param c2     third cloud platform
+         * @return CompletableFuture -> EncryptedNumber
+         */
+        public CompletableFuture<EncryptedNumber> lessThanAsync(EncryptedNumber cipher, EncryptedNumber other, C2Channel c2) {
+            return getThanParamAsync(cipher, other, c2);
+        }
 
-            EncryptedNumber r1s = this.publicKey.encrypt(r1.multiply(sigma));
-            EncryptedNumber r2o = this.publicKey.encrypt(r2.multiply(sigma));
-            EncryptedNumber alpha = multiply(r1s, cipher.subtract(other), c2).add(r2o);
+        /**
+         * todo Private Function getThanParamAsync(EncryptedNumber, EncryptedNumber, C2Channel): [cipher < other] in one c2 round
+         * <p>
+         * 1 - [cipher - other >= 0], the sign test of the batch protocols.
+         *
+         * @param cipher cipher 1
+         * @param other  cipher 2
+         * @param c2     third cloud platform
+         * @return CompletableFuture -> EncryptedNumber
+         * @see CloudPlatform#greaterThan(EncryptedNumber, EncryptedNumber, C2Channel)
+         * @see CloudPlatform#lessThan(EncryptedNumber, EncryptedNumber, C2Channel)
+         */
+        private CompletableFuture<EncryptedNumber> getThanParamAsync(EncryptedNumber cipher, EncryptedNumber other, C2Channel c2) {
+            return nonNegativeAsync(cipher.subtract(other), c2).thenApply(this.eOne::subtract);
+        }
 
-            return sigma.equals(BigInteger.ONE) ? this.eOne.subtract(c2.equals(alpha)) : c2.equals(alpha);
+        /**
+         * todo Public Static Function lessEquals(EncryptedNumber, Integer, C2Channel): secure less equals protocol
+         *
+         * @param cipher cipher 1
+         * @param other  cipher 2
+         * @param c2     third cloud platform
+         * @return EncryptedNumber
+         */
+        public EncryptedNumber lessEquals(EncryptedNumber cipher, EncryptedNumber other, C2Channel c2) {
+            return await(lessEqualsAsync(cipher, other, c2));
         }
 
         /**
-         * todo Public Static Function lessEquals(EncryptedNumber, Integer, CloudPlatformThird): secure less equals protocol
+         * todo Public Function lessEqualsAsync(EncryptedNumber, EncryptedNumber, C2Channel): asynchronous secure less equals protocol
          *
          * @param cipher cipher 1
          * @param other  cipher 2
          * @param c2     third cloud platform
+         * @return CompletableFuture -> EncryptedNumber
+         */
+        public CompletableFuture<EncryptedNumber> lessEqualsAsync(EncryptedNumber cipher, EncryptedNumber other, C2Channel c2) {
+            return nonNegativeAsync(other.subtract(cipher), c2);
+        }
+
+        /**
+         * todo Private Function nonNegativeAsync(EncryptedNumber, C2Channel): [difference >= 0] in one c2 round
+         *
+         * @param difference cipher 1 - cipher 2
+         * @param c2         third cloud platform
+         * @return CompletableFuture -> EncryptedNumber
+         * @see CloudPlatform#greaterEquals(EncryptedNumber, EncryptedNumber, C2Channel)
+         * @see CloudPlatform#lessEquals(EncryptedNumber, EncryptedNumber, C2Channel)
+         */
+        private CompletableFuture<EncryptedNumber> nonNegativeAsync(@NotNull EncryptedNumber difference, @NotNull C2Channel c2) {
+            boolean flip = RandomnessProvider.getDefault().nextBoolean();
+
+            return c2.equalsAsync(maskNonNegative(difference, flip)).thenApply(beta -> flip ? this.eOne.subtract(beta) : beta);
+        }
+
+        /**
+         * todo Private Function nonNegativeBatchAsync(List, C2Channel): [difference >= 0] for a batch, one c2 round
+         *
+         * @param differences the differences
+         * @param c2          third cloud platform
+         * @return CompletableFuture -> List -> EncryptedNumber, in the order of differences
+         */
+        private @NotNull CompletableFuture<List<EncryptedNumber>> nonNegativeBatchAsync(@NotNull List<EncryptedNumber> differences,
+                                                                                        @NotNull C2Channel c2) {
+            int size = differences.size();
+            BigInteger flips = RandomnessProvider.getDefault().nextBits(size);
+
+            EncryptedNumber[] alphas = new EncryptedNumber[size];
+            IntStream.range(0, size).parallel().forEach(i -> alphas[i] = maskNonNegative(differences.get(i), flips.testBit(i)));
+
+            return c2.equalsBatchAsync(Arrays.asList(alphas)).thenApply(betas -> {
+                EncryptedNumber[] results = new EncryptedNumber[size];
+                IntStream.range(0, size).parallel().forEach(i -> results[i] = flips.testBit(i) ? this.eOne.subtract(betas.get(i)) : betas.get(i));
+
+                return new ArrayList<>(Arrays.asList(results));
+            });
+        }
+
+        /**
+         * todo Private Function maskNonNegative(EncryptedNumber, boolean): the blinded sign test of a difference
+         * <p>
+         * alpha = sigma * (r1 * difference + r2) with r1 > r2 > 0 and sigma = -1 for flip. r2 is added at the exponent
+         * of the difference, so it stays below one step of r1 * difference and alpha is never 0: alpha >= 0 iff
+         * difference >= 0 xor flip, whatever the scale of the operands. r1 * sigma is known here, so no secure
+         * multiplication is needed.
+         *
+         * @param difference cipher 1 - cipher 2
+         * @param flip       negate the test or not
          * @return EncryptedNumber
          */
-        public EncryptedNumber lessEquals(EncryptedNumber cipher, EncryptedNumber other, CloudPlatformThird c2) {
-            return bitOr(equals(cipher, other, c2), lessThan(cipher, other, c2), c2);
+        private EncryptedNumber maskNonNegative(@NotNull EncryptedNumber difference, boolean flip) {
+            BigInteger sigma = BigInteger.valueOf(flip ? -1 : 1);
+
+            MaskPool.Mask mask = takeMask();
+
+            EncryptedNumber scaled = difference.multiply(mask.r1.multiply(sigma));
+            // E(r2) read at the exponent of scaled is r2 steps of scaled
+            EncryptedNumber shift = new EncryptedNumber(this.publicKey, mask.e2.ciphertext(false), scaled.getExponent(),
+                    mask.e2.isObfuscated()).multiply(sigma);
+
+            return blind(scaled.add(shift), mask.e2);
+        }
+
+        /**
+         * todo Public Function equalsBatch(List, List, C2Channel): secure equals protocol for pairs
+         * <p>
+         * Both sign tests of every pair go to c2 in one round.
+         *
+         * @param ciphers cipher 1 of the pairs
+         * @param others  cipher 2 of the pairs
+         * @param c2      third cloud platform
+         * @return List -> EncryptedNumber, in the order of the pairs
+         * @throws ValueErrorException if the lists differ in length
+         */
+        public List<EncryptedNumber> equalsBatch(@NotNull List<EncryptedNumber> ciphers, @NotNull List<EncryptedNumber> others,
+                                                 @NotNull C2Channel c2) throws ValueErrorException {
+            int size = checkBatch(ciphers, others);
+            if (size == 0) {
+                return new ArrayList<>();
+            }
+
+            EncryptedNumber[] differences = new EncryptedNumber[2 * size];
+            IntStream.range(0, size).parallel().forEach(i -> {
+                differences[2 * i] = ciphers.get(i).subtract(others.get(i));
+                differences[2 * i + 1] = differences[2 * i].multiply(-1);
+            });
+            List<EncryptedNumber> signs = await(nonNegativeBatchAsync(Arrays.asList(differences), c2));
+
+            return IntStream.range(0, size).parallel()
+                    .mapToObj(i -> signs.get(2 * i).add(signs.get(2 * i + 1)).subtract(1))
+                    .collect(Collectors.toList());
+        }
+
+        /**
+         * todo Public Function notEqualsBatch(List, List, C2Channel): secure not equals protocol for pairs
+         *
+         * @param ciphers cipher 1 of the pairs
+         * @param others  cipher 2 of the pairs
+         * @param c2      third cloud platform
+         * @return List -> EncryptedNumber, in the order of the pairs
+         * @throws ValueErrorException if the lists differ in length
+         */
+        public List<EncryptedNumber> notEqualsBatch(@NotNull List<EncryptedNumber> ciphers, @NotNull List<EncryptedNumber> others,
+                                                    @NotNull C2Channel c2) throws ValueErrorException {
+            List<EncryptedNumber> equals = equalsBatch(ciphers, others, c2);
+
+            return equals.parallelStream().map(this.eOne::subtract).collect(Collectors.toList());
+        }
+
+        /**
+         * todo Public Function greaterThanBatch(List, List, C2Channel): secure greater than protocol for pairs
+         *
+         * @param ciphers cipher 1 of the pairs
+         * @param others  cipher 2 of the pairs
+         * @param c2      third cloud platform
+         * @return List -> EncryptedNumber, in the order of the pairs
+         * @throws ValueErrorException if the lists differ in length
+         */
+        public List<EncryptedNumber> greaterThanBatch(@NotNull List<EncryptedNumber> ciphers, @NotNull List<EncryptedNumber> others,
+                                                      @NotNull C2Channel c2) throws ValueErrorException {
+            return getThanParamBatch(others, ciphers, c2);
+        }
+
+        /**
+         * todo Public Function lessThanBatch(List, List, C2Channel): secure less than protocol for pairs
+         *
+         * @param ciphers cipher 1 of the pairs
+         * @param others  cipher 2 of the pairs
+         * @param c2      third cloud platform
+         * @return List -> EncryptedNumber, in the order of the pairs
+         * @throws ValueErrorException if the lists differ in length
+         */
+        public List<EncryptedNumber> lessThanBatch(@NotNull List<EncryptedNumber> ciphers, @NotNull List<EncryptedNumber> others,
+                                                   @NotNull C2Channel c2) throws ValueErrorException {
+            return getThanParamBatch(ciphers, others, c2);
+        }
+
+        /**
+         * todo Private Function getThanParamBatch(List, List, C2Channel): [cipher < other] for pairs, one c2 round
+         *
+         * @param ciphers cipher 1 of the pairs
+         * @param others  cipher 2 of the pairs
+         * @param c2      third cloud platform
+         * @return List -> EncryptedNumber, in the order of the pairs
+         * @throws ValueErrorException if the lists differ in length
+         */
+        private List<EncryptedNumber> getThanParamBatch(List<EncryptedNumber> ciphers, List<EncryptedNumber> others,
+                                                        C2Channel c2) throws ValueErrorException {
+            int size = checkBatch(ciphers, others);
+            if (size == 0) {
+                return new ArrayList<>();
+            }
+
+            EncryptedNumber[] differences = new EncryptedNumber[size];
+            IntStream.range(0, size).parallel().forEach(i -> differences[i] = ciphers.get(i).subtract(others.get(i)));
+
+            return await(nonNegativeBatchAsync(Arrays.asList(differences), c2)).parallelStream()
+                    .map(this.eOne::subtract).collect(Collectors.toList());
+        }
+
+        /**
+         * todo Private Static Function checkBatch(List, List): check the two sides of a batch
+         *
+         * @param ciphers cipher 1 of the pairs
+         * @param others  cipher 2 of the pairs
+         * @return int number of pairs
+         * @throws ValueErrorException if the lists differ in length
+         */
+        private static int checkBatch(@NotNull List<EncryptedNumber> ciphers, @NotNull List<EncryptedNumber> others)
+                throws ValueErrorException {
+            if (ciphers.size() != others.size()) {
+                throw new ValueErrorException(String.format("got %s and %s numbers in a batch", ciphers.size(), others.size()));
+            }
+
+            return ciphers.size();
+        }
+
+        /**
+         * todo Private Function blind(EncryptedNumber): re-randomize a ciphertext before it is sent
+         * <p>
+         * Everything sent to the third cloud platform goes through it, so lazily encrypted intermediates are
+         * obfuscated once per message instead of once per encryption. The obfuscated flag of h is not trusted: it
+         * may come from an operand the third cloud platform has seen, which would let it strip the mask off h.
+         *
+         * @param h ciphertext to be sent
+         * @return EncryptedNumber h
+         */
+        private @NotNull EncryptedNumber blind(@NotNull EncryptedNumber h) {
+            h.obfuscate();
+
+            return h;
+        }
+
+        /**
+         * todo Private Function blind(EncryptedNumber, EncryptedNumber): send h as it is if its mask was precomputed
+         * <p>
+         * A mask encryption obfuscated by the MaskPool carries a fresh r ** n that has never been sent, so h is as
+         * random as a re-randomized h; a mask drawn inline is not obfuscated and h is re-randomized.
+         *
+         * @param h    ciphertext to be sent
+         * @param mask the mask encryption added to h
+         * @return EncryptedNumber h
+         */
+        private @NotNull EncryptedNumber blind(@NotNull EncryptedNumber h, @NotNull EncryptedNumber mask) {
+            if (!mask.isObfuscated()) {
+                return blind(h);
+            }
+
+            boolean beSecure = false;
+            return new EncryptedNumber(this.publicKey, h.ciphertext(beSecure), h.getExponent(), true);
         }
 
         /**
@@ -508,17 +1153,37 @@ public class Protocol {
          * @return BigInteger
          */
         public BigInteger getRandomLtN() {
-            Random rand = new Random();
-            BigInteger result;
-            do {
-                result = new BigInteger(0b0001_0100, rand).abs();
-            } while (result.equals(BigInteger.ZERO));
+            return getRandomsLtN(1)[0];
+        }
+
+        /**
+         * todo Private Function takeMask(): a mask tuple, from the pool when enabled
+         *
+         * @return MaskPool.Mask
+         */
+        private @NotNull MaskPool.Mask takeMask() {
+            MaskPool pool = this.maskPool;
 
-            return result;
+            return pool == null ? MaskPool.Mask.draw(this.publicKey, false) : pool.take();
+        }
+
+        /**
+         * todo Private Function getRandomsLtN(int): get count masks like getRandomLtN, drawn in one batch
+         *
+         * @param count number of masks
+         * @return BigInteger[]
+         */
+        private @NotNull BigInteger[] getRandomsLtN(int count) {
+            return RandomnessProvider.getDefault().nextMasks(MASK_BITS, count);
         }
     }
 
-    public static class CloudPlatformThird {
+    /**
+     * todo Public Static Class CloudPlatformThird: Cloud Platform Third Class
+     * <p>
+     * As a C2Channel it serves the first cloud platform in-process; C2Server serves it to other processes.
+     */
+    public static class CloudPlatformThird implements C2Channel {
 
         /**
          * publicKey: public key
@@ -547,24 +1212,61 @@ public class Protocol {
          * @param h2 param 2
          * @return EncryptedNumber
          */
+        @Override
         public EncryptedNumber multiply(EncryptedNumber h1, EncryptedNumber h2) {
             Object o1 = this.privateKey.decrypt(h1);
             Object o2 = this.privateKey.decrypt(h2);
 
+            return this.privateKey.encrypt(product(o1, o2));
+        }
+
+        /**
+         * todo Public Function multiplyBatch(List, List): secure multiply protocol third for pairs
+         * <p>
+         * Both lists are decrypted in parallel, then the products are encrypted in parallel.
+         *
+         * @param h1 param 1 of the pairs
+         * @param h2 param 2 of the pairs
+         * @return List -> EncryptedNumber, in the order of the pairs
+         * @throws ValueErrorException if the lists differ in length
+         */
+        @Override
+        public List<EncryptedNumber> multiplyBatch(@NotNull List<EncryptedNumber> h1, @NotNull List<EncryptedNumber> h2)
+                throws ValueErrorException {
+            if (h1.size() != h2.size()) {
+                throw new ValueErrorException(String.format("got %s and %s numbers to multiply", h1.size(), h2.size()));
+            }
+
+            BatchResult<Object> o1 = this.privateKey.decryptBatch(h1);
+            BatchResult<Object> o2 = this.privateKey.decryptBatch(h2);
+
+            return IntStream.range(0, h1.size()).parallel()
+                    .mapToObj(i -> this.privateKey.encrypt(product(o1.get(i), o2.get(i))))
+                    .collect(Collectors.toList());
+        }
+
+        /**
+         * todo Private Function product(Object, Object): product of two decrypted numbers
+         *
+         * @param o1 BigInteger or BigDecimal
+         * @param o2 BigInteger or BigDecimal
+         * @return Object -> BigInteger or BigDecimal
+         */
+        private @NotNull Object product(Object o1, Object o2) {
             String o1c = o1 instanceof BigInteger ? "o1i" : "o1d";
             String o2c = o2 instanceof BigInteger ? "o2i" : "o2d";
             switch (o1c + o2c) {
                 case "o1io2i": {
-                    return this.publicKey.encrypt(((BigInteger) o1).multiply((BigInteger) o2));
+                    return ((BigInteger) o1).multiply((BigInteger) o2);
                 }
                 case "o1io2d": {
-                    return this.publicKey.encrypt(new BigDecimal((BigInteger) o1).multiply((BigDecimal) o2));
+                    return new BigDecimal((BigInteger) o1).multiply((BigDecimal) o2);
                 }
                 case "o1do2i": {
-                    return this.publicKey.encrypt(((BigDecimal) o1).multiply(new BigDecimal((BigInteger) o2)));
+                    return ((BigDecimal) o1).multiply(new BigDecimal((BigInteger) o2));
                 }
                 case "o1do2d": {
-                    return this.publicKey.encrypt(((BigDecimal) o1).multiply((BigDecimal) o2));
+                    return ((BigDecimal) o1).multiply((BigDecimal) o2);
                 }
                 default:
                     throw new TypeErrorException("type of encrypted number is error in multiply process");
@@ -578,6 +1280,7 @@ public class Protocol {
          * @param h2 param 2
          * @return EncryptedNumber
          */
+        @Override
         public EncryptedNumber divide(EncryptedNumber h1, EncryptedNumber h2) {
             Object o1 = this.privateKey.decrypt(h1);
             Object o2 = this.privateKey.decrypt(h2);
@@ -587,16 +1290,16 @@ public class Protocol {
             MathContext mc = new MathContext(10, RoundingMode.HALF_UP);
             switch (o1c + o2c) {
                 case "o1io2i": {
-                    return this.publicKey.encrypt(((BigInteger) o1).divide((BigInteger) o2));
+                    return this.privateKey.encrypt(((BigInteger) o1).divide((BigInteger) o2));
                 }
                 case "o1io2d": {
-                    return this.publicKey.encrypt(new BigDecimal((BigInteger) o1).divide((BigDecimal) o2, mc));
+                    return this.privateKey.encrypt(new BigDecimal((BigInteger) o1).divide((BigDecimal) o2, mc));
                 }
                 case "o1do2i": {
-                    return this.publicKey.encrypt(((BigDecimal) o1).divide(new BigDecimal((BigInteger) o2), mc));
+                    return this.privateKey.encrypt(((BigDecimal) o1).divide(new BigDecimal((BigInteger) o2), mc));
                 }
                 case "o1do2d": {
-                    return this.publicKey.encrypt(((BigDecimal) o1).divide((BigDecimal) o2, mc));
+                    return this.privateKey.encrypt(((BigDecimal) o1).divide((BigDecimal) o2, mc));
                 }
                 default:
                     throw new TypeErrorException("type of encrypted number is error in divide process");
@@ -612,6 +1315,7 @@ public class Protocol {
          * @param mode optimum mode 'max' or 'min'
          * @return ArrayList
          */
+        @Override
         public ArrayList<EncryptedNumber> optimum(EncryptedNumber h1, EncryptedNumber h2, EncryptedNumber h3, String mode) {
             Object o = this.privateKey.decrypt(h1);
             boolean v;
@@ -625,7 +1329,7 @@ public class Protocol {
 
             int alpha = v ? 1 : 0;
 
-            return new ArrayList<>(Arrays.asList(this.publicKey.encrypt(alpha), alpha == 1 ? h3 : h2));
+            return new ArrayList<>(Arrays.asList(this.privateKey.encrypt(alpha), alpha == 1 ? h3 : h2));
         }
 
         /**
@@ -634,13 +1338,14 @@ public class Protocol {
          * @param h param
          * @return EncryptedNumber
          */
+        @Override
         public EncryptedNumber parity(EncryptedNumber h) {
             Object o = this.privateKey.decrypt(h);
 
             if (o instanceof BigInteger) {
-                return ((BigInteger) o).mod(BigInteger.TWO).equals(BigInteger.ZERO) ? this.publicKey.encrypt(0) : this.publicKey.encrypt(1);
+                return ((BigInteger) o).mod(BigInteger.TWO).equals(BigInteger.ZERO) ? this.privateKey.encrypt(0) : this.privateKey.encrypt(1);
             } else if (o instanceof BigDecimal) {
-                return ((BigDecimal) o).toBigInteger().mod(BigInteger.TWO).equals(BigInteger.ZERO) ? this.publicKey.encrypt(0) : this.publicKey.encrypt(1);
+                return ((BigDecimal) o).toBigInteger().mod(BigInteger.TWO).equals(BigInteger.ZERO) ? this.privateKey.encrypt(0) : this.privateKey.encrypt(1);
             } else {
                 throw new TypeErrorException("type of encrypted number is error in parity process");
             }
@@ -652,19 +1357,69 @@ public class Protocol {
          * @param h param
          * @return EncryptedNumber
          */
+        @Override
         public EncryptedNumber equals(EncryptedNumber h) {
-            Object o = this.privateKey.decrypt(h);
+            return sign(this.privateKey.decrypt(h));
+        }
+
+        /**
+         * todo Public Function equalsBatch(List): secure equals protocol third for a batch, decrypted in parallel
+         *
+         * @param h params
+         * @return List -> EncryptedNumber, in the order of h
+         */
+        @Override
+        public List<EncryptedNumber> equalsBatch(@NotNull List<EncryptedNumber> h) {
+            BatchResult<Object> o = this.privateKey.decryptBatch(h);
 
+            return IntStream.range(0, h.size()).parallel().mapToObj(i -> sign(o.get(i))).collect(Collectors.toList());
+        }
+
+        /**
+         * todo Private Function sign(Object): E(0) for a negative decrypted number, E(1) otherwise
+         *
+         * @param o BigInteger or BigDecimal
+         * @return EncryptedNumber
+         */
+        private EncryptedNumber sign(Object o) {
             if (o instanceof BigInteger) {
-                return ((BigInteger) o).compareTo(BigInteger.ZERO) < 0 ? this.publicKey.encrypt(0) : this.publicKey.encrypt(1);
+                return ((BigInteger) o).compareTo(BigInteger.ZERO) < 0 ? this.privateKey.encrypt(0) : this.privateKey.encrypt(1);
             } else if (o instanceof BigDecimal) {
-                return ((BigDecimal) o).compareTo(BigDecimal.ZERO) < 0 ? this.publicKey.encrypt(0) : this.publicKey.encrypt(1);
+                return ((BigDecimal) o).compareTo(BigDecimal.ZERO) < 0 ? this.privateKey.encrypt(0) : this.privateKey.encrypt(1);
             } else {
                 throw new TypeErrorException("type of encrypted number is error in parity process");
             }
         }
     }
 
+    /**
+     * todo Public Static Class ValueErrorException: new ValueErrorException(str)
+     */
+    public static class ValueErrorException extends Error {
+        /**
+         * ValueErrorException
+         *
+         * @param s exception description
+         */
+        ValueErrorException(String s) {
+            super(s);
+        }
+    }
+
+    /**
+     * todo Public Static Class ChannelErrorException: new ChannelErrorException(str)
+     */
+    public static class ChannelErrorException extends Error {
+        /**
+         * ChannelErrorException
+         *
+         * @param s exception description
+         */
+        ChannelErrorException(String s) {
+            super(s);
+        }
+    }
+
     /**
      * todo Public Static Class TypeErrorException: new TypeErrorException(str)
      */
@@ -0,0 +1,576 @@
+package cn.shine.smpcp;
+
+/*
+ * @Project SMPCP-Maven
+ * @Package cn.shine.smpcp
+ * @Class   TcpC2Channel
+ * @Version 1.0.0
+ * @Author  Zhan Shi
+ * @Time    2026/10/17 21:00
+ * @License MIT
+ */
+
+import cn.shine.phe.Paillier.EncryptedNumber;
+import cn.shine.phe.Paillier.PaillierPublicKey;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ByteChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * todo Public Class TcpC2Channel: C2Channel to a C2Server over a TCP socket
+ * <p>
+ * A frame is [int length][int id][byte code][short text length][text][int count][short width] followed by count
+ * numbers [int exponent][byte obfuscated][width bytes of ciphertext], all big-endian. The code of a request is the
+ * opcode of its Operation, the code of a response is OK or ERROR; the text is the optimum mode of a request, the
+ * error message of a failed response and the hex n of a PUBLIC_KEY response. Every ciphertext of a frame is padded
+ * to the width of the widest one, so a frame carries no per-number length.
+ * <p>
+ * Requests are pipelined: a request is written as soon as it is made, and a reader thread matches the responses,
+ * which may come in any order, to their requests by id. Any number of requests of any number of threads can be in
+ * flight on one connection. The futures are completed on the executor, so that the protocol steps chained to them
+ * do not hold up the reader.
+ *
+ * @author Zhan Shi
+ */
+public class TcpC2Channel implements C2Channel {
+    /**
+     * OK:        response code of a served request
+     * ERROR:     response code of a failed request
+     * MAX_FRAME: largest accepted frame length, a guard against corrupted streams
+     */
+    static final byte OK = 0, ERROR = 1;
+    static final int MAX_FRAME = 1 << 30;
+    /**
+     * channel:    the socket
+     * publicKey:  the public key of the ciphertexts
+     * executor:   completes the futures
+     * statistics: per operation counters
+     */
+    private final SocketChannel channel;
+    private final PaillierPublicKey publicKey;
+    private final Executor executor;
+    private final Statistics statistics = new Statistics();
+    /**
+     * nextId:    id of the next request
+     * pending:   the requests in flight by id
+     * writeLock: keeps the frames of concurrent writers apart
+     * failure:   the error that broke the connection, null while it works
+     */
+    private final AtomicInteger nextId = new AtomicInteger();
+    private final Map<Integer, Pending> pending = new ConcurrentHashMap<>();
+    private final Object writeLock = new Object();
+    private volatile Throwable failure;
+
+    /**
+     * @param address the address of the C2Server
+     * @throws IOException if the connection fails
+     * @see TcpC2Channel#TcpC2Channel(SocketAddress, PaillierPublicKey, Executor)
+     */
+    public TcpC2Channel(SocketAddress address) throws IOException {
+        this(address, null, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param address   the address of the C2Server
+     * @param publicKey the public key of the ciphertexts, the one of the server is requested when null
+     * @throws IOException if the connection fails
+     * @see TcpC2Channel#TcpC2Channel(SocketAddress, PaillierPublicKey, Executor)
+     */
+    public TcpC2Channel(SocketAddress address, PaillierPublicKey publicKey) throws IOException {
+        this(address, publicKey, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * todo Public Function TcpC2Channel(SocketAddress, PaillierPublicKey, Executor): Class TcpC2Channel init
+     *
+     * @param address   the address of the C2Server
+     * @param publicKey the public key of the ciphertexts, the one of the server is requested when null
+     * @param executor  completes the futures of the responses
+     * @throws IOException                  if the connection fails
+     * @throws Protocol.ChannelErrorException if the public key cannot be requested, the connection is closed
+     */
+    public TcpC2Channel(SocketAddress address, PaillierPublicKey publicKey, @NotNull Executor executor)
+            throws IOException {
+        this.channel = SocketChannel.open(address);
+        this.executor = executor;
+        try {
+            this.channel.socket().setTcpNoDelay(true);
+
+            Thread reader = new Thread(this::read, "c2-channel-" + address);
+            reader.setDaemon(true);
+            reader.start();
+
+            this.publicKey = publicKey != null ? publicKey : new PaillierPublicKey(new BigInteger(
+                    Protocol.await(send(Operation.PUBLIC_KEY, null, new ArrayList<>())).text, 16));
+        } catch (IOException | RuntimeException | Error e) {
+            // the reader stops when the socket is closed
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * todo Public Function getPublicKey(): the public key of the ciphertexts
+     *
+     * @return PaillierPublicKey
+     */
+    public PaillierPublicKey getPublicKey() {
+        return this.publicKey;
+    }
+
+    /**
+     * todo Public Function getStatistics(): per operation counters, the latency is the round trip time
+     *
+     * @return Statistics
+     */
+    public Statistics getStatistics() {
+        return this.statistics;
+    }
+
+    /**
+     * todo Public Function getPending(): requests in flight
+     *
+     * @return int
+     */
+    public int getPending() {
+        return this.pending.size();
+    }
+
+    @Override
+    public EncryptedNumber multiply(EncryptedNumber h1, EncryptedNumber h2) {
+        return Protocol.await(multiplyAsync(h1, h2));
+    }
+
+    @Override
+    public List<EncryptedNumber> multiplyBatch(@NotNull List<EncryptedNumber> h1, @NotNull List<EncryptedNumber> h2) {
+        return Protocol.await(multiplyBatchAsync(h1, h2));
+    }
+
+    @Override
+    public EncryptedNumber divide(EncryptedNumber h1, EncryptedNumber h2) {
+        return Protocol.await(divideAsync(h1, h2));
+    }
+
+    @Override
+    public List<EncryptedNumber> optimum(EncryptedNumber h1, EncryptedNumber h2, EncryptedNumber h3, String mode) {
+        return Protocol.await(optimumAsync(h1, h2, h3, mode));
+    }
+
+    @Override
+    public EncryptedNumber parity(EncryptedNumber h) {
+        return Protocol.await(parityAsync(h));
+    }
+
+    @Override
+    public EncryptedNumber equals(EncryptedNumber h) {
+        return Protocol.await(equalsAsync(h));
+    }
+
+    @Override
+    public List<EncryptedNumber> equalsBatch(@NotNull List<EncryptedNumber> h) {
+        return Protocol.await(equalsBatchAsync(h));
+    }
+
+    @Override
+    public CompletableFuture<EncryptedNumber> multiplyAsync(EncryptedNumber h1, EncryptedNumber h2) {
+        return request(Operation.MULTIPLY, null, List.of(h1, h2)).thenApply(result -> result.get(0));
+    }
+
+    @Override
+    public CompletableFuture<List<EncryptedNumber>> multiplyBatchAsync(@NotNull List<EncryptedNumber> h1,
+                                                                       @NotNull List<EncryptedNumber> h2)
+            throws Protocol.ValueErrorException {
+        if (h1.size() != h2.size()) {
+            throw new Protocol.ValueErrorException(String.format("got %s and %s numbers to multiply", h1.size(), h2.size()));
+        }
+
+        List<EncryptedNumber> arguments = new ArrayList<>(h1);
+        arguments.addAll(h2);
+
+        return request(Operation.MULTIPLY_BATCH, null, arguments);
+    }
+
+    @Override
+    public CompletableFuture<EncryptedNumber> divideAsync(EncryptedNumber h1, EncryptedNumber h2) {
+        return request(Operation.DIVIDE, null, List.of(h1, h2)).thenApply(result -> result.get(0));
+    }
+
+    @Override
+    public CompletableFuture<List<EncryptedNumber>> optimumAsync(EncryptedNumber h1, EncryptedNumber h2,
+                                                                 EncryptedNumber h3, String mode) {
+        return request(Operation.OPTIMUM, mode, List.of(h1, h2, h3));
+    }
+
+    @Override
+    public CompletableFuture<EncryptedNumber> parityAsync(EncryptedNumber h) {
+        return request(Operation.PARITY, null, List.of(h)).thenApply(result -> result.get(0));
+    }
+
+    @Override
+    public CompletableFuture<EncryptedNumber> equalsAsync(EncryptedNumber h) {
+        return request(Operation.EQUALS, null, List.of(h)).thenApply(result -> result.get(0));
+    }
+
+    @Override
+    public CompletableFuture<List<EncryptedNumber>> equalsBatchAsync(@NotNull List<EncryptedNumber> h) {
+        return request(Operation.EQUALS_BATCH, null, h);
+    }
+
+    /**
+     * todo Public Function close(): close the socket, the requests in flight fail
+     */
+    @Override
+    public void close() {
+        try {
+            this.channel.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * todo Private Function request(Operation, String, List): send a request, decode the ciphertexts of its response
+     *
+     * @param operation the operation
+     * @param text      the optimum mode, null otherwise
+     * @param arguments the ciphertexts
+     * @return CompletableFuture -> List -> EncryptedNumber
+     */
+    private CompletableFuture<List<EncryptedNumber>> request(Operation operation, String text, List<EncryptedNumber> arguments) {
+        return send(operation, text, arguments).thenApply(response -> response.numbers(this.publicKey));
+    }
+
+    /**
+     * todo Private Function send(Operation, String, List): write a request without waiting for its response
+     *
+     * @param operation the operation
+     * @param text      the optimum mode, null otherwise
+     * @param arguments the ciphertexts
+     * @return CompletableFuture -> Frame the response; it fails with ChannelErrorException if the transport fails or
+     * the server rejects the request
+     */
+    private @NotNull CompletableFuture<Frame> send(Operation operation, String text, List<EncryptedNumber> arguments) {
+        int id = this.nextId.getAndIncrement();
+        Pending request = new Pending(operation);
+        try {
+            ByteBuffer frame = Frame.of(id, (byte) operation.ordinal(), text, arguments).encode();
+            request.sent = frame.remaining();
+            this.pending.put(id, request);
+            // a failure recorded before the put has already drained the pending requests
+            if (this.failure != null) {
+                throw new IOException("connection is broken", this.failure);
+            }
+            synchronized (this.writeLock) {
+                Frame.writeFully(this.channel, frame);
+            }
+        } catch (IOException e) {
+            this.pending.remove(id);
+            request.future.completeExceptionally(failed(operation, e));
+        }
+
+        return request.future;
+    }
+
+    /**
+     * todo Private Function read(): the reader loop, matches the responses to the pending requests
+     */
+    private void read() {
+        try {
+            while (true) {
+                Frame response = Frame.read(this.channel);
+                Pending request = this.pending.remove(response.id);
+                if (request == null) {
+                    throw new IOException(String.format("got response %s to no request", response.id));
+                }
+                this.statistics.record(request.operation, request.sent, response.length, System.nanoTime() - request.start);
+
+                if (response.code != OK) {
+                    request.future.completeExceptionally(new Protocol.ChannelErrorException(
+                            String.format("%s request rejected: %s", request.operation, response.text)));
+                } else {
+                    request.future.completeAsync(() -> response, this.executor);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            this.failure = e;
+            close();
+            for (Integer id : this.pending.keySet()) {
+                Pending request = this.pending.remove(id);
+                if (request != null) {
+                    request.future.completeExceptionally(failed(request.operation, e));
+                }
+            }
+        }
+    }
+
+    /**
+     * todo Private Static Function failed(Operation, Throwable): the error of a request lost with the transport
+     *
+     * @param operation the operation
+     * @param cause     the transport error
+     * @return Protocol.ChannelErrorException
+     */
+    private static Protocol.ChannelErrorException failed(@NotNull Operation operation, @NotNull Throwable cause) {
+        Protocol.ChannelErrorException exception = new Protocol.ChannelErrorException(
+                String.format("%s request failed: %s", operation, cause.getMessage()));
+        exception.initCause(cause);
+
+        return exception;
+    }
+
+    /**
+     * todo Private Static Class Pending: a request in flight
+     */
+    private static final class Pending {
+        /**
+         * operation: the operation
+         * start:     nanoTime of the request
+         * sent:      bytes of the request frame
+         * future:    completed with the response
+         */
+        final Operation operation;
+        final long start = System.nanoTime();
+        int sent;
+        final CompletableFuture<Frame> future = new CompletableFuture<>();
+
+        /**
+         * todo Function Pending(Operation): Class Pending init
+         *
+         * @param operation the operation
+         */
+        Pending(Operation operation) {
+            this.operation = operation;
+        }
+    }
+
+    /**
+     * todo Static Class Frame: a request or a response on the wire
+     */
+    static final class Frame {
+        /**
+         * HEADER: bytes of the frame length field
+         */
+        static final int HEADER = Integer.BYTES;
+        /**
+         * id:          request id, echoed by the response
+         * code:        opcode of a request, OK or ERROR for a response
+         * text:        optimum mode, error message or hex public key, null if absent
+         * ciphertexts: the ciphertexts
+         * exponents:   the exponents of the ciphertexts
+         * obfuscated:  the ciphertexts are re-randomized or not
+         * length:      bytes of the frame on the wire, the length field included
+         */
+        final int id;
+        final byte code;
+        final String text;
+        final BigInteger[] ciphertexts;
+        final int[] exponents;
+        final boolean[] obfuscated;
+        final int length;
+
+        /**
+         * todo Private Function Frame(int, byte, String, BigInteger[], int[], boolean[], int): Class Frame init
+         *
+         * @param id          request id
+         * @param code        opcode or response code
+         * @param text        text, null if absent
+         * @param ciphertexts the ciphertexts
+         * @param exponents   the exponents
+         * @param obfuscated  the re-randomized flags
+         * @param length      bytes on the wire
+         */
+        private Frame(int id, byte code, String text, BigInteger[] ciphertexts, int[] exponents, boolean[] obfuscated,
+                      int length) {
+            this.id = id;
+            this.code = code;
+            this.text = text;
+            this.ciphertexts = ciphertexts;
+            this.exponents = exponents;
+            this.obfuscated = obfuscated;
+            this.length = length;
+        }
+
+        /**
+         * todo Static Function of(int, byte, String, List): the frame of ciphertexts
+         *
+         * @param id      request id
+         * @param code    opcode or response code
+         * @param text    text, null if absent
+         * @param numbers the ciphertexts
+         * @return Frame
+         */
+        static @NotNull Frame of(int id, byte code, String text, @NotNull List<EncryptedNumber> numbers) {
+            int count = numbers.size();
+            BigInteger[] ciphertexts = new BigInteger[count];
+            int[] exponents = new int[count];
+            boolean[] obfuscated = new boolean[count];
+            for (int i = 0; i < count; i++) {
+                EncryptedNumber number = numbers.get(i);
+                // the flag is read first: ciphertext(false) never re-randomizes
+                obfuscated[i] = number.isObfuscated();
+                ciphertexts[i] = number.ciphertext(false);
+                exponents[i] = number.getExponent();
+            }
+
+            return new Frame(id, code, text, ciphertexts, exponents, obfuscated, -1);
+        }
+
+        /**
+         * todo Function numbers(PaillierPublicKey): the ciphertexts as encrypted numbers
+         *
+         * @param publicKey the public key of the ciphertexts
+         * @return List -> EncryptedNumber
+         */
+        @NotNull List<EncryptedNumber> numbers(PaillierPublicKey publicKey) {
+            List<EncryptedNumber> numbers = new ArrayList<>(this.ciphertexts.length);
+            for (int i = 0; i < this.ciphertexts.length; i++) {
+                numbers.add(new EncryptedNumber(publicKey, this.ciphertexts[i], this.exponents[i], this.obfuscated[i]));
+            }
+
+            return numbers;
+        }
+
+        /**
+         * todo Function write(ByteChannel): write the frame
+         *
+         * @param channel the channel
+         * @return int bytes written
+         * @throws IOException if the write fails
+         */
+        int write(@NotNull ByteChannel channel) throws IOException {
+            return writeFully(channel, encode());
+        }
+
+        /**
+         * todo Function encode(): the bytes of the frame
+         *
+         * @return ByteBuffer ready for writing
+         * @throws IOException if a field is too long for the frame
+         */
+        @NotNull ByteBuffer encode() throws IOException {
+            byte[] text = this.text == null ? new byte[0] : this.text.getBytes(StandardCharsets.UTF_8);
+            int width = 0;
+            for (BigInteger ciphertext : this.ciphertexts) {
+                width = Math.max(width, (ciphertext.bitLength() + 7) / 8);
+            }
+            if (text.length > 0xffff || width > 0xffff) {
+                throw new IOException(String.format("frame field too long: text %s, width %s", text.length, width));
+            }
+
+            long body = Integer.BYTES + 1 + Short.BYTES + text.length + Integer.BYTES + Short.BYTES
+                    + (long) this.ciphertexts.length * (Integer.BYTES + 1 + width);
+            if (body > MAX_FRAME) {
+                throw new IOException(String.format("frame of %s bytes is too long", body));
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate(HEADER + (int) body);
+            buffer.putInt((int) body).putInt(this.id).put(this.code);
+            buffer.putShort((short) text.length).put(text);
+            buffer.putInt(this.ciphertexts.length).putShort((short) width);
+            for (int i = 0; i < this.ciphertexts.length; i++) {
+                buffer.putInt(this.exponents[i]).put((byte) (this.obfuscated[i] ? 1 : 0));
+                byte[] bytes = this.ciphertexts[i].toByteArray();
+                // toByteArray has a sign byte when the top bit is set, the padding replaces it
+                int skip = bytes.length > width ? bytes.length - width : 0;
+                buffer.position(buffer.position() + width - (bytes.length - skip));
+                buffer.put(bytes, skip, bytes.length - skip);
+            }
+
+            return buffer.flip();
+        }
+
+        /**
+         * todo Static Function writeFully(ByteChannel, ByteBuffer): write a whole buffer
+         *
+         * @param channel the channel
+         * @param buffer  the buffer
+         * @return int bytes written
+         * @throws IOException if the write fails
+         */
+        static int writeFully(@NotNull ByteChannel channel, @NotNull ByteBuffer buffer) throws IOException {
+            int length = buffer.remaining();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+
+            return length;
+        }
+
+        /**
+         * todo Static Function read(ByteChannel): read a frame
+         *
+         * @param channel the channel
+         * @return Frame
+         * @throws IOException  if the read fails or the frame is malformed
+         * @throws EOFException if the stream ends before a frame
+         */
+        static @NotNull Frame read(@NotNull ByteChannel channel) throws IOException {
+            int body = readFully(channel, ByteBuffer.allocate(HEADER)).getInt();
+            if (body < 0 || body > MAX_FRAME) {
+                throw new IOException(String.format("frame of %s bytes is malformed", body));
+            }
+
+            ByteBuffer buffer = readFully(channel, ByteBuffer.allocate(body));
+            try {
+                int id = buffer.getInt();
+                byte code = buffer.get();
+                byte[] text = new byte[Short.toUnsignedInt(buffer.getShort())];
+                buffer.get(text);
+                int count = buffer.getInt();
+                int width = Short.toUnsignedInt(buffer.getShort());
+                if (count < 0 || (long) count * (Integer.BYTES + 1 + width) != buffer.remaining()) {
+                    throw new IOException(String.format("frame of %s numbers of %s bytes is malformed", count, width));
+                }
+
+                BigInteger[] ciphertexts = new BigInteger[count];
+                int[] exponents = new int[count];
+                boolean[] obfuscated = new boolean[count];
+                byte[] bytes = new byte[width];
+                for (int i = 0; i < count; i++) {
+                    exponents[i] = buffer.getInt();
+                    obfuscated[i] = buffer.get() != 0;
+                    buffer.get(bytes);
+                    ciphertexts[i] = new BigInteger(1, bytes);
+                }
+
+                return new Frame(id, code, text.length == 0 ? null : new String(text, StandardCharsets.UTF_8),
+                        ciphertexts, exponents, obfuscated, HEADER + body);
+            } catch (RuntimeException e) {
+                throw new IOException("frame is malformed", e);
+            }
+        }
+
+        /**
+         * todo Private Static Function readFully(ByteChannel, ByteBuffer): fill a buffer
+         *
+         * @param channel the channel
+         * @param buffer  the buffer
+         * @return ByteBuffer flipped for reading
+         * @throws IOException  if the read fails
+         * @throws EOFException if the stream ends first
+         */
+        private static @NotNull ByteBuffer readFully(ByteChannel channel, @NotNull ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    throw new EOFException("channel closed");
+                }
+            }
+
+            return buffer.flip();
+        }
+    }
+}
@@ -10,22 +10,60 @@ package cn.shine;
  * @License MIT
  */
 
+import cn.shine.phe.BigIntegerArithmetic;
+import cn.shine.phe.EncodedNumber;
+import cn.shine.phe.LimbArithmetic;
+import cn.shine.phe.ModArithmetic;
+import cn.shine.phe.ObfuscatorPool;
+import cn.shine.phe.PackedEncoder;
 import cn.shine.phe.Paillier;
+import cn.shine.phe.PaillierKeyPool;
+import cn.shine.phe.PrimeGenerator;
+import cn.shine.phe.RandomnessProvider;
+import cn.shine.phe.Util;
 import cn.shine.report.ZTestReport;
+import cn.shine.smpcp.C2Channel;
+import cn.shine.smpcp.C2Server;
+import cn.shine.smpcp.Circuit;
+import cn.shine.smpcp.CloudPlatformThirdPool;
+import cn.shine.smpcp.MaskPool;
 import cn.shine.smpcp.Protocol;
+import cn.shine.smpcp.TcpC2Channel;
+import org.apache.commons.math3.util.FastMath;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Listeners;
 import org.testng.annotations.Test;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.math.RoundingMode;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
 
 import static junit.framework.TestCase.assertEquals;
 import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
 
 /**
  * Secure Multi-Party Computation Protocol Test
@@ -64,6 +102,543 @@ public class AppTest {
         assertEquals(keyPair.privateKey.decrypt(n1.multiply(n2)), m1.multiply(m2));
     }
 
+    /**
+     * todo Test mulBatchTest
+     *
+     * @param keyLength keypair length
+     */
+    @Test(description = "Batch multiply test", dataProvider = "keyLength")
+    public void mulBatchTest(int keyLength) {
+        Paillier.PaillierKeyPair keyPair = Paillier.PaillierKeyPair.generate(keyLength);
+        Protocol.CloudPlatform cloud1 = new Protocol.CloudPlatform(keyPair.publicKey);
+        Protocol.CloudPlatformThird cloud2 = new Protocol.CloudPlatformThird(keyPair.publicKey, keyPair.privateKey);
+        Protocol.SMPCProtocol protocol = new Protocol.SMPCProtocol(cloud1, cloud2);
+
+        int count = 16;
+        List<BigInteger> m1 = new ArrayList<>(), m2 = new ArrayList<>();
+        List<Paillier.EncryptedNumber> n1 = new ArrayList<>(), n2 = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            m1.add(randomInt(BigInteger.valueOf(keyLength)));
+            m2.add(randomInt(BigInteger.valueOf(keyLength)));
+            n1.add(keyPair.publicKey.encrypt(m1.get(i)));
+            n2.add(keyPair.publicKey.encrypt(m2.get(i)));
+        }
+
+        List<Paillier.EncryptedNumber> products = protocol.multiplyBatch(n1, n2);
+        assertEquals(products.size(), count);
+        for (int i = 0; i < count; i++) {
+            assertEquals(keyPair.privateKey.decrypt(products.get(i)), m1.get(i).multiply(m2.get(i)));
+        }
+
+        BigDecimal d1 = BigDecimal.valueOf(new Random().nextDouble()), d2 = BigDecimal.valueOf(new Random().nextDouble());
+        List<Paillier.EncryptedNumber> mixed = cloud1.multiplyBatch(List.of(keyPair.publicKey.encrypt(d1), n1.get(0)),
+                List.of(n2.get(0), keyPair.publicKey.encrypt(d2)), cloud2);
+        assertTrue(((BigDecimal) keyPair.privateKey.decrypt(mixed.get(0)))
+                .subtract(d1.multiply(new BigDecimal(m2.get(0)))).abs().compareTo(BigDecimal.valueOf(1e-3)) <= 0);
+        assertTrue(((BigDecimal) keyPair.privateKey.decrypt(mixed.get(1)))
+                .subtract(d2.multiply(new BigDecimal(m1.get(0)))).abs().compareTo(BigDecimal.valueOf(1e-3)) <= 0);
+
+        assertTrue(protocol.multiplyBatch(new ArrayList<>(), new ArrayList<>()).isEmpty());
+        try {
+            protocol.multiplyBatch(n1, n2.subList(1, count));
+            fail("length mismatch not detected");
+        } catch (Protocol.ValueErrorException ignored) {
+        }
+    }
+
+    /**
+     * todo Test tcpChannelTest
+     *
+     * @param keyLength keypair length
+     * @throws IOException if the loopback socket fails
+     */
+    @Test(description = "TCP channel test", dataProvider = "keyLength")
+    public void tcpChannelTest(int keyLength) throws IOException {
+        Paillier.PaillierKeyPair keyPair = Paillier.PaillierKeyPair.generate(keyLength);
+        Protocol.CloudPlatform cloud1 = new Protocol.CloudPlatform(keyPair.publicKey);
+        Protocol.CloudPlatformThird cloud2 = new Protocol.CloudPlatformThird(keyPair.publicKey, keyPair.privateKey);
+
+        try (C2Server server = new C2Server(cloud2).start(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+             TcpC2Channel channel = new TcpC2Channel(server.getAddress(), keyPair.publicKey)) {
+            Protocol.SMPCProtocol protocol = new Protocol.SMPCProtocol(cloud1, channel);
+
+            BigInteger m1 = randomInt(BigInteger.valueOf(keyLength));
+            BigInteger m2 = randomInt(BigInteger.valueOf(keyLength));
+            Protocol.SMPCProtocol n1 = protocol.encode(keyPair.publicKey.encrypt(m1));
+            Paillier.EncryptedNumber n2 = keyPair.publicKey.encrypt(m2);
+
+            assertEquals(keyPair.privateKey.decrypt(n1.multiply(n2)), m1.multiply(m2));
+            assertEquals(keyPair.privateKey.decrypt(n1.optimum(n2, "max")), m1.max(m2));
+            assertEquals(keyPair.privateKey.decrypt(n1.parity()), m1.mod(BigInteger.TWO));
+            assertEquals(keyPair.privateKey.decrypt(n1.equals(n2)), m1.equals(m2) ? BigInteger.ONE : BigInteger.ZERO);
+            assertEquals(keyPair.privateKey.decrypt(n1.greaterEquals(n2)), m1.compareTo(m2) >= 0 ? BigInteger.ONE :
+                    BigInteger.ZERO);
+
+            BigDecimal d = BigDecimal.valueOf(0.375);
+            assertEquals(keyPair.privateKey.decrypt(protocol.encode(keyPair.publicKey.encrypt(d))
+                    .multiply(keyPair.publicKey.encrypt(4))), BigDecimal.valueOf(1.5));
+
+            List<Paillier.EncryptedNumber> products = protocol.multiplyBatch(List.of(n2, n2), List.of(n2, n1.decode()));
+            assertEquals(keyPair.privateKey.decrypt(products.get(0)), m2.multiply(m2));
+            assertEquals(keyPair.privateKey.decrypt(products.get(1)), m2.multiply(m1));
+
+            C2Channel.Statistics statistics = channel.getStatistics();
+            assertEquals(statistics.getMessages(C2Channel.Operation.MULTIPLY_BATCH), 1L);
+
+            // a single comparison is one sign test, like a batch of one
+            long messages = statistics.getMessages();
+            assertEquals(keyPair.privateKey.decrypt(n1.lessThan(n2)), m1.compareTo(m2) < 0 ? BigInteger.ONE :
+                    BigInteger.ZERO);
+            assertEquals(keyPair.privateKey.decrypt(n1.greaterThan(n2)), m1.compareTo(m2) > 0 ? BigInteger.ONE :
+                    BigInteger.ZERO);
+            assertEquals(statistics.getMessages(), messages + 2);
+            assertTrue(statistics.getBytesSent() > 0 && statistics.getBytesReceived() > 0 && statistics.getNanos() > 0);
+            assertEquals(server.getStatistics().getBytesReceived(), statistics.getBytesSent());
+
+            try {
+                channel.divide(keyPair.publicKey.encrypt(1), keyPair.publicKey.encrypt(0));
+                fail("server error not reported");
+            } catch (Protocol.ChannelErrorException ignored) {
+            }
+
+            try (TcpC2Channel anonymous = new TcpC2Channel(server.getAddress())) {
+                assertEquals(anonymous.getPublicKey().n, keyPair.publicKey.n);
+                assertEquals(anonymous.getStatistics().getMessages(C2Channel.Operation.PUBLIC_KEY), 1L);
+            }
+        }
+
+        // a rejected public key request closes the connection instead of leaking it
+        try (ServerSocket fake = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            CompletableFuture<Integer> eof = CompletableFuture.supplyAsync(() -> {
+                try (Socket connection = fake.accept()) {
+                    DataInputStream in = new DataInputStream(connection.getInputStream());
+                    in.readFully(new byte[in.readInt()]);
+
+                    byte[] text = "rejected".getBytes(StandardCharsets.UTF_8);
+                    DataOutputStream out = new DataOutputStream(connection.getOutputStream());
+                    out.writeInt(Integer.BYTES + 1 + Short.BYTES + text.length + Integer.BYTES + Short.BYTES);
+                    out.writeInt(0);
+                    out.writeByte(1);
+                    out.writeShort(text.length);
+                    out.write(text);
+                    out.writeInt(0);
+                    out.writeShort(0);
+                    out.flush();
+
+                    connection.setSoTimeout(10000);
+                    return in.read();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+
+            try {
+                new TcpC2Channel(fake.getLocalSocketAddress()).close();
+                fail("rejected public key request not reported");
+            } catch (Protocol.ChannelErrorException ignored) {
+            }
+            assertEquals(eof.join().intValue(), -1);
+        }
+    }
+
+    /**
+     * todo Test asyncTest
+     *
+     * @param keyLength keypair length
+     * @throws IOException if the loopback socket fails
+     */
+    @Test(description = "Asynchronous protocol test", dataProvider = "keyLength")
+    public void asyncTest(int keyLength) throws IOException {
+        Paillier.PaillierKeyPair keyPair = Paillier.PaillierKeyPair.generate(keyLength);
+        Protocol.CloudPlatform cloud1 = new Protocol.CloudPlatform(keyPair.publicKey);
+        Protocol.CloudPlatformThird cloud2 = new Protocol.CloudPlatformThird(keyPair.publicKey, keyPair.privateKey);
+
+        BigInteger m1 = randomInt(BigInteger.valueOf(keyLength));
+        BigInteger m2 = randomInt(BigInteger.valueOf(keyLength));
+        Paillier.EncryptedNumber n2 = keyPair.publicKey.encrypt(m2);
+
+        // in-process, the futures are completed by the call
+        Protocol.SMPCProtocol local = new Protocol.SMPCProtocol(cloud1, cloud2, keyPair.publicKey.encrypt(m1));
+        CompletableFuture<Paillier.EncryptedNumber> product = local.multiplyAsync(n2);
+        assertTrue(product.isDone());
+        assertEquals(keyPair.privateKey.decrypt(product.join()), m1.multiply(m2));
+        assertEquals(keyPair.privateKey.decrypt(local.lessThanAsync(n2).join()), m1.compareTo(m2) < 0 ? BigInteger.ONE :
+                BigInteger.ZERO);
+
+        try (C2Server server = new C2Server(cloud2).start(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+             TcpC2Channel channel = new TcpC2Channel(server.getAddress(), keyPair.publicKey)) {
+            Protocol.SMPCProtocol protocol = new Protocol.SMPCProtocol(cloud1, channel);
+
+            int count = 32;
+            List<BigInteger> m = new ArrayList<>();
+            List<CompletableFuture<Paillier.EncryptedNumber>> products = new ArrayList<>(), greater = new ArrayList<>(),
+                    equals = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                m.add(i % 4 == 0 ? m2 : randomInt(BigInteger.valueOf(keyLength)));
+                Protocol.SMPCProtocol n = protocol.encode(keyPair.publicKey.encrypt(m.get(i)));
+                products.add(n.multiplyAsync(n2));
+                greater.add(n.greaterThanAsync(n2));
+                equals.add(n.equalsAsync(n2));
+            }
+            CompletableFuture.allOf(products.toArray(new CompletableFuture<?>[0])).join();
+            CompletableFuture.allOf(greater.toArray(new CompletableFuture<?>[0])).join();
+            CompletableFuture.allOf(equals.toArray(new CompletableFuture<?>[0])).join();
+
+            for (int i = 0; i < count; i++) {
+                int compare = m.get(i).compareTo(m2);
+                assertEquals(keyPair.privateKey.decrypt(products.get(i).join()), m.get(i).multiply(m2));
+                assertEquals(keyPair.privateKey.decrypt(greater.get(i).join()), BigInteger.valueOf(compare > 0 ? 1 : 0));
+                assertEquals(keyPair.privateKey.decrypt(equals.get(i).join()), BigInteger.valueOf(compare == 0 ? 1 : 0));
+            }
+            assertEquals(channel.getPending(), 0);
+
+            Protocol.SMPCProtocol n1 = protocol.encode(keyPair.publicKey.encrypt(m1));
+            assertEquals(keyPair.privateKey.decrypt(n1.optimumAsync(n2, "min").join()), m1.min(m2));
+            assertEquals(keyPair.privateKey.decrypt(n1.parityAsync().join()), m1.mod(BigInteger.TWO));
+            assertEquals(keyPair.privateKey.decrypt(n1.lessEqualsAsync(n2).join()), m1.compareTo(m2) <= 0 ?
+                    BigInteger.ONE : BigInteger.ZERO);
+
+            try {
+                protocol.encode(keyPair.publicKey.encrypt(1)).divideAsync(keyPair.publicKey.encrypt(0)).join();
+                fail("server error not reported");
+            } catch (CompletionException e) {
+                assertTrue(e.getCause() instanceof Protocol.ChannelErrorException);
+            }
+        }
+    }
+
+    /**
+     * todo Test poolTest
+     *
+     * @param keyLength keypair length
+     * @throws IOException if the loopback socket fails
+     */
+    @Test(description = "Third cloud platform pool test", dataProvider = "keyLength")
+    public void poolTest(int keyLength) throws IOException {
+        Paillier.PaillierKeyPair keyPair = Paillier.PaillierKeyPair.generate(keyLength);
+        Protocol.CloudPlatform cloud1 = new Protocol.CloudPlatform(keyPair.publicKey);
+
+        List<Protocol.CloudPlatformThird> thirds = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            thirds.add(new Protocol.CloudPlatformThird(keyPair.publicKey, keyPair.privateKey));
+        }
+        CloudPlatformThirdPool local = new CloudPlatformThirdPool(thirds, CloudPlatformThirdPool.Routing.ROUND_ROBIN);
+        Protocol.SMPCProtocol protocol = new Protocol.SMPCProtocol(cloud1, local);
+
+        BigInteger m1 = randomInt(BigInteger.valueOf(keyLength));
+        BigInteger m2 = randomInt(BigInteger.valueOf(keyLength));
+        Protocol.SMPCProtocol n1 = protocol.encode(keyPair.publicKey.encrypt(m1));
+        Paillier.EncryptedNumber n2 = keyPair.publicKey.encrypt(m2);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(keyPair.privateKey.decrypt(n1.multiply(n2)), m1.multiply(m2));
+        }
+        for (int i = 0; i < 3; i++) {
+            assertEquals(local.getServed(i), 1L);
+        }
+
+        int count = 10;
+        List<BigInteger> m = new ArrayList<>();
+        List<Paillier.EncryptedNumber> n = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            m.add(randomInt(BigInteger.valueOf(keyLength)));
+            n.add(keyPair.publicKey.encrypt(m.get(i)));
+        }
+        List<Paillier.EncryptedNumber> products = protocol.multiplyBatch(n, n);
+        List<Paillier.EncryptedNumber> greater = protocol.greaterThanBatch(n, Collections.nCopies(count, n2));
+        for (int i = 0; i < count; i++) {
+            assertEquals(keyPair.privateKey.decrypt(products.get(i)), m.get(i).multiply(m.get(i)));
+            assertEquals(keyPair.privateKey.decrypt(greater.get(i)), BigInteger.valueOf(m.get(i).compareTo(m2) > 0 ? 1 : 0));
+        }
+        for (int i = 0; i < 3; i++) {
+            // one shard of each of the two batches
+            assertEquals(local.getServed(i), 3L);
+        }
+
+        try {
+            local.divide(keyPair.publicKey.encrypt(1), keyPair.publicKey.encrypt(0));
+            fail("replica error not reported");
+        } catch (ArithmeticException ignored) {
+        }
+
+        Protocol.CloudPlatformThird cloud2 = thirds.get(0);
+        InetSocketAddress loopback = new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+        C2Server server1 = new C2Server(cloud2).start(loopback);
+        try {
+            C2Server server2 = new C2Server(cloud2).start(loopback);
+            try (CloudPlatformThirdPool remote = new CloudPlatformThirdPool(List.of(
+                    new TcpC2Channel(server1.getAddress(), keyPair.publicKey),
+                    new TcpC2Channel(server2.getAddress(), keyPair.publicKey)))) {
+                protocol = new Protocol.SMPCProtocol(cloud1, remote);
+                n1 = protocol.encode(keyPair.publicKey.encrypt(m1));
+                assertEquals(keyPair.privateKey.decrypt(n1.equals(n2)), m1.equals(m2) ? BigInteger.ONE : BigInteger.ZERO);
+
+                try {
+                    remote.divide(keyPair.publicKey.encrypt(1), keyPair.publicKey.encrypt(0));
+                    fail("server error not reported");
+                } catch (Protocol.ChannelErrorException ignored) {
+                }
+                assertTrue(remote.isHealthy(0) && remote.isHealthy(1));
+
+                // the requests to the lost replica are retried on the other one, which serves all the later ones
+                server1.close();
+                for (int i = 0; i < 4; i++) {
+                    assertEquals(keyPair.privateKey.decrypt(n1.multiply(n2)), m1.multiply(m2));
+                }
+                products = protocol.multiplyBatch(n, n);
+                for (int i = 0; i < count; i++) {
+                    assertEquals(keyPair.privateKey.decrypt(products.get(i)), m.get(i).multiply(m.get(i)));
+                }
+                assertTrue(!remote.isHealthy(0) && remote.isHealthy(1));
+                assertEquals(remote.getFailures(0), 1L);
+
+                // a new connection brings the lost replica back into the rotation
+                server1 = new C2Server(cloud2).start(loopback);
+                remote.replace(0, new TcpC2Channel(server1.getAddress(), keyPair.publicKey));
+                assertTrue(remote.isHealthy(0) && remote.isHealthy(1));
+                assertEquals(remote.getFailures(0), 0L);
+                for (int i = 0; i < 4; i++) {
+                    assertEquals(keyPair.privateKey.decrypt(n1.multiply(n2)), m1.multiply(m2));
+                }
+                assertTrue(remote.getServed(0) > 0);
+                try {
+                    remote.replace(2, new Protocol.CloudPlatformThird(keyPair.publicKey, keyPair.privateKey));
+                    fail("missing replica not reported");
+                } catch (Protocol.ValueErrorException ignored) {
+                }
+
+                server1.close();
+                server2.close();
+                try {
+                    n1.multiply(n2);
+                    fail("lost pool not reported");
+                } catch (Protocol.ChannelErrorException ignored) {
+                }
+            } finally {
+                server2.close();
+            }
+        } finally {
+            server1.close();
+        }
+    }
+
+    /**
+     * todo Test maskPoolTest
+     *
+     * @param keyLength keypair length
+     * @throws InterruptedException if the wait for the refill is interrupted
+     */
+    @Test(description = "Mask pool test", dataProvider = "keyLength")
+    public void maskPoolTest(int keyLength) throws InterruptedException {
+        Paillier.PaillierKeyPair keyPair = Paillier.PaillierKeyPair.generate(keyLength);
+        Protocol.CloudPlatform cloud1 = new Protocol.CloudPlatform(keyPair.publicKey);
+        Protocol.CloudPlatformThird cloud2 = new Protocol.CloudPlatformThird(keyPair.publicKey, keyPair.privateKey);
+        Protocol.SMPCProtocol protocol = new Protocol.SMPCProtocol(cloud1, cloud2);
+        keyPair.publicKey.enableLazyObfuscation();
+
+        // low watermark 0: the pool is only refilled by a miss
+        MaskPool masks = cloud1.enableMaskPool(0, 8, 1);
+        for (int i = 0; i < 100 && masks.size() < 8; i++) {
+            Thread.sleep(50);
+        }
+        assertEquals(masks.size(), 8);
+
+        BigInteger m1 = randomInt(BigInteger.valueOf(keyLength));
+        BigInteger m2 = randomInt(BigInteger.valueOf(keyLength));
+        Protocol.SMPCProtocol n1 = protocol.encode(keyPair.publicKey.encrypt(m1));
+        Paillier.EncryptedNumber n2 = keyPair.publicKey.encrypt(m2);
+
+        // the precomputed masks leave nothing to obfuscate online
+        ObfuscatorPool obfuscators = keyPair.publicKey.enableObfuscatorPool(0, 1, 1);
+        long before = obfuscators.getHits() + obfuscators.getMisses();
+        assertEquals(keyPair.privateKey.decrypt(n1.multiply(n2)), m1.multiply(m2));
+        long pooled = obfuscators.getHits() + obfuscators.getMisses() - before;
+        assertEquals(masks.getHits(), 1L);
+
+        cloud1.disableMaskPool();
+        assertEquals(cloud1.getMaskPool(), null);
+        before = obfuscators.getHits() + obfuscators.getMisses();
+        assertEquals(keyPair.privateKey.decrypt(n1.multiply(n2)), m1.multiply(m2));
+        assertEquals(obfuscators.getHits() + obfuscators.getMisses() - before, pooled + 2);
+        keyPair.publicKey.disableObfuscatorPool();
+
+        masks = cloud1.enableMaskPool(4, 16, 2);
+        assertEquals(keyPair.privateKey.decrypt(n1.divide(keyPair.publicKey.encrypt(BigInteger.TWO))),
+                m1.divide(BigInteger.TWO));
+        assertEquals(keyPair.privateKey.decrypt(n1.optimum(n2, "max")), m1.max(m2));
+        assertEquals(keyPair.privateKey.decrypt(n1.greaterThan(n2)), m1.compareTo(m2) > 0 ? BigInteger.ONE :
+                BigInteger.ZERO);
+        assertEquals(keyPair.privateKey.decrypt(n1.lessThan(n2)), m1.compareTo(m2) < 0 ? BigInteger.ONE :
+                BigInteger.ZERO);
+        assertEquals(keyPair.privateKey.decrypt(n1.equals(n1.decode())), BigInteger.ONE);
+        assertEquals(keyPair.privateKey.decrypt(n1.lessEquals(n2)), m1.compareTo(m2) <= 0 ? BigInteger.ONE :
+                BigInteger.ZERO);
+
+        // the shift of the sign test is read at the exponent of the decimal operands
+        Protocol.SMPCProtocol d = protocol.encode(keyPair.publicKey.encrypt(0.5));
+        assertEquals(keyPair.privateKey.decrypt(d.greaterEquals(keyPair.publicKey.encrypt(0.4375))), BigInteger.ONE);
+        assertEquals(keyPair.privateKey.decrypt(d.lessEquals(keyPair.publicKey.encrypt(0.4375))), BigInteger.ZERO);
+        assertEquals(keyPair.privateKey.decrypt(d.equals(keyPair.publicKey.encrypt(0.5))), BigInteger.ONE);
+        assertTrue(masks.getHits() + masks.getMisses() > 0);
+
+        // an invalid pool leaves the current one working
+        try {
+            cloud1.enableMaskPool(4, 4, 1);
+            fail("invalid watermarks not detected");
+        } catch (Protocol.ValueErrorException ignored) {
+        }
+        assertEquals(cloud1.getMaskPool(), masks);
+        long hits = masks.getHits() + masks.getMisses();
+        assertEquals(keyPair.privateKey.decrypt(n1.multiply(n2)), m1.multiply(m2));
+        assertEquals(masks.getHits() + masks.getMisses(), hits + 1);
+        cloud1.disableMaskPool();
+
+        // without the pool the inline masks are re-randomized on the way, lazy or not: c2 does not get
+        // c * (1 + n * r1) for an obfuscated c it may have seen
+        List<Paillier.EncryptedNumber> sent = new ArrayList<>();
+        Protocol.CloudPlatformThird recording = new Protocol.CloudPlatformThird(keyPair.publicKey, keyPair.privateKey) {
+            @Override
+            public Paillier.EncryptedNumber multiply(Paillier.EncryptedNumber h1, Paillier.EncryptedNumber h2) {
+                sent.add(h1);
+                return super.multiply(h1, h2);
+            }
+        };
+        BigInteger n = keyPair.publicKey.n, nSquare = n.multiply(n);
+        for (boolean lazy : new boolean[]{true, false}) {
+            if (!lazy) {
+                keyPair.publicKey.disableLazyObfuscation();
+            }
+            Paillier.EncryptedNumber c = keyPair.publicKey.encrypt(m1);
+            c.obfuscate();
+            sent.clear();
+            assertEquals(keyPair.privateKey.decrypt(cloud1.multiply(c, n2, recording)), m1.multiply(m2));
+            BigInteger quotient = sent.get(0).ciphertext(false).multiply(c.ciphertext(false).modInverse(nSquare)).mod(nSquare);
+            assertTrue(!quotient.subtract(BigInteger.ONE).mod(n).equals(BigInteger.ZERO));
+        }
+    }
+
+    /**
+     * todo Test circuitTest
+     *
+     * @param keyLength keypair length
+     * @throws IOException if the loopback socket fails
+     */
+    @Test(description = "Circuit test", dataProvider = "keyLength")
+    public void circuitTest(int keyLength) throws IOException {
+        Paillier.PaillierKeyPair keyPair = Paillier.PaillierKeyPair.generate(keyLength);
+        Protocol.CloudPlatform cloud1 = new Protocol.CloudPlatform(keyPair.publicKey);
+        Protocol.CloudPlatformThird cloud2 = new Protocol.CloudPlatformThird(keyPair.publicKey, keyPair.privateKey);
+
+        BigInteger[] m = new BigInteger[6];
+        for (int i = 0; i < m.length; i++) {
+            m[i] = randomInt(BigInteger.valueOf(keyLength));
+        }
+        m[5] = m[4];
+        BigInteger one = BigInteger.ONE, zero = BigInteger.ZERO;
+
+        try (C2Server server = new C2Server(cloud2).start(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+             TcpC2Channel channel = new TcpC2Channel(server.getAddress(), keyPair.publicKey)) {
+            Circuit circuit = new Circuit(new Protocol.SMPCProtocol(cloud1, channel));
+            Circuit.Node[] n = new Circuit.Node[m.length];
+            for (int i = 0; i < m.length; i++) {
+                n[i] = circuit.input(keyPair.publicKey.encrypt(m[i]));
+            }
+
+            // (a > b) AND (c <= d) OR e == f
+            Circuit.Node query = n[0].greaterThan(n[1]).bitAnd(n[2].lessEquals(n[3])).bitOr(n[4].equals(n[5]));
+            assertEquals(query.getDepth(), 3);
+            assertEquals(keyPair.privateKey.decrypt(query.evaluate()), one);
+
+            // one request per kind and depth: two sign test batches, then two multiply batches
+            C2Channel.Statistics statistics = channel.getStatistics();
+            assertEquals(statistics.getMessages(C2Channel.Operation.EQUALS_BATCH), 2L);
+            assertEquals(statistics.getMessages(C2Channel.Operation.MULTIPLY_BATCH), 2L);
+            assertEquals(statistics.getMessages(), 4L);
+
+            boolean gt = m[0].compareTo(m[1]) > 0, le = m[2].compareTo(m[3]) <= 0;
+            Circuit.Node and = n[0].greaterThan(n[1]).bitAnd(n[2].lessEquals(n[3]));
+            Circuit.Node xor = n[0].lessThan(n[1]).bitXor(n[2].greaterEquals(n[3]));
+            Circuit.Node sum = n[0].multiply(n[1]).add(n[2].multiply(3)).subtract(n[3]).add(7);
+            Circuit.Node max = n[0].optimum(n[1], "max").subtract(n[0].notEquals(n[1]));
+            List<Paillier.EncryptedNumber> values = circuit.evaluate(List.of(and, xor, sum, max));
+            assertEquals(keyPair.privateKey.decrypt(values.get(0)), gt && le ? one : zero);
+            boolean lt = m[0].compareTo(m[1]) < 0, ge = m[2].compareTo(m[3]) >= 0;
+            assertEquals(keyPair.privateKey.decrypt(values.get(1)), lt ^ ge ? one : zero);
+            assertEquals(keyPair.privateKey.decrypt(values.get(2)), m[0].multiply(m[1]).add(m[2].multiply(BigInteger.valueOf(3)))
+                    .subtract(m[3]).add(BigInteger.valueOf(7)));
+            assertEquals(keyPair.privateKey.decrypt(values.get(3)), m[0].max(m[1]).subtract(m[0].equals(m[1]) ? zero : one));
+        }
+
+        Circuit sequential = new Circuit(new Protocol.SMPCProtocol(cloud1, cloud2), 1);
+        Circuit.Node a = sequential.input(keyPair.publicKey.encrypt(m[0]));
+        Circuit.Node b = sequential.input(keyPair.publicKey.encrypt(m[1]));
+
+        // local operations fold, a + b - a is b
+        assertTrue(a.add(b).subtract(a) == b);
+        assertEquals(a.add(b).multiply(2).subtract(a).getDepth(), 0);
+        assertEquals(keyPair.privateKey.decrypt(a.add(b).multiply(2).subtract(a).evaluate()), m[0].add(m[1].multiply(BigInteger.TWO)));
+        assertEquals(keyPair.privateKey.decrypt(a.multiply(b).bitNot().add(0.5).evaluate()),
+                new BigDecimal(one.subtract(m[0].multiply(m[1]))).add(BigDecimal.valueOf(0.5)));
+        assertEquals(keyPair.privateKey.decrypt(sequential.constant(5).evaluate()), BigInteger.valueOf(5));
+
+        Circuit.Node d = sequential.input(keyPair.publicKey.encrypt(0.5));
+        Circuit.Node e = sequential.input(keyPair.publicKey.encrypt(0.4375));
+        assertEquals(keyPair.privateKey.decrypt(d.greaterEquals(e).bitAnd(e.lessThan(d)).evaluate()), one);
+
+        try {
+            a.add(new Circuit(new Protocol.SMPCProtocol(cloud1, cloud2)).input(keyPair.publicKey.encrypt(1)));
+            fail("nodes of different circuits combined");
+        } catch (Protocol.ValueErrorException ignored) {
+        }
+        try {
+            new Circuit(new Protocol.SMPCProtocol(cloud1, cloud2), 0);
+            fail("invalid parallelism not detected");
+        } catch (Protocol.ValueErrorException ignored) {
+        }
+    }
+
+    /**
+     * todo Test compareBatchTest
+     *
+     * @param keyLength keypair length
+     */
+    @Test(description = "Batch compare test", dataProvider = "keyLength")
+    public void compareBatchTest(int keyLength) {
+        Paillier.PaillierKeyPair keyPair = Paillier.PaillierKeyPair.generate(keyLength);
+        Protocol.CloudPlatform cloud1 = new Protocol.CloudPlatform(keyPair.publicKey);
+        Protocol.CloudPlatformThird cloud2 = new Protocol.CloudPlatformThird(keyPair.publicKey, keyPair.privateKey);
+        Protocol.SMPCProtocol protocol = new Protocol.SMPCProtocol(cloud1, cloud2);
+
+        int count = 16;
+        List<BigInteger> m1 = new ArrayList<>(), m2 = new ArrayList<>();
+        List<Paillier.EncryptedNumber> n1 = new ArrayList<>(), n2 = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            m1.add(randomInt(BigInteger.valueOf(keyLength)));
+            // every fourth pair is equal
+            m2.add(i % 4 == 0 ? m1.get(i) : randomInt(BigInteger.valueOf(keyLength)));
+            n1.add(keyPair.publicKey.encrypt(m1.get(i)));
+            n2.add(keyPair.publicKey.encrypt(m2.get(i)));
+        }
+
+        List<Paillier.EncryptedNumber> equals = protocol.equalsBatch(n1, n2);
+        List<Paillier.EncryptedNumber> notEquals = protocol.notEqualsBatch(n1, n2);
+        List<Paillier.EncryptedNumber> greater = protocol.greaterThanBatch(n1, n2);
+        List<Paillier.EncryptedNumber> less = protocol.lessThanBatch(n1, n2);
+        for (int i = 0; i < count; i++) {
+            int compare = m1.get(i).compareTo(m2.get(i));
+            assertEquals(keyPair.privateKey.decrypt(equals.get(i)), BigInteger.valueOf(compare == 0 ? 1 : 0));
+            assertEquals(keyPair.privateKey.decrypt(notEquals.get(i)), BigInteger.valueOf(compare != 0 ? 1 : 0));
+            assertEquals(keyPair.privateKey.decrypt(greater.get(i)), BigInteger.valueOf(compare > 0 ? 1 : 0));
+            assertEquals(keyPair.privateKey.decrypt(less.get(i)), BigInteger.valueOf(compare < 0 ? 1 : 0));
+        }
+
+        assertTrue(protocol.equalsBatch(new ArrayList<>(), new ArrayList<>()).isEmpty());
+        try {
+            protocol.lessThanBatch(n1, n2.subList(1, count));
+            fail("length mismatch not detected");
+        } catch (Protocol.ValueErrorException ignored) {
+        }
+    }
+
     /**
      * todo Test mulDouTest
      *
@@ -248,6 +823,685 @@ public class AppTest {
                 BigInteger.ZERO);
     }
 
+    /**
+     * todo Test equalsOrderTest
+     *
+     * @param keyLength keypair length
+     */
+    @Test(description = "Greater equals, less equals and equals boundary test", dataProvider = "keyLength")
+    public void equalsOrderTest(int keyLength) {
+        Paillier.PaillierKeyPair keyPair = Paillier.PaillierKeyPair.generate(keyLength);
+        Protocol.CloudPlatform cloud1 = new Protocol.CloudPlatform(keyPair.publicKey);
+        Protocol.CloudPlatformThird cloud2 = new Protocol.CloudPlatformThird(keyPair.publicKey, keyPair.privateKey);
+
+        BigInteger m = randomInt(BigInteger.valueOf(keyLength));
+        for (BigInteger other : List.of(m, m.add(BigInteger.ONE), m.subtract(BigInteger.ONE), m.negate())) {
+            Paillier.EncryptedNumber n1 = keyPair.publicKey.encrypt(m), n2 = keyPair.publicKey.encrypt(other);
+            assertEquals(keyPair.privateKey.decrypt(cloud1.greaterEquals(n1, n2, cloud2)),
+                    m.compareTo(other) >= 0 ? BigInteger.ONE : BigInteger.ZERO);
+            assertEquals(keyPair.privateKey.decrypt(cloud1.lessEquals(n1, n2, cloud2)),
+                    m.compareTo(other) <= 0 ? BigInteger.ONE : BigInteger.ZERO);
+            assertEquals(keyPair.privateKey.decrypt(cloud1.equals(n1, n2, cloud2)),
+                    m.compareTo(other) == 0 ? BigInteger.ONE : BigInteger.ZERO);
+        }
+
+        // operands a fraction apart
+        BigDecimal d = new BigDecimal("0.5");
+        for (BigDecimal other : List.of(d, new BigDecimal("0.25"), new BigDecimal("0.75"), new BigDecimal("0.4375"))) {
+            Paillier.EncryptedNumber n1 = keyPair.publicKey.encrypt(d), n2 = keyPair.publicKey.encrypt(other);
+            assertEquals(keyPair.privateKey.decrypt(cloud1.greaterEquals(n1, n2, cloud2)),
+                    d.compareTo(other) >= 0 ? BigInteger.ONE : BigInteger.ZERO);
+            assertEquals(keyPair.privateKey.decrypt(cloud1.lessEquals(n1, n2, cloud2)),
+                    d.compareTo(other) <= 0 ? BigInteger.ONE : BigInteger.ZERO);
+            assertEquals(keyPair.privateKey.decrypt(cloud1.equals(n1, n2, cloud2)),
+                    d.compareTo(other) == 0 ? BigInteger.ONE : BigInteger.ZERO);
+        }
+    }
+
+    /**
+     * todo Test obfuscatorPoolTest
+     *
+     * @param keyLength keypair length
+     */
+    @Test(description = "Obfuscator pool test", dataProvider = "keyLength")
+    public void obfuscatorPoolTest(int keyLength) {
+        Paillier.PaillierKeyPair keyPair = Paillier.PaillierKeyPair.generate(keyLength);
+        ObfuscatorPool pool = keyPair.publicKey.enableObfuscatorPool(2, 8, 2);
+
+        int count = 16;
+        for (int i = 0; i < count; i++) {
+            BigInteger m = randomInt(BigInteger.valueOf(keyLength));
+            assertEquals(keyPair.privateKey.decrypt(keyPair.publicKey.encrypt(m)), m);
+        }
+        // encrypt takes one obfuscator in rawEncrypt and one in obfuscate
+        assertEquals(pool.getHits() + pool.getMisses(), 2L * count);
+
+        keyPair.publicKey.disableObfuscatorPool();
+        assertEquals(keyPair.publicKey.getObfuscatorPool(), null);
+    }
+
+    /**
+     * todo Test lazyObfuscationTest
+     *
+     * @param keyLength keypair length
+     */
+    @Test(description = "Lazy obfuscation test", dataProvider = "keyLength")
+    public void lazyObfuscationTest(int keyLength) {
+        Paillier.PaillierKeyPair keyPair = Paillier.PaillierKeyPair.generate(keyLength);
+        ObfuscatorPool pool = keyPair.publicKey.enableObfuscatorPool(1, 8, 1);
+        keyPair.publicKey.enableLazyObfuscation();
+
+        BigInteger m1 = randomInt(BigInteger.valueOf(keyLength)), m2 = randomInt(BigInteger.valueOf(keyLength));
+        Paillier.EncryptedNumber c1 = keyPair.publicKey.encrypt(m1);
+        Paillier.EncryptedNumber c2 = keyPair.publicKey.encrypt(m2);
+        Paillier.EncryptedNumber sum = c1.add(c2).add(m1).multiply(3);
+        assertEquals(pool.getHits() + pool.getMisses(), 0L);
+        assertTrue(!sum.isObfuscated());
+
+        BigInteger nude = sum.ciphertext(false);
+        BigInteger blinded = sum.ciphertext(true);
+        assertTrue(sum.isObfuscated());
+        assertTrue(!nude.equals(blinded));
+        assertEquals(sum.ciphertext(true), blinded);
+        assertEquals(pool.getHits() + pool.getMisses(), 1L);
+        assertEquals(keyPair.privateKey.decrypt(sum), m1.add(m2).add(m1).multiply(BigInteger.valueOf(3)));
+
+        keyPair.publicKey.disableLazyObfuscation();
+        assertTrue(keyPair.publicKey.encrypt(m1).isObfuscated());
+
+        // by default what is derived from an obfuscated c leaves re-randomized, not as c * (1 + n * k) or c ** k
+        BigInteger n = keyPair.publicKey.n, nSquare = n.multiply(n);
+        Paillier.EncryptedNumber c = keyPair.publicKey.encrypt(5);
+        BigInteger ciphertext = c.ciphertext(false);
+        Paillier.EncryptedNumber[] derived = {c.add(keyPair.publicKey.encryptLazy(777)), c.add(42), c.multiply(3)};
+        BigInteger[] stripped = {
+                ciphertext.multiply(n.multiply(BigInteger.valueOf(777)).add(BigInteger.ONE)).mod(nSquare),
+                ciphertext.multiply(n.multiply(BigInteger.valueOf(42)).add(BigInteger.ONE)).mod(nSquare),
+                ciphertext.modPow(BigInteger.valueOf(3), nSquare)};
+        for (int i = 0; i < derived.length; i++) {
+            assertTrue(!derived[i].isObfuscated());
+            assertTrue(!derived[i].ciphertext(true).equals(stripped[i]));
+        }
+        assertEquals(keyPair.privateKey.decrypt(derived[0]), BigInteger.valueOf(782));
+        assertEquals(keyPair.privateKey.decrypt(derived[1]), BigInteger.valueOf(47));
+        assertEquals(keyPair.privateKey.decrypt(derived[2]), BigInteger.valueOf(15));
+        keyPair.publicKey.disableObfuscatorPool();
+    }
+
+    /**
+     * todo Test shortExponentTest
+     *
+     * @param keyLength keypair length
+     */
+    @Test(description = "Short exponent obfuscation test", dataProvider = "keyLength")
+    public void shortExponentTest(int keyLength) {
+        Paillier.PaillierKeyPair keyPair = Paillier.PaillierKeyPair.generate(keyLength);
+        keyPair.publicKey.enableShortExponent(keyLength / 4);
+
+        BigInteger m = randomInt(BigInteger.valueOf(keyLength));
+        Paillier.EncryptedNumber c1 = keyPair.publicKey.encrypt(m);
+        Paillier.EncryptedNumber c2 = keyPair.publicKey.encrypt(m);
+
+        assertEquals(keyPair.privateKey.decrypt(c1), m);
+        assertEquals(keyPair.privateKey.decrypt(c2), m);
+        assertTrue(!c1.ciphertext(false).equals(c2.ciphertext(false)));
+        assertEquals(keyPair.privateKey.decrypt(keyPair.publicKey.encrypt(0)), BigInteger.ZERO);
+        assertEquals(keyPair.privateKey.decrypt(keyPair.publicKey.encrypt(1)), BigInteger.ONE);
+    }
+
+    /**
+     * todo Test privateEncryptTest
+     *
+     * @param keyLength keypair length
+     * @throws InterruptedException if the wait for the refill is interrupted
+     */
+    @Test(description = "Private key CRT encryption test", dataProvider = "keyLength")
+    public void privateEncryptTest(int keyLength) throws InterruptedException {
+        Paillier.PaillierKeyPair keyPair = Paillier.PaillierKeyPair.generate(keyLength);
+
+        BigInteger m1 = randomInt(BigInteger.valueOf(keyLength));
+        BigInteger m2 = randomInt(BigInteger.valueOf(keyLength));
+        Paillier.EncryptedNumber n1 = keyPair.privateKey.encrypt(m1);
+        Paillier.EncryptedNumber n2 = keyPair.publicKey.encrypt(m2);
+
+        assertEquals(keyPair.privateKey.decrypt(n1), m1);
+        assertEquals(keyPair.privateKey.decrypt(n1.add(n2)), m1.add(m2));
+        assertTrue(((BigDecimal) keyPair.privateKey.decrypt(keyPair.privateKey.encrypt(-6.2)))
+                .subtract(BigDecimal.valueOf(-6.2)).abs().compareTo(BigDecimal.valueOf(1e-3)) <= 0);
+
+        // the pool of the public key is drawn first, the CRT obfuscator only when it is empty
+        ObfuscatorPool pool = keyPair.publicKey.enableObfuscatorPool(0, 2, 1);
+        for (int i = 0; i < 100 && pool.size() < 2; i++) {
+            Thread.sleep(50);
+        }
+        for (int i = 0; i < 3; i++) {
+            assertEquals(keyPair.privateKey.decrypt(keyPair.privateKey.encrypt(m1)), m1);
+        }
+        assertEquals(pool.getHits(), 2L);
+        assertEquals(pool.getMisses(), 1L);
+        keyPair.publicKey.disableObfuscatorPool();
+    }
+
+    /**
+     * todo Test decryptBatchTest
+     *
+     * @param keyLength keypair length
+     */
+    @Test(description = "Batch decryption test", dataProvider = "keyLength")
+    public void decryptBatchTest(int keyLength) {
+        Paillier.PaillierPrivateKeyring keyring = new Paillier.PaillierPrivateKeyring();
+        Paillier.PaillierKeyPair keyPair = Paillier.PaillierKeyPair.generate(keyring, keyLength);
+        Paillier.PaillierKeyPair otherPair = Paillier.PaillierKeyPair.generate(keyring, keyLength);
+
+        List<BigInteger> plaintexts = new ArrayList<>();
+        List<Paillier.EncryptedNumber> ciphertexts = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            BigInteger m = randomInt(BigInteger.valueOf(keyLength));
+            plaintexts.add(m);
+            ciphertexts.add((i % 2 == 0 ? keyPair : otherPair).publicKey.encrypt(m));
+        }
+
+        ForkJoinPool executor = new ForkJoinPool(4);
+        try {
+            Paillier.BatchResult<Object> result = keyPair.privateKey.decryptBatch(ciphertexts, executor);
+            for (int i = 0; i < plaintexts.size(); i++) {
+                assertEquals(result.isFailed(i), i % 2 != 0);
+                if (!result.isFailed(i)) {
+                    assertEquals(result.get(i), plaintexts.get(i));
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(keyring.decryptBatch(ciphertexts).values(), plaintexts);
+    }
+
+    /**
+     * todo Test encryptBatchTest
+     *
+     * @param keyLength keypair length
+     */
+    @Test(description = "Batch encryption test", dataProvider = "keyLength")
+    public void encryptBatchTest(int keyLength) {
+        Paillier.PaillierKeyPair keyPair = Paillier.PaillierKeyPair.generate(keyLength);
+
+        Random rand = new Random();
+        long[] integers = new long[16];
+        double[] floats = new double[16];
+        for (int i = 0; i < integers.length; i++) {
+            integers[i] = rand.nextInt() - (long) Integer.MAX_VALUE / 2;
+            floats[i] = (rand.nextDouble() - 5e-1) * 1e3;
+        }
+
+        Paillier.EncryptedVector encryptedIntegers = keyPair.publicKey.encryptBatch(integers);
+        List<Object> decryptedIntegers = keyPair.privateKey.decryptBatch(encryptedIntegers.toList()).values();
+        for (int i = 0; i < integers.length; i++) {
+            assertEquals(decryptedIntegers.get(i), BigInteger.valueOf(integers[i]));
+        }
+
+        int i = 0;
+        for (Paillier.EncryptedNumber encryptedNumber : keyPair.publicKey.encryptBatch(floats)) {
+            BigDecimal decrypted = new BigDecimal(keyPair.privateKey.decrypt(encryptedNumber).toString());
+            assertTrue(decrypted.subtract(BigDecimal.valueOf(floats[i++])).abs().compareTo(BigDecimal.valueOf(1e-9)) <= 0);
+        }
+    }
+
+    /**
+     * todo Test keyGenerationTest
+     *
+     * @param keyLength keypair length
+     */
+    @Test(description = "Key generation test", dataProvider = "keyLength")
+    public void keyGenerationTest(int keyLength) {
+        Paillier.PaillierKeyPair keyPair = Paillier.PaillierKeyPair.generate(keyLength);
+        BigInteger p = keyPair.privateKey.p, q = keyPair.privateKey.q;
+
+        assertEquals(keyPair.publicKey.n.bitLength(), keyLength);
+        assertEquals(p.multiply(q), keyPair.publicKey.n);
+        assertTrue(p.isProbablePrime(64) && q.isProbablePrime(64) && !p.equals(q));
+
+        BigInteger[] primes = PrimeGenerator.generatePair(keyLength + 1);
+        assertEquals(primes[0].multiply(primes[1]).bitLength(), keyLength + 1);
+
+        // the sieve skips no prime: the search lands on the first prime above the drawn candidate
+        long seed = new Random().nextLong();
+        int bits = keyLength / 2;
+        BigInteger base = new BigInteger(bits, new Random(seed)).setBit(bits - 1).setBit(bits - 2).setBit(0);
+        BigInteger prime = PrimeGenerator.search(bits, new Random(seed));
+        if (prime.compareTo(base) >= 0) {
+            assertEquals(prime, base.subtract(BigInteger.ONE).nextProbablePrime());
+        }
+    }
+
+    /**
+     * todo Test keyPoolTest
+     *
+     * @throws Exception if the pool file cannot be created
+     */
+    @Test(description = "Key pool test")
+    public void keyPoolTest() throws Exception {
+        int keyLength = 512;
+        Path file = Files.createTempFile("paillier-key-pool", ".bin");
+        Files.delete(file);
+
+        PaillierKeyPool pool = new PaillierKeyPool(file, "passphrase".toCharArray(), 2, keyLength);
+        while (pool.depth(keyLength) < 2) {
+            Thread.sleep(10);
+        }
+        assertTrue(pool.getRefillRate() > 0);
+
+        Paillier.PaillierKeyPair.setKeyPool(pool);
+        Paillier.PaillierPrivateKeyring keyring = new Paillier.PaillierPrivateKeyring();
+        Paillier.PaillierKeyPair keyPair = Paillier.PaillierKeyPair.generate(keyring, keyLength);
+        Paillier.PaillierKeyPair.setKeyPool(null);
+
+        // the file is rewritten before take() returns, a crash right after it cannot hand the pair out again
+        Path crash = Files.createTempFile("paillier-key-pool-crash", ".bin");
+        Files.copy(file, crash, StandardCopyOption.REPLACE_EXISTING);
+        PaillierKeyPool crashed = new PaillierKeyPool(crash, "passphrase".toCharArray(), 2, keyLength);
+        for (int i = crashed.depth(keyLength); i > 0; i--) {
+            assertTrue(!crashed.take(keyLength).publicKey.n.equals(keyPair.publicKey.n));
+        }
+        crashed.shutdown();
+        Files.delete(crash);
+        pool.shutdown();
+
+        assertEquals(pool.getHits(), 1L);
+        assertEquals(keyring.get(keyPair.publicKey).decrypt(keyPair.publicKey.encrypt(42)), BigInteger.valueOf(42));
+
+        PaillierKeyPool reloaded = new PaillierKeyPool(file, "passphrase".toCharArray(), 2, keyLength);
+        assertTrue(reloaded.depth(keyLength) >= 1);
+        Paillier.PaillierKeyPair stored = reloaded.take(keyLength);
+        reloaded.shutdown();
+        assertTrue(!stored.publicKey.n.equals(keyPair.publicKey.n));
+
+        try {
+            new PaillierKeyPool(file, "wrong".toCharArray(), 2, keyLength);
+            fail("wrong passphrase accepted");
+        } catch (Util.ValueErrorException ignored) {
+            // expected
+        }
+        Files.delete(file);
+
+        // a pair that cannot be removed from the file is not handed out
+        Path directory = Files.createTempDirectory("paillier-key-pool");
+        PaillierKeyPool unwritable = new PaillierKeyPool(directory.resolve("pool.bin"), "passphrase".toCharArray(), 1,
+                keyLength);
+        while (unwritable.depth(keyLength) < 1) {
+            Thread.sleep(10);
+        }
+        while (Files.exists(directory)) {
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path path : files.toArray(Path[]::new)) {
+                    Files.deleteIfExists(path);
+                }
+                Files.deleteIfExists(directory);
+            } catch (IOException ignored) {
+                // a background write raced the delete
+            }
+        }
+        try {
+            unwritable.take(keyLength);
+            fail("failed write of the pool file not reported");
+        } catch (Util.IOErrorException ignored) {
+            // expected
+        }
+        assertEquals(unwritable.depth(keyLength), 1);
+        assertEquals(unwritable.getHits(), 0L);
+        unwritable.shutdown();
+    }
+
+    /**
+     * todo Test montgomeryTest
+     *
+     * @param keyLength keypair length
+     */
+    @Test(description = "Montgomery ciphertext arithmetic test", dataProvider = "keyLength")
+    public void montgomeryTest(int keyLength) {
+        Paillier.PaillierKeyPair keyPair = Paillier.PaillierKeyPair.generate(keyLength);
+
+        BigInteger expected = BigInteger.ZERO;
+        Paillier.EncryptedNumber sum = keyPair.publicKey.encrypt(0);
+        Paillier.EncryptedNumber montgomerySum = sum.toMontgomery();
+        // encrypted additions are deterministic, scalar additions encrypt the scalar with a fresh obfuscator
+        assertEquals(montgomerySum.add(sum).ciphertext(false), sum.add(sum).ciphertext(false));
+        for (int i = 0; i < 32; i++) {
+            BigInteger m = randomInt(BigInteger.valueOf(keyLength));
+            Paillier.EncryptedNumber c = keyPair.publicKey.encrypt(m);
+            if (i % 4 == 3) {
+                expected = expected.subtract(m).add(BigInteger.valueOf(i));
+                sum = sum.subtract(c).add(i);
+                montgomerySum = montgomerySum.subtract(c).add(i);
+            } else {
+                expected = expected.add(m);
+                sum = sum.add(c);
+                montgomerySum = montgomerySum.add(c.toMontgomery());
+            }
+        }
+
+        assertTrue(montgomerySum.isMontgomery());
+        assertEquals(keyPair.privateKey.decrypt(sum), expected);
+        // a difference is E(a) * E(b) ** -1 in either form, as the negation by multiplication gives it
+        Paillier.EncryptedNumber c1 = keyPair.publicKey.encrypt(7), c2 = keyPair.publicKey.encrypt(3);
+        Paillier.EncryptedNumber difference = c1.toMontgomery().subtract(c2.toMontgomery());
+        assertTrue(difference.isMontgomery());
+        assertEquals(difference.ciphertext(false), c1.subtract(c2).ciphertext(false));
+        assertEquals(c1.subtract(c2).ciphertext(false), c1.add(c2.multiply(-1)).ciphertext(false));
+        assertEquals(keyPair.privateKey.decrypt(difference), BigInteger.valueOf(4));
+        assertEquals(keyPair.privateKey.decrypt(c2.subtract(c1.toMontgomery())), BigInteger.valueOf(-4));
+        assertEquals(keyPair.privateKey.decrypt(montgomerySum), expected);
+        assertEquals(keyPair.privateKey.decrypt(montgomerySum.fromMontgomery()), expected);
+    }
+
+    /**
+     * todo Test linearCombinationTest
+     *
+     * @param keyLength keypair length
+     */
+    @Test(description = "Linear combination and dot product test", dataProvider = "keyLength")
+    public void linearCombinationTest(int keyLength) {
+        Paillier.PaillierKeyPair keyPair = Paillier.PaillierKeyPair.generate(keyLength);
+
+        Random rand = new Random();
+        // weights of both signs are split into two products by sign: 1 and 8 terms take the direct modPow, the ~32
+        // terms of each sign out of 64 take Straus (or the direct modPow below 32), 80 positive weights take Pippenger
+        for (int count : new int[]{1, 8, 64, 80}) {
+            Paillier.EncryptedNumber[] xs = new Paillier.EncryptedNumber[count];
+            Object[] weights = new Object[count];
+            BigInteger expected = BigInteger.ZERO;
+            for (int i = 0; i < count; i++) {
+                long x = rand.nextInt(), weight = rand.nextInt() >> (i % 24);
+                if (count == 80) {
+                    weight = Math.abs(weight) + 1;
+                }
+                xs[i] = keyPair.publicKey.encrypt(x);
+                weights[i] = weight;
+                expected = expected.add(BigInteger.valueOf(x).multiply(BigInteger.valueOf(weight)));
+            }
+
+            Paillier.EncryptedNumber combination = Paillier.EncryptedNumber.linearCombination(xs, weights);
+            assertEquals(keyPair.privateKey.decrypt(combination), expected);
+        }
+
+        double[] features = new double[48], weights = new double[48];
+        double expected = 0;
+        for (int i = 0; i < features.length; i++) {
+            features[i] = (rand.nextDouble() - 5e-1) * 1e2;
+            weights[i] = (rand.nextDouble() - 5e-1) * 2;
+            expected += features[i] * weights[i];
+        }
+
+        Paillier.EncryptedNumber dot = Paillier.EncryptedNumber.dot(keyPair.publicKey.encryptBatch(features), weights);
+        BigDecimal decrypted = new BigDecimal(keyPair.privateKey.decrypt(dot).toString());
+        assertTrue(decrypted.subtract(BigDecimal.valueOf(expected)).abs().compareTo(BigDecimal.valueOf(1e-6)) <= 0);
+    }
+
+    /**
+     * todo Test packedEncoderTest
+     *
+     * @param keyLength keypair length
+     */
+    @Test(description = "Packed encoding test", dataProvider = "keyLength")
+    public void packedEncoderTest(int keyLength) {
+        Paillier.PaillierKeyPair keyPair = Paillier.PaillierKeyPair.generate(keyLength);
+        PackedEncoder encoder = new PackedEncoder(keyPair.publicKey, 24, 8, -4);
+        assertEquals(encoder.slots, (keyLength - 1) / 32);
+
+        Random rand = new Random();
+        long[] a = new long[encoder.slots], b = new long[encoder.slots];
+        for (int i = 0; i < encoder.slots; i++) {
+            a[i] = rand.nextInt(1 << 24) - (1 << 23);
+            b[i] = rand.nextInt(1 << 24) - (1 << 23);
+        }
+        PackedEncoder.PackedEncryptedNumber packedA = encoder.encrypt(a), packedB = encoder.encrypt(b);
+
+        double[] sum = encoder.decrypt(keyPair.privateKey, packedA.add(packedB));
+        double[] difference = encoder.decrypt(keyPair.privateKey, packedA.subtract(packedB));
+        double[] combination = encoder.decrypt(keyPair.privateKey, packedA.multiply(3).add(packedB.multiply(-2)));
+        for (int i = 0; i < encoder.slots; i++) {
+            assertEquals(sum[i], Math.scalb((double) (a[i] + b[i]), -16));
+            assertEquals(difference[i], Math.scalb((double) (a[i] - b[i]), -16));
+            assertEquals(combination[i], Math.scalb((double) (3 * a[i] - 2 * b[i]), -16));
+        }
+
+        double[] values = new double[encoder.slots * 2 + 1];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = Math.scalb((double) (rand.nextInt(1 << 20) - (1 << 19)), -16);
+        }
+        List<PackedEncoder.PackedEncryptedNumber> packs = encoder.encryptAll(values);
+        assertEquals(packs.size(), 3);
+        double[] decrypted = encoder.decryptAll(keyPair.privateKey, packs);
+        for (int i = 0; i < values.length; i++) {
+            assertEquals(decrypted[i], values[i]);
+        }
+
+        try {
+            packedA.multiply(1 << 8);
+            fail("guard bits overflow not detected");
+        } catch (Util.OverflowErrorException ignored) {
+            // expected
+        }
+
+        for (int count : new int[]{0, -1, encoder.slots + 1}) {
+            try {
+                new PackedEncoder.PackedEncryptedNumber(encoder, packedA.ciphertext(), count, 1);
+                fail("value count out of range not detected");
+            } catch (Util.ValueErrorException ignored) {
+                // expected
+            }
+        }
+    }
+
+    /**
+     * todo Test encodeTest
+     *
+     * @param keyLength keypair length
+     */
+    @Test(description = "Primitive encoding test", dataProvider = "keyLength")
+    public void encodeTest(int keyLength) {
+        Paillier.PaillierKeyPair keyPair = Paillier.PaillierKeyPair.generate(keyLength);
+
+        Random rand = new Random();
+        for (int i = 0; i < 256; i++) {
+            double scale = FastMath.pow(10., rand.nextInt(16) - 8);
+            double value = i % 4 == 0 ? FastMath.rint(rand.nextGaussian() * scale) : rand.nextGaussian() * scale;
+            EncodedNumber encoded = EncodedNumber.encode(keyPair.publicKey, value, null, null);
+            BigInteger[] legacy = legacyEncode(keyPair.publicKey, value);
+
+            assertEquals(encoded.encoding, legacy[0]);
+            assertEquals(encoded.exponent, legacy[1]);
+        }
+
+        for (int exponent = -16; exponent <= 0; exponent++) {
+            long value = rand.nextInt();
+            EncodedNumber encoded = EncodedNumber.encode(keyPair.publicKey, value, exponent);
+            EncodedNumber legacy = EncodedNumber.encode(keyPair.publicKey, BigInteger.valueOf(value), null, exponent);
+
+            assertEquals(encoded.encoding, legacy.encoding);
+            assertEquals(encoded.exponent, legacy.exponent);
+        }
+    }
+
+    /**
+     * todo Test alignTest
+     *
+     * @param keyLength keypair length
+     */
+    @Test(description = "Exact exponent alignment test", dataProvider = "keyLength")
+    public void alignTest(int keyLength) {
+        Paillier.PaillierKeyPair keyPair = Paillier.PaillierKeyPair.generate(keyLength);
+        BigInteger n = keyPair.publicKey.n;
+
+        long[] values = {3, -5, 7, 11};
+        int[] exponents = {0, -2, -12, -5};
+        List<Paillier.EncryptedNumber> numbers = new ArrayList<>();
+        for (int i = 0; i < values.length; i++) {
+            numbers.add(keyPair.publicKey.encrypt(EncodedNumber.encode(keyPair.publicKey, values[i], exponents[i])));
+        }
+
+        Paillier.EncryptedNumber sum = numbers.get(0);
+        for (int i = 1; i < numbers.size(); i++) {
+            sum = sum.add(numbers.get(i));
+        }
+        EncodedNumber decrypted = keyPair.privateKey.decryptEncoded(sum);
+        assertEquals(decrypted.exponent, BigInteger.valueOf(-12));
+        assertEquals(decrypted.encoding, BigInteger.valueOf(16).shiftLeft(48));
+
+        List<Paillier.EncryptedNumber> aligned = Paillier.EncryptedNumber.alignAll(numbers);
+        for (int i = 0; i < values.length; i++) {
+            BigInteger expected = BigInteger.valueOf(values[i]).shiftLeft(48).mod(n);
+            assertEquals(aligned.get(i).exponent, BigInteger.valueOf(-12));
+            assertEquals(keyPair.privateKey.decryptEncoded(aligned.get(i)).encoding, expected);
+        }
+        assertTrue(Paillier.EncryptedNumber.alignAll(new ArrayList<>()).isEmpty());
+
+        EncodedNumber one = EncodedNumber.encode(keyPair.publicKey, 1L, 0);
+        assertEquals(one.decreaseExponentTo(BigInteger.valueOf(-20)).encoding, BigInteger.ONE.shiftLeft(80));
+    }
+
+    /**
+     * todo Test intExponentTest
+     *
+     * @param keyLength keypair length
+     */
+    @Test(description = "Int exponent test", dataProvider = "keyLength")
+    public void intExponentTest(int keyLength) {
+        Paillier.PaillierKeyPair keyPair = Paillier.PaillierKeyPair.generate(keyLength);
+
+        Paillier.EncryptedNumber c1 = keyPair.publicKey.encrypt(EncodedNumber.encode(keyPair.publicKey, 3L, -3));
+        Paillier.EncryptedNumber c2 = keyPair.publicKey.encrypt(EncodedNumber.encode(keyPair.publicKey, 5L, -1));
+        Paillier.EncryptedNumber product = c1.add(c2).multiply(EncodedNumber.encode(keyPair.publicKey, 2L, -2));
+        assertEquals(product.getExponent(), -5);
+        assertEquals(product.exponent, BigInteger.valueOf(-5));
+        assertEquals(keyPair.privateKey.decryptEncoded(product).getExponent(), -5);
+        assertEquals(((BigDecimal) keyPair.privateKey.decrypt(product)).compareTo(BigDecimal.valueOf(16)), 0);
+        // the BigInteger view of a usual exponent is shared, not allocated per operation
+        assertTrue(c1.exponent == keyPair.publicKey.encrypt(EncodedNumber.encode(keyPair.publicKey, 7L, -3)).exponent);
+
+        Paillier.EncryptedNumber legacy = new Paillier.EncryptedNumber(keyPair.publicKey, c1.ciphertext(false), BigInteger.valueOf(-3));
+        assertEquals(keyPair.privateKey.decryptEncoded(legacy).encoding, BigInteger.valueOf(3 << 12));
+
+        // an assigned public exponent is what the arithmetic uses
+        legacy.exponent = BigInteger.valueOf(-2);
+        assertEquals(legacy.getExponent(), -2);
+        assertEquals(((BigDecimal) keyPair.privateKey.decrypt(legacy)).compareTo(BigDecimal.valueOf(48)), 0);
+        assertEquals(((BigDecimal) keyPair.privateKey.decrypt(legacy.add(c2))).compareTo(BigDecimal.valueOf(53)), 0);
+        EncodedNumber assigned = EncodedNumber.encode(keyPair.publicKey, 3L, -3);
+        assigned.exponent = BigInteger.ONE;
+        assertEquals(assigned.getExponent(), 1);
+        assertEquals(assigned.decode(), BigInteger.valueOf(3 << 16));
+        try {
+            new EncodedNumber(keyPair.publicKey, BigInteger.ONE, BigInteger.ONE.shiftLeft(40));
+            fail("exponent overflow not detected");
+        } catch (Util.OverflowErrorException ignored) {
+        }
+        try {
+            EncodedNumber tiny = new EncodedNumber(keyPair.publicKey, BigInteger.ONE, Integer.MIN_VALUE);
+            c1.multiply(tiny);
+            fail("exponent overflow not detected");
+        } catch (Util.OverflowErrorException ignored) {
+        }
+    }
+
+    /**
+     * todo Test arithmeticTest
+     *
+     * @param keyLength keypair length
+     */
+    @Test(description = "Modular arithmetic backend test", dataProvider = "keyLength")
+    public void arithmeticTest(int keyLength) {
+        ModArithmetic reference = ModArithmetic.of(BigIntegerArithmetic.NAME), limb = ModArithmetic.of(LimbArithmetic.NAME);
+        Random rand = new Random();
+        for (int i = 0; i < 16; i++) {
+            BigInteger modulus = new BigInteger(2 * keyLength - i, rand).setBit(0).setBit(2 * keyLength - i - 1);
+            BigInteger base = new BigInteger(2 * keyLength + 8, rand).subtract(BigInteger.ONE.shiftLeft(2 * keyLength));
+            BigInteger exponent = new BigInteger(keyLength, rand);
+            assertEquals(limb.modPow(base, exponent, modulus), reference.modPow(base, exponent, modulus));
+        }
+        BigInteger modulus = BigInteger.ONE.shiftLeft(keyLength).subtract(BigInteger.ONE);
+        assertEquals(limb.modPow(BigInteger.TEN, BigInteger.ZERO, modulus), BigInteger.ONE);
+        assertEquals(limb.modPow(BigInteger.ZERO, BigInteger.TEN, modulus), BigInteger.ZERO);
+        assertEquals(limb.modPow(modulus.subtract(BigInteger.ONE), BigInteger.TWO, modulus), BigInteger.ONE);
+        assertEquals(limb.modPow(BigInteger.TEN, BigInteger.TEN, modulus.add(BigInteger.ONE)),
+                BigInteger.TEN.modPow(BigInteger.TEN, modulus.add(BigInteger.ONE)));
+
+        ModArithmetic previous = Util.getArithmetic();
+        Util.setArithmetic(limb);
+        try {
+            Paillier.PaillierKeyPair keyPair = Paillier.PaillierKeyPair.generate(keyLength);
+            BigInteger m1 = randomInt(BigInteger.valueOf(keyLength)), m2 = randomInt(BigInteger.valueOf(keyLength));
+            Paillier.EncryptedNumber sum = keyPair.publicKey.encrypt(m1).add(keyPair.publicKey.encrypt(m2)).multiply(-3);
+            assertEquals(keyPair.privateKey.decrypt(sum), m1.add(m2).multiply(BigInteger.valueOf(-3)));
+        } finally {
+            Util.setArithmetic(previous);
+        }
+
+        try {
+            ModArithmetic.of("cn.shine.phe.NoSuchArithmetic");
+            fail("unknown backend accepted");
+        } catch (Util.ValueErrorException ignored) {
+        }
+    }
+
+    /**
+     * todo Test randomnessTest
+     *
+     * @param keyLength keypair length
+     */
+    @Test(description = "Randomness provider test", dataProvider = "keyLength")
+    public void randomnessTest(int keyLength) {
+        Paillier.PaillierKeyPair keyPair = Paillier.PaillierKeyPair.generate(keyLength);
+
+        BigInteger[] masks = RandomnessProvider.getDefault().nextMasks(keyLength / 2 + 3, 64);
+        for (BigInteger mask : masks) {
+            assertTrue(mask.signum() > 0 && mask.bitLength() <= keyLength / 2 + 3);
+        }
+        for (int i = 0; i < 64; i++) {
+            BigInteger r = keyPair.publicKey.getRandomLtN();
+            assertTrue(r.signum() > 0 && r.compareTo(keyPair.publicKey.n) < 0);
+        }
+
+        RandomnessProvider previous = RandomnessProvider.getDefault();
+        try {
+            BigInteger m = randomInt(BigInteger.valueOf(keyLength));
+            RandomnessProvider.setDefault(RandomnessProvider.seeded(keyLength));
+            BigInteger c1 = keyPair.publicKey.encrypt(m).ciphertext(true);
+            BigInteger[] masks1 = RandomnessProvider.getDefault().nextMasks(20, 8);
+            RandomnessProvider.setDefault(RandomnessProvider.seeded(keyLength));
+            BigInteger c2 = keyPair.publicKey.encrypt(m).ciphertext(true);
+            BigInteger[] masks2 = RandomnessProvider.getDefault().nextMasks(20, 8);
+
+            assertTrue(RandomnessProvider.getDefault().isSeeded());
+            assertEquals(c1, c2);
+            assertTrue(Arrays.equals(masks1, masks2));
+            assertEquals(keyPair.privateKey.decrypt(keyPair.publicKey.encrypt(m)), m);
+        } finally {
+            RandomnessProvider.setDefault(previous);
+        }
+    }
+
+    /**
+     * todo Private Function legacyEncode(PaillierPublicKey, double): the string and BigDecimal based encoding
+     *
+     * @param publicKey the public key
+     * @param value     the value
+     * @return BigInteger[] -> {encoding, exponent}
+     */
+    private @NotNull BigInteger[] legacyEncode(Paillier.PaillierPublicKey publicKey, double value) {
+        Object scalar = Util.wrapBig(value);
+        int exponent = 0;
+        if (scalar instanceof BigDecimal) {
+            long bits = Double.doubleToLongBits(((BigDecimal) scalar).doubleValue());
+            int binFltExponent = (int) ((bits >> 52) & 0x7ffL) - 1022;
+            exponent = Math.floorDiv(binFltExponent - 52, 4);
+        }
+        BigDecimal decimal = scalar instanceof BigDecimal ? (BigDecimal) scalar : new BigDecimal((BigInteger) scalar);
+        BigInteger intRep = decimal.multiply(BigDecimal.valueOf(FastMath.pow(16, -exponent)))
+                .setScale(0, RoundingMode.HALF_UP).toBigInteger();
+
+        return new BigInteger[]{intRep.mod(publicKey.n), BigInteger.valueOf(exponent)};
+    }
+
     /**
      * todo Private Function randomInt(BigInteger): generate random BigInteger
      *
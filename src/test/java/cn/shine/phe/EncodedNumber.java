@@ -36,15 +36,56 @@ public class EncodedNumber {
      * MANTISSA_BITS: Double type mantissa bits -> 52
      */
     public static final Integer MANTISSA_BITS = 52;
+    /**
+     * FACTOR_CACHE: BASE ** k is cached for k in [-FACTOR_CACHE, FACTOR_CACHE]
+     */
+    private static final int FACTOR_CACHE = 64;
+    /**
+     * FACTORS:       BASE ** k, in the decimal form the encoder has always multiplied with
+     * EXACT_FACTORS: FACTORS[k] is exactly 2 ** (LOG2_BASE * k), so scaling can be a binary shift
+     */
+    private static final BigDecimal[] FACTORS = new BigDecimal[2 * FACTOR_CACHE + 1];
+    private static final boolean[] EXACT_FACTORS = new boolean[2 * FACTOR_CACHE + 1];
+
+    static {
+        for (int k = -FACTOR_CACHE; k <= FACTOR_CACHE; k++) {
+            double power = FastMath.pow(BASE, k);
+            FACTORS[k + FACTOR_CACHE] = BigDecimal.valueOf(power);
+            EXACT_FACTORS[k + FACTOR_CACHE] = power == Math.scalb(1., LOG2_BASE * k) &&
+                    BigDecimal.valueOf(power).compareTo(new BigDecimal(power)) == 0;
+        }
+    }
+
+    /**
+     * EXPONENT_CACHE: exponents in [-EXPONENT_CACHE, EXPONENT_CACHE] share their BigInteger form
+     */
+    private static final int EXPONENT_CACHE = 1024;
+    private static final BigInteger[] EXPONENTS = new BigInteger[2 * EXPONENT_CACHE + 1];
+
+    static {
+        for (int k = -EXPONENT_CACHE; k <= EXPONENT_CACHE; k++) {
+            EXPONENTS[k + EXPONENT_CACHE] = BigInteger.valueOf(k);
+        }
+    }
     /**
      * publicKey: the public key of ciphertext
      */
     public Paillier.PaillierPublicKey publicKey;
     /**
      * encoding:  the ciphertext encoding
-     * exponent:  ciphertext exponent
      */
-    public BigInteger encoding, exponent;
+    public BigInteger encoding;
+    /**
+     * exponent:  ciphertext exponent, the BigInteger view of intExponent; an assigned value is picked up by
+     *            intExponent()
+     */
+    public BigInteger exponent;
+    /**
+     * intExponent:   ciphertext exponent, the one the arithmetic works on
+     * intExponentOf: the exponent intExponent was derived from
+     */
+    private final int intExponent;
+    private final BigInteger intExponentOf;
 
     /**
      * todo Public Function EncodedNumber(PaillierPublicKey, BigInteger, BigInteger): Class EncodedNumber init
@@ -52,11 +93,47 @@ public class EncodedNumber {
      * @param publicKey the public key of ciphertext
      * @param encoding  ciphertext encoding
      * @param exponent  ciphertext exponent
+     * @throws Util.OverflowErrorException if exponent does not fit in an int
      */
-    public EncodedNumber(Paillier.PaillierPublicKey publicKey, BigInteger encoding, BigInteger exponent) {
+    public EncodedNumber(Paillier.PaillierPublicKey publicKey, BigInteger encoding, BigInteger exponent)
+            throws Util.OverflowErrorException {
+        this(publicKey, encoding, toExponent(exponent));
+    }
+
+    /**
+     * todo Public Function EncodedNumber(PaillierPublicKey, BigInteger, int): Class EncodedNumber init
+     *
+     * @param publicKey the public key of ciphertext
+     * @param encoding  ciphertext encoding
+     * @param exponent  ciphertext exponent
+     */
+    public EncodedNumber(Paillier.PaillierPublicKey publicKey, BigInteger encoding, int exponent) {
         this.publicKey = publicKey;
         this.encoding = encoding;
-        this.exponent = exponent;
+        this.exponent = exponentOf(exponent);
+        this.intExponent = exponent;
+        this.intExponentOf = this.exponent;
+    }
+
+    /**
+     * todo Public Function getExponent(): get the exponent without the BigInteger
+     *
+     * @return int
+     */
+    public int getExponent() {
+        return this.intExponent();
+    }
+
+    /**
+     * todo Function intExponent(): the int exponent, re-derived if the public exponent field was assigned
+     *
+     * @return int
+     * @throws Util.OverflowErrorException if an assigned exponent does not fit in an int
+     */
+    int intExponent() {
+        BigInteger exponent = this.exponent;
+
+        return exponent == this.intExponentOf ? this.intExponent : toExponent(exponent);
     }
 
     /**
@@ -96,53 +173,267 @@ public class EncodedNumber {
      * @throws Util.TypeErrorException  if class of scalar is not BigInteger or BigDecimal
      */
     public static @NotNull EncodedNumber encode(@NotNull Paillier.PaillierPublicKey publicKey, Object scalar, Double precision, Integer maxExponent) throws Util.ValueErrorException, Util.TypeErrorException {
+        if (scalar instanceof Double) {
+            return encode(publicKey, (double) (Double) scalar, precision, maxExponent);
+        } else if (scalar instanceof Integer || scalar instanceof Long) {
+            int exponent = precision == null ? 0 : precisionExponent(precision);
+            if (maxExponent != null) {
+                exponent = FastMath.min(maxExponent, exponent);
+            }
+            return encode(publicKey, ((Number) scalar).longValue(), exponent);
+        }
+
         scalar = Util.wrapBig(scalar);
-        BigInteger preExponent;
+        int preExponent;
         if (precision == null) {
             if (scalar instanceof BigInteger) {
-                preExponent = BigInteger.ZERO;
+                preExponent = 0;
             } else if (scalar instanceof BigDecimal) {
-                BigDecimal scalarBigDecimal = (BigDecimal) scalar;
-                // get scalar exp
-                Integer binFltExponent = Util.Frexp.frexp(scalarBigDecimal.doubleValue()).exponent;
-                BigDecimal binLsbExponent = BigDecimal.valueOf(binFltExponent - MANTISSA_BITS);
                 // number with exponent <- floor(exp / log_2(16))
-                BigDecimal exponentBigDecimal = binLsbExponent.divide(BigDecimal.valueOf(LOG2_BASE), RoundingMode.FLOOR);
-                preExponent = exponentBigDecimal.toBigInteger();
+                preExponent = defaultExponent(((BigDecimal) scalar).doubleValue());
             } else {
                 throw new Util.TypeErrorException(String.format("Don't know the precision of type %s", scalar.getClass()));
             }
         } else {
-            preExponent = BigDecimal.valueOf(FastMath.floor(FastMath.log(precision, BASE))).toBigInteger();
+            preExponent = precisionExponent(precision);
         }
 
-        BigInteger exponent;
+        int exponent;
         if (maxExponent == null) {
             exponent = preExponent;
         } else {
-            exponent = BigInteger.valueOf(FastMath.min(maxExponent, preExponent.intValue()));
+            exponent = FastMath.min(maxExponent, preExponent);
         }
 
         // convert double expand to int by multiplication and precision
         BigInteger intRep;
-        BigDecimal intRepBigDecimal;
         if (scalar instanceof BigInteger) {
-            BigDecimal turnScalar = new BigDecimal((BigInteger) scalar);
-            intRepBigDecimal = turnScalar.multiply(BigDecimal.valueOf(FastMath.pow(BASE, -exponent.intValue())));
+            intRep = scaleInteger((BigInteger) scalar, exponent);
         } else if (scalar instanceof BigDecimal) {
-            BigDecimal scalarBigDecimal = ((BigDecimal) scalar);
-            intRepBigDecimal = scalarBigDecimal.multiply(BigDecimal.valueOf(FastMath.pow(BASE, -exponent.intValue())));
+            intRep = scaleDecimal((BigDecimal) scalar, exponent);
         } else {
             throw new Util.TypeErrorException(String.format("Don't know the precision of type %s", scalar.getClass()));
         }
-        intRep = intRepBigDecimal.setScale(0, RoundingMode.HALF_UP).toBigInteger();
 
+        return new EncodedNumber(publicKey, checkIntRep(publicKey, intRep).mod(publicKey.n), exponent);
+    }
+
+    /**
+     * todo Public Static Function encode(PaillierPublicKey, long, int): integer encoding at an exponent
+     * <p>
+     * Same result as encode(publicKey, BigInteger.valueOf(scalar), null, exponent) for exponent &lt;= 0,
+     * without BigDecimal whenever BASE ** -exponent is exact.
+     *
+     * @param publicKey the public key of ciphertext
+     * @param scalar    scalar to be encoded
+     * @param exponent  encoding exponent
+     * @return EncodedNumber
+     * @throws Util.ValueErrorException if some value is lager than publicKey.maxInt
+     */
+    public static @NotNull EncodedNumber encode(@NotNull Paillier.PaillierPublicKey publicKey, long scalar, int exponent) throws Util.ValueErrorException {
+        BigInteger intRep = checkIntRep(publicKey, scaleInteger(scalar, exponent));
+
+        return new EncodedNumber(publicKey, intRep.mod(publicKey.n), exponent);
+    }
+
+    /**
+     * todo Public Static Function encode(PaillierPublicKey, double, Double, Integer): float encoding
+     * <p>
+     * Same result as encode(publicKey, Double.valueOf(scalar), precision, maxExponent). Integral floats are scaled
+     * as integers; other floats keep the decimal value of Double.toString the encoder has always scaled, so they
+     * take one BigDecimal multiplication with a cached power of BASE.
+     *
+     * @param publicKey   the public key of ciphertext
+     * @param scalar      scalar to be encoded
+     * @param precision   encoding precision
+     * @param maxExponent encoding maximum exponent
+     * @return EncodedNumber
+     * @throws Util.ValueErrorException if scalar is not finite or is lager than publicKey.maxInt
+     */
+    public static @NotNull EncodedNumber encode(@NotNull Paillier.PaillierPublicKey publicKey, double scalar, Double precision, Integer maxExponent) throws Util.ValueErrorException {
+        if (Double.isNaN(scalar) || Double.isInfinite(scalar)) {
+            throw new Util.ValueErrorException(String.format("Cannot encode %s", scalar));
+        }
+        // Util.wrapBig turns x.0 into BigInteger, Double.toString prints x.0 for integers below 10 ** 7
+        boolean integral = scalar == FastMath.rint(scalar) && FastMath.abs(scalar) < 1e7;
+
+        int exponent;
+        if (precision != null) {
+            exponent = precisionExponent(precision);
+        } else {
+            exponent = integral ? 0 : defaultExponent(scalar);
+        }
+        if (maxExponent != null) {
+            exponent = FastMath.min(maxExponent, exponent);
+        }
+
+        BigInteger intRep = integral ? scaleInteger((long) scalar, exponent) : scaleDecimal(BigDecimal.valueOf(scalar), exponent);
+
+        return new EncodedNumber(publicKey, checkIntRep(publicKey, intRep).mod(publicKey.n), exponent);
+    }
+
+    /**
+     * todo Static Function factor(int): BASE ** k as the encoder multiplies with it
+     *
+     * @param k the power
+     * @return BigDecimal
+     */
+    static @NotNull BigDecimal factor(int k) {
+        if (-FACTOR_CACHE <= k && k <= FACTOR_CACHE) {
+            return FACTORS[k + FACTOR_CACHE];
+        }
+
+        return BigDecimal.valueOf(FastMath.pow(BASE, k));
+    }
+
+    /**
+     * todo Private Static Function checkIntRep(PaillierPublicKey, BigInteger): check intRep is within +/- maxInt
+     *
+     * @param publicKey the public key of ciphertext
+     * @param intRep    the integer representation
+     * @return BigInteger intRep
+     * @throws Util.ValueErrorException if intRep is lager than publicKey.maxInt
+     */
+    private static @NotNull BigInteger checkIntRep(@NotNull Paillier.PaillierPublicKey publicKey, @NotNull BigInteger intRep) throws Util.ValueErrorException {
         if (intRep.abs().compareTo(publicKey.maxInt) > 0) {
             String exception = "Integer needs to be within +/- %s but got %s";
             throw new Util.ValueErrorException(String.format(exception, publicKey.maxInt, intRep.abs()));
         }
 
-        return new EncodedNumber(publicKey, intRep.mod(publicKey.n), exponent);
+        return intRep;
+    }
+
+    /**
+     * todo Private Static Function scaleInteger(long, int): round(scalar * BASE ** -exponent) half up
+     *
+     * @param scalar   the integer
+     * @param exponent the exponent
+     * @return BigInteger
+     */
+    private static @NotNull BigInteger scaleInteger(long scalar, int exponent) {
+        if (isExactFactor(-exponent)) {
+            return scale(scalar, -LOG2_BASE * exponent);
+        }
+
+        return scaleDecimal(BigDecimal.valueOf(scalar), exponent);
+    }
+
+    /**
+     * todo Private Static Function scaleInteger(BigInteger, int): round(scalar * BASE ** -exponent) half up
+     *
+     * @param scalar   the integer
+     * @param exponent the exponent
+     * @return BigInteger
+     */
+    private static @NotNull BigInteger scaleInteger(@NotNull BigInteger scalar, int exponent) {
+        if (scalar.bitLength() < Long.SIZE - 1) {
+            return scaleInteger(scalar.longValue(), exponent);
+        } else if (!isExactFactor(-exponent)) {
+            return scaleDecimal(new BigDecimal(scalar), exponent);
+        } else if (exponent <= 0) {
+            return scalar.shiftLeft(-LOG2_BASE * exponent);
+        }
+        int right = LOG2_BASE * exponent;
+        BigInteger rounded = scalar.abs().add(BigInteger.ONE.shiftLeft(right - 1)).shiftRight(right);
+
+        return scalar.signum() < 0 ? rounded.negate() : rounded;
+    }
+
+    /**
+     * todo Private Static Function scaleDecimal(BigDecimal, int): round(scalar * BASE ** -exponent) half up
+     *
+     * @param scalar   the decimal
+     * @param exponent the exponent
+     * @return BigInteger
+     */
+    private static @NotNull BigInteger scaleDecimal(@NotNull BigDecimal scalar, int exponent) {
+        return scalar.multiply(factor(-exponent)).setScale(0, RoundingMode.HALF_UP).toBigInteger();
+    }
+
+    /**
+     * todo Private Static Function isExactFactor(int): BASE ** k is cached and exact
+     *
+     * @param k the power
+     * @return boolean
+     */
+    private static boolean isExactFactor(int k) {
+        return -FACTOR_CACHE <= k && k <= FACTOR_CACHE && EXACT_FACTORS[k + FACTOR_CACHE];
+    }
+
+    /**
+     * todo Static Function defaultExponent(double): the exponent encode() picks for a float without precision
+     *
+     * @param value a finite float
+     * @return int floor((exp - MANTISSA_BITS) / LOG2_BASE), exp of frexp(value)
+     */
+    static int defaultExponent(double value) {
+        // Math.getExponent + 1 is the frexp exponent, also for zero and subnormal numbers
+        int binFltExponent = Math.getExponent(value) + 1;
+
+        return Math.floorDiv(binFltExponent - MANTISSA_BITS, LOG2_BASE);
+    }
+
+    /**
+     * todo Static Function precisionExponent(double): the exponent encode() picks for a precision
+     *
+     * @param precision encoding precision
+     * @return int
+     */
+    static int precisionExponent(double precision) {
+        return BigDecimal.valueOf(FastMath.floor(FastMath.log(precision, BASE))).intValue();
+    }
+
+    /**
+     * todo Static Function scaleFloat(double, int): round(value * BASE ** -exponent) on the binary value
+     *
+     * @param value    a finite float
+     * @param exponent the exponent
+     * @return BigInteger rounded half up
+     * @throws Util.ValueErrorException if value is not finite
+     */
+    static @NotNull BigInteger scaleFloat(double value, int exponent) throws Util.ValueErrorException {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            throw new Util.ValueErrorException(String.format("Cannot encode %s", value));
+        }
+        // value = mantissa * 2 ** binExponent exactly
+        long bits = Double.doubleToRawLongBits(value);
+        int biased = (int) ((bits >> MANTISSA_BITS) & 0x7ffL);
+        long mantissa = bits & 0xfffffffffffffL;
+        int binExponent;
+        if (biased == 0) {
+            binExponent = -1074;
+        } else {
+            mantissa |= 0x10_000_000_000_000L;
+            binExponent = biased - 1075;
+        }
+        if (value < 0) {
+            mantissa = -mantissa;
+        }
+
+        return scale(mantissa, binExponent - LOG2_BASE * exponent);
+    }
+
+    /**
+     * todo Static Function scale(long, int): round(mantissa * 2 ** shift) half up
+     *
+     * @param mantissa the mantissa
+     * @param shift    the binary shift
+     * @return BigInteger
+     */
+    static @NotNull BigInteger scale(long mantissa, int shift) {
+        if (shift >= 0) {
+            return BigInteger.valueOf(mantissa).shiftLeft(shift);
+        }
+        int right = -shift;
+        long limit = 1L << (Long.SIZE - 2);
+        if (right >= Long.SIZE - 1 || mantissa > limit || mantissa < -limit) {
+            BigInteger magnitude = BigInteger.valueOf(mantissa).abs();
+            BigInteger rounded = magnitude.add(BigInteger.ONE.shiftLeft(right - 1)).shiftRight(right);
+            return mantissa < 0 ? rounded.negate() : rounded;
+        }
+        long rounded = (Math.abs(mantissa) + (1L << (right - 1))) >>> right;
+
+        return BigInteger.valueOf(mantissa < 0 ? -rounded : rounded);
     }
 
     /**
@@ -165,14 +456,14 @@ public class EncodedNumber {
             throw new Util.OverflowErrorException("Overflow detected in decrypted number");
         }
 
-        if (this.exponent.compareTo(BigInteger.ZERO) >= 0) {
-            BigInteger decoding = BigDecimal.valueOf(FastMath.pow(BASE, this.exponent.intValue())).toBigInteger();
+        if (this.intExponent() >= 0) {
+            BigInteger decoding = BigDecimal.valueOf(FastMath.pow(BASE, this.intExponent())).toBigInteger();
             // double to int by multiplication
             return mantissa.multiply(decoding);
         } else {
             try {
                 // double to double by division
-                return BigDecimal.valueOf(mantissa.doubleValue() / FastMath.pow(BASE, -this.exponent.intValue()));
+                return BigDecimal.valueOf(mantissa.doubleValue() / FastMath.pow(BASE, -this.intExponent()));
             } catch (Exception e) {
                 throw new Util.OverflowErrorException(String.format("decoded result too large for a float: from %s", e));
             }
@@ -192,9 +483,89 @@ public class EncodedNumber {
             throw new Util.ValueErrorException(String.format(exception, newExp, this.exponent));
         }
 
-        BigDecimal factor = BigDecimal.valueOf(FastMath.pow(BASE, this.exponent.subtract(newExp).intValue()));
-        BigInteger newEnc = Util.mulMod(this.encoding, factor.toBigInteger(), this.publicKey.n);
+        return decreaseExponentTo(toExponent(newExp));
+    }
+
+    /**
+     * todo Public Function decreaseExponentTo(int): decrease exponent
+     *
+     * @param newExp new exponent
+     * @return EncodeNumber
+     * @throws Util.ValueErrorException    if newExp > this.exponent
+     * @throws Util.OverflowErrorException if the exponent difference does not fit in an int
+     */
+    public EncodedNumber decreaseExponentTo(int newExp) throws Util.ValueErrorException, Util.OverflowErrorException {
+        if (newExp > this.intExponent()) {
+            String exception = "New exponent %s should be more negative than old exponent %s";
+            throw new Util.ValueErrorException(String.format(exception, newExp, this.intExponent()));
+        }
+
+        BigInteger factor = this.publicKey.getScaleFactor(subtractExponents(this.intExponent(), newExp));
+        BigInteger newEnc = Util.mulMod(this.encoding, factor, this.publicKey.n);
 
         return new EncodedNumber(this.publicKey, newEnc, newExp);
     }
+
+    /**
+     * todo Static Function exponentOf(int): the BigInteger form of an exponent, shared for the usual ones
+     *
+     * @param exponent the exponent
+     * @return BigInteger
+     */
+    static @NotNull BigInteger exponentOf(int exponent) {
+        if (-EXPONENT_CACHE <= exponent && exponent <= EXPONENT_CACHE) {
+            return EXPONENTS[exponent + EXPONENT_CACHE];
+        }
+
+        return BigInteger.valueOf(exponent);
+    }
+
+    /**
+     * todo Static Function toExponent(BigInteger): the int form of an exponent
+     *
+     * @param exponent the exponent
+     * @return int
+     * @throws Util.OverflowErrorException if exponent does not fit in an int
+     */
+    static int toExponent(@NotNull BigInteger exponent) throws Util.OverflowErrorException {
+        if (exponent.bitLength() >= Integer.SIZE) {
+            throw new Util.OverflowErrorException(String.format("exponent %s does not fit in an int", exponent));
+        }
+
+        return exponent.intValue();
+    }
+
+    /**
+     * todo Static Function addExponents(int, int): a + b
+     *
+     * @param a exponent a
+     * @param b exponent b
+     * @return int
+     * @throws Util.OverflowErrorException if the sum does not fit in an int
+     */
+    static int addExponents(int a, int b) throws Util.OverflowErrorException {
+        int sum = a + b;
+        if (((a ^ sum) & (b ^ sum)) < 0) {
+            throw new Util.OverflowErrorException(String.format("exponent %s + %s does not fit in an int", a, b));
+        }
+
+        return sum;
+    }
+
+    /**
+     * todo Static Function subtractExponents(int, int): a - b
+     *
+     * @param a exponent a
+     * @param b exponent b
+     * @return int
+     * @throws Util.OverflowErrorException if the difference does not fit in an int
+     */
+    static int subtractExponents(int a, int b) throws Util.OverflowErrorException {
+        int difference = a - b;
+        if (((a ^ b) & (a ^ difference)) < 0) {
+            throw new Util.OverflowErrorException(String.format("exponent %s - %s does not fit in an int", a, b));
+        }
+
+        return difference;
+    }
 }
@@ -15,7 +15,6 @@ import org.jetbrains.annotations.NotNull;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.Objects;
-import java.util.Random;
 
 /**
  * todo Public Class Util: the util of phe project
@@ -23,6 +22,11 @@ import java.util.Random;
  * @author Zhan Shi
  */
 public class Util {
+    /**
+     * arithmetic: the modular arithmetic backend, chosen by ModArithmetic.PROPERTY on first use
+     */
+    private static volatile ModArithmetic arithmetic;
+
     /**
      * todo Public Static getRandBits(Integer): get the random bits with n length
      *
@@ -30,15 +34,10 @@ public class Util {
      * @return BigInteger
      */
     public static @NotNull BigInteger getRandBits(Integer n) {
-        StringBuilder bits = new StringBuilder();
-        for (int i = 0; i < n; i++) {
-            Integer bit = new Random().nextInt(2);
-            bits.append(bit);
-        }
-        // set the (n-1)th position to 1
-        bits.replace(n - 2, n - 1, "1");
+        BigInteger bits = RandomnessProvider.getDefault().nextBits(n);
 
-        return new BigInteger(String.valueOf(bits), 2);
+        // set the (n-1)th of the n digits, bit 1, to 1
+        return bits.setBit(1);
     }
 
     /**
@@ -66,7 +65,7 @@ public class Util {
      * @throws ZeroDivisionErrorException if a.modInverse(b) == 0
      */
     public static @NotNull BigInteger invert(@NotNull BigInteger a, BigInteger b) throws ZeroDivisionErrorException {
-        BigInteger s = a.modInverse(b);
+        BigInteger s = getArithmetic().modInverse(a, b);
         if (s.equals(BigInteger.ZERO)) {
             throw new ZeroDivisionErrorException("invert() no inverse exists");
         }
@@ -83,7 +82,49 @@ public class Util {
      * @return BigInteger
      */
     public static @NotNull BigInteger mulMod(@NotNull BigInteger a, @NotNull BigInteger b, BigInteger c) {
-        return a.multiply(b).mod(c);
+        return getArithmetic().mulMod(a, b, c);
+    }
+
+    /**
+     * todo Public Static Function modPow(BigInteger, BigInteger, BigInteger): modular exponentiation
+     *
+     * @param a the base
+     * @param b the exponent
+     * @param c the modulus
+     * @return BigInteger a ** b mod c
+     */
+    public static @NotNull BigInteger modPow(@NotNull BigInteger a, @NotNull BigInteger b, BigInteger c) {
+        return getArithmetic().modPow(a, b, c);
+    }
+
+    /**
+     * todo Public Static Function getArithmetic(): get the modular arithmetic backend
+     *
+     * @return ModArithmetic
+     * @throws ValueErrorException if ModArithmetic.PROPERTY names no usable backend
+     */
+    public static @NotNull ModArithmetic getArithmetic() throws ValueErrorException {
+        ModArithmetic backend = arithmetic;
+        if (backend == null) {
+            synchronized (Util.class) {
+                backend = arithmetic;
+                if (backend == null) {
+                    backend = ModArithmetic.fromProperty();
+                    arithmetic = backend;
+                }
+            }
+        }
+
+        return backend;
+    }
+
+    /**
+     * todo Public Static Function setArithmetic(ModArithmetic): replace the modular arithmetic backend
+     *
+     * @param backend the backend
+     */
+    public static void setArithmetic(@NotNull ModArithmetic backend) {
+        arithmetic = backend;
     }
 
     /**
@@ -142,6 +183,20 @@ public class Util {
         }
     }
 
+    /**
+     * todo Public Static Class IOErrorException: new IOErrorException(str)
+     */
+    public static class IOErrorException extends Error {
+        /**
+         * IOErrorException
+         *
+         * @param s exception description
+         */
+        IOErrorException(String s) {
+            super(s);
+        }
+    }
+
     /**
      * todo Public Static Class OverflowErrorException: new OverflowErrorException(str)
      */